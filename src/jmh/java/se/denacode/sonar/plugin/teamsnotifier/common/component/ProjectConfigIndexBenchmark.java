@@ -0,0 +1,109 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Project config lookup cost against the number of configuration rows. The index lookups should stay flat while the
+ * linear scan, which is what searchForProjectConfig used to do, grows with the row count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectConfigIndexBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int rows;
+
+    private ProjectConfigIndex index;
+    private List<ProjectConfig> projectConfigs;
+    private String exactKey;
+    private String prefixKey;
+    private String regexKey;
+    private String missingKey;
+
+    @Setup
+    public void setUp() {
+        this.projectConfigs = projectConfigs(this.rows);
+        this.index = ProjectConfigIndex.of(this.projectConfigs);
+        // Keys matching rows near the end, the worst case for a scan
+        final int team = this.rows - 1;
+        this.exactKey = "org.team" + (team - team % 3) + ":app";
+        this.prefixKey = "org.team" + (team - (team + 2) % 3) + ".lib:core";
+        this.regexKey = "org.team" + (team - (team + 1) % 3) + ".svc-42";
+        this.missingKey = "net.acme:unknown";
+    }
+
+    /**
+     * One third exact keys, one third wildcard prefixes and one third regular expressions.
+     */
+    static List<ProjectConfig> projectConfigs(final int rows) {
+        final List<ProjectConfig> projectConfigs = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            final String key;
+            switch (i % 3) {
+                case 0:
+                    key = "org.team" + i + ":app";
+                    break;
+                case 1:
+                    key = "org.team" + i + ".lib*";
+                    break;
+                default:
+                    key = "org\\.team" + i + "\\.svc-[0-9]+";
+                    break;
+            }
+            projectConfigs.add(new ProjectConfigBuilder().setProjectHook("http://hook/" + i)
+                .setProjectKeyOrRegExp(key)
+                .build());
+        }
+        return projectConfigs;
+    }
+
+    @Benchmark
+    public Optional<ProjectConfig> indexExact() {
+        return this.index.find(this.exactKey, "");
+    }
+
+    @Benchmark
+    public Optional<ProjectConfig> indexPrefix() {
+        return this.index.find(this.prefixKey, "");
+    }
+
+    @Benchmark
+    public Optional<ProjectConfig> indexRegex() {
+        return this.index.find(this.regexKey, "");
+    }
+
+    @Benchmark
+    public Optional<ProjectConfig> indexMiss() {
+        return this.index.find(this.missingKey, "");
+    }
+
+    @Benchmark
+    public List<ProjectConfig> linearScan() {
+        final List<ProjectConfig> list = new ArrayList<>();
+        for (final ProjectConfig projectConfig : this.projectConfigs) {
+            if (StringUtils.contains(projectConfig.getProjectKey(), this.exactKey)) {
+                list.add(projectConfig);
+            }
+        }
+        return list;
+    }
+}
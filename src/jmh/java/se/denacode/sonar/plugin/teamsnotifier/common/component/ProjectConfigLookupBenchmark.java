@@ -0,0 +1,100 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.component;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+
+/**
+ * What a task run pays to find its project config: refreshing the settings and looking up the project key, against
+ * the number of configuration rows. {@link ProjectConfigIndexBenchmark} measures the index alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectConfigLookupBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int rows;
+
+    private MapSettings settings;
+    private Component component;
+    private String projectKey;
+    private String changedRowKey;
+    private boolean toggle;
+
+    @Setup
+    public void setUp() {
+        this.settings = new MapSettings();
+        final List<ProjectConfig> projectConfigs = ProjectConfigIndexBenchmark.projectConfigs(this.rows);
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property(), IntStream.range(0, this.rows)
+            .mapToObj(String::valueOf)
+            .collect(Collectors.joining(",")));
+        for (int i = 0; i < this.rows; i++) {
+            final String prefix = TeamsNotifierProp.CONFIG.property() + "." + i + ".";
+            this.settings.setProperty(prefix + TeamsNotifierProp.PROJECT_REGEXP.property(),
+                projectConfigs.get(i).getProjectKey());
+            this.settings.setProperty(prefix + TeamsNotifierProp.PROJECT_HOOK.property(),
+                projectConfigs.get(i).getProjectHook());
+        }
+        this.component = new Component(new ConfigurationBridge(this.settings));
+        this.component.refreshSettings();
+        final int team = this.rows - 1;
+        this.projectKey = "org.team" + (team - team % 3) + ":app";
+        this.changedRowKey = TeamsNotifierProp.CONFIG.property() + "." + team + "."
+            + TeamsNotifierProp.NOTIFY.property();
+    }
+
+    @Benchmark
+    public Optional<ProjectConfig> refreshAndGetProjectConfig() {
+        this.component.refreshSettings();
+        return this.component.getProjectConfig(this.projectKey);
+    }
+
+    @Benchmark
+    public Optional<ProjectConfig> getProjectConfig() {
+        return this.component.getProjectConfig(this.projectKey);
+    }
+
+    /**
+     * Settings unchanged since the last run, the common case.
+     */
+    @Benchmark
+    public void refreshSettingsUnchanged() {
+        this.component.refreshSettings();
+    }
+
+    /**
+     * One row changed since the last run, so the snapshot and index are rebuilt.
+     */
+    @Benchmark
+    public void refreshSettingsChanged() {
+        this.toggle = !this.toggle;
+        this.settings.setProperty(this.changedRowKey, this.toggle ? "channel" : "here");
+        this.component.refreshSettings();
+    }
+
+    private static final class Component extends AbstractSlackNotifyingComponent {
+        private Component(final ConfigurationBridge configuration) {
+            super(configuration);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import com.sun.net.httpserver.HttpServer;
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+
+/**
+ * A full {@link TeamsPostProjectAnalysisTask#finished(PostProjectAnalysisTask.Context)} call against a local
+ * webhook server: what the Compute Engine thread pays to queue the notification, and the time until the webhook has
+ * received it. Rate limiting, coalescing and the outbox are off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY the JDK server stalls every response on delayed ACKs
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class AnalysisTaskBenchmark {
+
+    private static final byte[] RESPONSE = "1".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong received = new AtomicLong();
+    private HttpServer server;
+    private WebhookHttpClient webhookHttpClient;
+    private WebhookDispatchQueue dispatchQueue;
+    private TeamsPostProjectAnalysisTask task;
+    private PostProjectAnalysisTask.Context context;
+    private long sent;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/hook", exchange -> {
+            try (final InputStream in = exchange.getRequestBody()) {
+                while (in.read() != -1) {
+                    // Drain the payload
+                }
+            }
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(RESPONSE);
+            }
+            this.received.incrementAndGet();
+        });
+        this.server.start();
+
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(TeamsNotifierProp.ENABLED.property(), "true");
+        settings.setProperty(TeamsNotifierProp.HOOK.property(),
+            "http://127.0.0.1:" + this.server.getAddress().getPort() + "/hook");
+        settings.setProperty(TeamsNotifierProp.RATE_LIMIT.property(), "0");
+        settings.setProperty(TeamsNotifierProp.QUEUE_CAPACITY.property(), "100000");
+        settings.setProperty(TeamsNotifierProp.CONFIG.property(), "1");
+        settings.setProperty("ckss.projectconfig.1.project", Analyses.PROJECT_KEY);
+        settings.setProperty("ckss.projectconfig.1.qg", "false");
+        settings.setProperty("sonar.core.serverBaseURL", "http://localhost:9000/");
+        final ConfigurationBridge configuration = new ConfigurationBridge(settings);
+        final NotifierMetrics metrics = new NotifierMetrics();
+        this.webhookHttpClient = new WebhookHttpClient(configuration, metrics);
+        this.webhookHttpClient.start();
+        this.dispatchQueue = new WebhookDispatchQueue(configuration, this.webhookHttpClient, metrics);
+        this.dispatchQueue.start();
+        this.task = new TeamsPostProjectAnalysisTask(configuration, new BenchmarkI18n(), this.dispatchQueue,
+            metrics, new MetricFormatRegistry(), new ConditionHistory(configuration),
+            new QualityGateStatusTracker(configuration));
+        this.context = context(PayloadBuilderBenchmark.analysis());
+    }
+
+    private static PostProjectAnalysisTask.Context context(final PostProjectAnalysisTask.ProjectAnalysis analysis) {
+        return new PostProjectAnalysisTask.Context() {
+            @Override
+            public PostProjectAnalysisTask.ProjectAnalysis getProjectAnalysis() {
+                return analysis;
+            }
+
+            @Override
+            public PostProjectAnalysisTask.LogStatistics getLogStatistics() {
+                return new PostProjectAnalysisTask.LogStatistics() {
+                    @Override
+                    public PostProjectAnalysisTask.LogStatistics add(final String key, final Object value) {
+                        return this;
+                    }
+                };
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.dispatchQueue.stop();
+        this.webhookHttpClient.stop();
+        this.server.stop(0);
+    }
+
+    /**
+     * Cost on the Compute Engine thread only, the webhook call happens on the dispatch workers.
+     */
+    @Benchmark
+    public void finishedQueued() {
+        this.task.finished(this.context);
+        this.sent++;
+        // Keep the dispatch queue from growing without bounds
+        if (this.sent - this.received.get() > 1000) {
+            this.awaitDelivery();
+        }
+    }
+
+    /**
+     * From the task call until the webhook has received the notification.
+     */
+    @Benchmark
+    public void finishedDelivered() {
+        this.task.finished(this.context);
+        this.sent++;
+        this.awaitDelivery();
+    }
+
+    private void awaitDelivery() {
+        while (this.received.get() < this.sent) {
+            LockSupport.parkNanos(1000);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.Date;
+import java.util.Locale;
+import org.sonar.api.i18n.I18n;
+
+/**
+ * Returns the default message, like the mocked I18n of the unit tests, without the cost of a mock.
+ */
+class BenchmarkI18n implements I18n {
+
+    @Override
+    public String message(final Locale locale, final String key, final String defaultValue, final Object... parameters) {
+        return defaultValue;
+    }
+
+    @Override
+    public String age(final Locale locale, final long durationInMillis) {
+        return null;
+    }
+
+    @Override
+    public String age(final Locale locale, final Date fromDate, final Date toDate) {
+        return null;
+    }
+
+    @Override
+    public String ageFromNow(final Locale locale, final Date date) {
+        return null;
+    }
+
+    @Override
+    public String formatDateTime(final Locale locale, final Date date) {
+        return null;
+    }
+
+    @Override
+    public String formatDate(final Locale locale, final Date date) {
+        return null;
+    }
+
+    @Override
+    public String formatDouble(final Locale locale, final Double value) {
+        return null;
+    }
+
+    @Override
+    public String formatInteger(final Locale locale, final Integer value) {
+        return null;
+    }
+}
@@ -0,0 +1,72 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfig;
+import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfigBuilder;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+
+/**
+ * Building the MessageCard of an analysis with four quality gate conditions. Run with {@code -prof gc}, the
+ * {@code gc.alloc.rate.norm} line gives the bytes allocated per build.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBuilderBenchmark {
+
+    private final MetricNameCache metricNames = new MetricNameCache(new BenchmarkI18n());
+    private final MetricFormatRegistry metricFormats = new MetricFormatRegistry();
+    private PostProjectAnalysisTask.ProjectAnalysis analysis;
+    private ProjectConfig allConditions;
+    private ProjectConfig failedConditionsOnly;
+
+    @Setup
+    public void setUp() {
+        this.analysis = analysis();
+        this.allConditions = new ProjectConfigBuilder().setProjectKeyOrRegExp(Analyses.PROJECT_KEY).build();
+        this.failedConditionsOnly = new ProjectConfigBuilder().from(this.allConditions).setQgFailOnly(true).build();
+    }
+
+    /**
+     * @return the analysis of {@link Analyses#qualityGateOk4Conditions(PostProjectAnalysisTask)}
+     */
+    static PostProjectAnalysisTask.ProjectAnalysis analysis() {
+        final CaptorPostProjectAnalysisTask captor = new CaptorPostProjectAnalysisTask();
+        Analyses.qualityGateOk4Conditions(captor);
+        return captor.getProjectAnalysis();
+    }
+
+    @Benchmark
+    public Payload build() {
+        return this.build(this.allConditions);
+    }
+
+    @Benchmark
+    public Payload buildFailedOnly() {
+        return this.build(this.failedConditionsOnly);
+    }
+
+    private Payload build(final ProjectConfig projectConfig) {
+        return ProjectAnalysisPayloadBuilder.of(this.analysis)
+            .metricNames(this.metricNames)
+            .metricFormats(this.metricFormats)
+            .projectConfig(projectConfig)
+            .projectUrl("http://localhost:9000/dashboard?id=" + Analyses.PROJECT_KEY)
+            .includeBranch(true)
+            .build();
+    }
+}
@@ -0,0 +1,87 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import com.google.gson.Gson;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Action;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.CardFormat;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Fact;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of a payload into a request body, the way invokeIncomingWebhook used to do it (new Gson, String,
+ * byte[] copy) against the shared type adapters streaming into the sink, and the Adaptive Card written from its
+ * pre-built fragments.
+ * Run with <code>-Djmh.args="PayloadSerialization -prof gc"</code> to compare gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+
+    private static final MediaType MEDIA_TYPE = MediaType.get(OfficeWebhookClient.APPLICATION_X_WWW_FORM_URLENCODED);
+
+    private final Buffer sink = new Buffer();
+    private Payload payload;
+    private Payload adaptiveCard;
+
+    @Setup
+    public void setUp() {
+        this.payload = payload();
+        this.adaptiveCard = payload().withFormat(CardFormat.ADAPTIVE_CARD).withThemeColor(Payload.COLOR_ERROR);
+    }
+
+    static Payload payload() {
+        final Payload payload = new Payload("Sonar report",
+            new Section("Sonar Quality Report", "Project Sonar Project Name was analyzed for branch feature/x."));
+        payload.getSection().getFacts().add(new Fact("Quality gate status", "🔴 ERROR"));
+        payload.getSection().getFacts().add(new Fact("New Vulnerabilities", "🟢 0, error if >0"));
+        payload.getSection().getFacts().add(new Fact("New Bugs", "🔴 1, error if >0"));
+        payload.getSection().getFacts().add(new Fact("Technical Debt Ratio on New Code", "🟢 0.01%, error if >10.0%"));
+        payload.getSection().getFacts().add(new Fact("Coverage on New Code", "🔴 75.51%, error if <80.0%"));
+        payload.getPotentialAction().add(new Action("See report", "http://localhost:9000/dashboard?id=project:key"));
+        return payload;
+    }
+
+    @Benchmark
+    public long gsonStringBody() throws IOException {
+        final String json = new Gson().toJson(this.payload);
+        RequestBody.create(json, MEDIA_TYPE).writeTo(this.sink);
+        return this.drain();
+    }
+
+    @Benchmark
+    public long streamingBody() throws IOException {
+        new PayloadRequestBody(this.payload, MEDIA_TYPE).writeTo(this.sink);
+        return this.drain();
+    }
+
+    @Benchmark
+    public long adaptiveCardBody() throws IOException {
+        new PayloadRequestBody(this.adaptiveCard, MEDIA_TYPE).writeTo(this.sink);
+        return this.drain();
+    }
+
+    private long drain() {
+        final long size = this.sink.size();
+        this.sink.clear();
+        return size;
+    }
+}
@@ -1,6 +1,13 @@
 package se.denacode.sonar.plugin.teamsnotifier;
 
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.ConditionHistory;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.MetricFormatRegistry;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.NotifierMetrics;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.QualityGateStatusTracker;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.TeamsPostProjectAnalysisTask;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.WebhookDispatchQueue;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.WebhookHttpClient;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.CardFormat;
 import java.util.ArrayList;
 import java.util.List;
 import org.sonar.api.Plugin;
@@ -23,6 +30,12 @@ public class TeamsNotifierPlugin implements Plugin {
 
         // The actual plugin component(s)
         extensions.add(TeamsPostProjectAnalysisTask.class);
+        extensions.add(WebhookDispatchQueue.class);
+        extensions.add(WebhookHttpClient.class);
+        extensions.add(NotifierMetrics.class);
+        extensions.add(MetricFormatRegistry.class);
+        extensions.add(ConditionHistory.class);
+        extensions.add(QualityGateStatusTracker.class);
 
         context.addExtensions(extensions);
     }
@@ -92,7 +105,8 @@ public class TeamsNotifierPlugin implements Plugin {
                 .fields(
                     PropertyFieldDefinition.build(TeamsNotifierProp.PROJECT_HOOK.property())
                         .name("Project Hook")
-                        .description("https://api.slack.com/incoming-webhooks")
+                        .description("One or more webhook URLs separated by commas, notified in parallel. " +
+                            "Empty to use the global hook.")
                         .type(PropertyType.STRING)
                         .build(),
                     PropertyFieldDefinition.build(TeamsNotifierProp.PROJECT_REGEXP.property())
@@ -111,12 +125,334 @@ public class TeamsNotifierPlugin implements Plugin {
                         .description("Should notification be sent only if Quality Gate did not pass OK")
                         .type(PropertyType.BOOLEAN)
                         .build(),
+                    PropertyFieldDefinition.build(TeamsNotifierProp.QG_CHANGE_ONLY.property())
+                        .name("Send on Quality Gate change")
+                        .description("Should notification be sent only if the Quality Gate status changed since the " +
+                            "previous analysis of the branch, e.g. from OK to ERROR or back. A change back to OK is " +
+                            "notified even when only failed Quality Gates are")
+                        .type(PropertyType.BOOLEAN)
+                        .build(),
                     PropertyFieldDefinition.build(TeamsNotifierProp.NOTIFY.property())
                         .name("Notify")
                         .description("add @ to someone before messages, for example @channel")
                         .type(PropertyType.STRING)
+                        .build(),
+                    PropertyFieldDefinition.build(TeamsNotifierProp.PROJECT_RATE_LIMIT.property())
+                        .name("Rate limit")
+                        .description("Messages per second to the hook of this row, empty to use the global rate " +
+                            "limit. When several rows send to the same hook, the lowest of their rates applies")
+                        .type(PropertyType.FLOAT)
+                        .build(),
+                    PropertyFieldDefinition.build(TeamsNotifierProp.PROJECT_RATE_BURST.property())
+                        .name("Rate burst")
+                        .description("Burst size for the hook of this row, empty to use the global burst size")
+                        .type(PropertyType.INTEGER)
+                        .build(),
+                    PropertyFieldDefinition.build(TeamsNotifierProp.PROJECT_LOCALE.property())
+                        .name("Locale")
+                        .description("Language of the metric names in the messages, e.g. fr or pt-BR. Empty for English.")
+                        .type(PropertyType.STRING)
+                        .build(),
+                    PropertyFieldDefinition.build(TeamsNotifierProp.TITLE_TEMPLATE.property())
+                        .name("Title template")
+                        .description("Title of the messages, e.g. {{project}} is {{status}}. Empty for the default " +
+                            "title. See the text template for the variables.")
+                        .type(PropertyType.STRING)
+                        .build(),
+                    PropertyFieldDefinition.build(TeamsNotifierProp.TEXT_TEMPLATE.property())
+                        .name("Text template")
+                        .description("Text of the messages. Variables: {{project}}, {{projectKey}}, {{branch}}, " +
+                            "{{status}}, {{qualityGate}}, {{notify}}, {{url}}. {{#branch}}...{{/branch}} is only " +
+                            "shown when there is a branch, {{^branch}}...{{/branch}} when there is none. Empty for " +
+                            "the default text.")
+                        .type(PropertyType.STRING)
+                        .build(),
+                    PropertyFieldDefinition.build(TeamsNotifierProp.CARD_FORMAT.property())
+                        .name("Card format")
+                        .description("MESSAGE_CARD for the Office 365 connector card, ADAPTIVE_CARD for an Adaptive " +
+                            "Card. Empty for MESSAGE_CARD.")
+                        .type(PropertyType.SINGLE_SELECT_LIST)
+                        .options(CardFormat.MESSAGE_CARD.name(), CardFormat.ADAPTIVE_CARD.name())
                         .build()
                 )
                 .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.QUEUE_CAPACITY.property())
+            .name("Dispatch queue capacity")
+            .description("Maximum number of notifications waiting to be sent. Requires a restart.")
+            .defaultValue("1000")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(7)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.QUEUE_OVERFLOW_POLICY.property())
+            .name("Dispatch queue overflow policy")
+            .description("What to do with a notification when the dispatch queue is full. Requires a restart.")
+            .defaultValue(WebhookDispatchQueue.OverflowPolicy.DROP_OLDEST.name())
+            .type(PropertyType.SINGLE_SELECT_LIST)
+            .options(WebhookDispatchQueue.OverflowPolicy.DROP_OLDEST.name(),
+                WebhookDispatchQueue.OverflowPolicy.DROP_NEWEST.name(),
+                WebhookDispatchQueue.OverflowPolicy.BLOCK.name())
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(8)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.QUEUE_WORKERS.property())
+            .name("Dispatch worker threads")
+            .description("Number of threads sending notifications to Teams. Requires a restart.")
+            .defaultValue("2")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(9)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.BATCH_WINDOW.property())
+            .name("Batch window (ms)")
+            .description("Notifications sent to the same hook within this window are combined into one message. " +
+                "0 disables it. Requires a restart.")
+            .defaultValue("0")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(10)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.BATCH_MAX_SIZE.property())
+            .name("Batch maximum size")
+            .description("A combined message is sent as soon as it holds this many project reports. Requires a restart.")
+            .defaultValue("10")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(11)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.RETRY_MAX_ATTEMPTS.property())
+            .name("Retry maximum attempts")
+            .description("Total number of attempts for a webhook call that fails with a network error, 408, 429 or " +
+                "5xx. 1 disables retries. Requires a restart.")
+            .defaultValue("3")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(12)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.RETRY_BASE_DELAY.property())
+            .name("Retry base delay (ms)")
+            .description("Delay before the first retry, doubled for every following one and randomized by up to half. " +
+                "A Retry-After header sent by Teams takes precedence. Requires a restart.")
+            .defaultValue("1000")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(13)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.RETRY_MAX_DELAY.property())
+            .name("Retry maximum delay (ms)")
+            .description("Upper bound of the backoff between two attempts. Requires a restart.")
+            .defaultValue("60000")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(14)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.RATE_LIMIT.property())
+            .name("Rate limit (messages per second)")
+            .description("Maximum rate of messages sent to one webhook, extra messages wait in the dispatch queue. " +
+                "0, the default, disables it. Can be overridden per project config row.")
+            .defaultValue("0")
+            .type(PropertyType.FLOAT)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(15)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.RATE_BURST.property())
+            .name("Rate burst")
+            .description("Number of messages that can be sent to one webhook at once after it has been idle. " +
+                "Can be overridden per project config row.")
+            .defaultValue("4")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(16)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.OUTBOX_ENABLED.property())
+            .name("Outbox enabled")
+            .description("Keep undelivered notifications on disk, in the SonarQube data directory, and send them after " +
+                "a restart. Requires a restart.")
+            .defaultValue("true")
+            .type(PropertyType.BOOLEAN)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(17)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.OUTBOX_FSYNC_INTERVAL.property())
+            .name("Outbox fsync interval (ms)")
+            .description("How often the outbox is forced to disk. Notifications queued within this interval before " +
+                "a crash can be lost. Requires a restart.")
+            .defaultValue("200")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(18)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.HTTP_MAX_IDLE_CONNECTIONS.property())
+            .name("HTTP idle connections")
+            .description("Maximum number of idle connections kept open to the hook hosts. Requires a restart.")
+            .defaultValue("5")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(19)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.HTTP_KEEP_ALIVE.property())
+            .name("HTTP keep-alive (ms)")
+            .description("How long an idle connection is kept open. Requires a restart.")
+            .defaultValue("300000")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(20)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.HTTP_MAX_REQUESTS_PER_HOST.property())
+            .name("HTTP requests per host")
+            .description("Maximum number of concurrent webhook calls to one hook host, further calls wait " +
+                "for one to end. Requires a restart.")
+            .defaultValue("5")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(21)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.HTTP_CALL_TIMEOUT.property())
+            .name("HTTP call timeout (ms)")
+            .description("Maximum duration of a whole webhook call, 0 for no limit. Requires a restart.")
+            .defaultValue("30000")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(22)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.HTTP_READ_TIMEOUT.property())
+            .name("HTTP read timeout (ms)")
+            .description("Maximum time to wait for the webhook response. Requires a restart.")
+            .defaultValue("10000")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(23)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.HTTP_WARM_UP.property())
+            .name("HTTP warm-up")
+            .description("Open the connections to the configured hook hosts at startup, so the first " +
+                "notification does not pay for the TLS handshake. Requires a restart.")
+            .defaultValue("false")
+            .type(PropertyType.BOOLEAN)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(24)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.PROXY_NON_PROXY_HOSTS.property())
+            .name("Proxy exceptions")
+            .description("Hosts reached without the proxy, '*' can be used at the start or end, e.g. *.corp.local")
+            .type(PropertyType.STRING)
+            .multiValues(true)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(25)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.PROXY_USER.property())
+            .name("Proxy user")
+            .description("User name for HTTP proxy authentication")
+            .type(PropertyType.STRING)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(26)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.PROXY_PASSWORD.property())
+            .name("Proxy password")
+            .description("Password for HTTP proxy authentication")
+            .type(PropertyType.PASSWORD)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(27)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.TREND_ENABLED.property())
+            .name("Trends enabled")
+            .description("Show the change of each condition since the previous analysis of the project and branch, " +
+                "kept in the SonarQube data directory. Requires a restart.")
+            .defaultValue("true")
+            .type(PropertyType.BOOLEAN)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(28)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.TREND_SPARKLINES.property())
+            .name("Trend sparklines")
+            .description("Add a sparkline of the last " + ConditionHistory.DEPTH + " values of each condition")
+            .defaultValue("false")
+            .type(PropertyType.BOOLEAN)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(29)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.DEDUP_WINDOW.property())
+            .name("Duplicate suppression window")
+            .description("Milliseconds during which an analysis with the same project, branch, quality gate status " +
+                "and condition values is not notified again to the same hook, e.g. when CI analyses the same commit " +
+                "again. 0 to always notify.")
+            .defaultValue("0")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(30)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.CIRCUIT_FAILURE_RATE.property())
+            .name("Circuit breaker failure rate (%)")
+            .description("Percentage of failed calls among the last 20 calls to a hook, after which calls to it " +
+                "fail at once until the cool-down has passed. 0 disables the circuit breaker. Requires a restart.")
+            .defaultValue("50")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(31)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.CIRCUIT_MINIMUM_CALLS.property())
+            .name("Circuit breaker minimum calls")
+            .description("Number of calls to a hook before its failure rate can open the circuit. Requires a restart.")
+            .defaultValue("5")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(32)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.CIRCUIT_COOL_DOWN.property())
+            .name("Circuit breaker cool-down (ms)")
+            .description("How long calls to a hook with an open circuit fail before one call is tried again. " +
+                "Requires a restart.")
+            .defaultValue("60000")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(33)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.LOG_SAMPLE_RATE.property())
+            .name("Debug payload sampling (%)")
+            .description("Percentage of the webhook calls whose payload and response are logged when the log level " +
+                "is DEBUG. Other calls only log one line with the task id, hook host, latency and outcome.")
+            .defaultValue("10")
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(34)
+            .build());
+        extensions.add(PropertyDefinition.builder(TeamsNotifierProp.TREND_RETENTION_DAYS.property())
+            .name("Trend retention (days)")
+            .description("The history of a project and branch not analysed for this many days is deleted, e.g. " +
+                "for merged branches and pull requests. 0 to keep it forever. Requires a restart.")
+            .defaultValue(String.valueOf(ConditionHistory.DEFAULT_RETENTION_DAYS))
+            .type(PropertyType.INTEGER)
+            .category(CATEGORY)
+            .subCategory(SUBCATEGORY)
+            .index(35)
+            .build());
     }
 }
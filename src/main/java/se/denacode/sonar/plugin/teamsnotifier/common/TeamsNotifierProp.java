@@ -25,11 +25,101 @@ public enum TeamsNotifierProp {
     PROXY_IP("ckss.proxy_ip"),
     PROXY_PORT("ckss.proxy_port"),
     PROXY_PROTOCOL("ckss.proxy_protocol"),
+    /**
+     * Hosts reached without the proxy (comma separated, '*' wildcard at the start or end) and proxy credentials
+     */
+    PROXY_NON_PROXY_HOSTS("ckss.proxy_non_proxy_hosts"),
+    PROXY_USER("ckss.proxy_user"),
+    PROXY_PASSWORD("ckss.proxy_password"),
     /**
      * Include branch name in slack message (only supported in licenced versions of SonarQube)
      */
     INCLUDE_BRANCH("ckss.include_branch"),
 
+    /**
+     * Dispatch queue settings (capacity, overflow policy, worker threads).
+     * Read once when the Compute Engine starts.
+     */
+    QUEUE_CAPACITY("ckss.queue_capacity"),
+    QUEUE_OVERFLOW_POLICY("ckss.queue_overflow_policy"),
+    QUEUE_WORKERS("ckss.queue_workers"),
+
+    /**
+     * Coalescing of notifications sent to the same hook (window in milliseconds, 0 disables it, and maximum batch size).
+     * Read once when the Compute Engine starts.
+     */
+    BATCH_WINDOW("ckss.batch_window_ms"),
+    BATCH_MAX_SIZE("ckss.batch_max_size"),
+
+    /**
+     * Retry of failed webhook calls (total number of attempts, base and maximum backoff in milliseconds).
+     * Read once when the Compute Engine starts.
+     */
+    RETRY_MAX_ATTEMPTS("ckss.retry_max_attempts"),
+    RETRY_BASE_DELAY("ckss.retry_base_delay_ms"),
+    RETRY_MAX_DELAY("ckss.retry_max_delay_ms"),
+
+    /**
+     * Rate limit per webhook URL (messages per second, 0 disables it, and burst size).
+     * Can be overridden per project config row.
+     */
+    RATE_LIMIT("ckss.rate_limit"),
+    RATE_BURST("ckss.rate_burst"),
+
+    /**
+     * Durable outbox of undelivered notifications under the SonarQube data directory (enabled, fsync interval in
+     * milliseconds). Read once when the Compute Engine starts.
+     */
+    OUTBOX_ENABLED("ckss.outbox_enabled"),
+    OUTBOX_FSYNC_INTERVAL("ckss.outbox_fsync_interval_ms"),
+
+    /**
+     * Shared HTTP client settings (connection pool, dispatcher, timeouts in milliseconds, connection warm-up).
+     * Read once when the Compute Engine starts.
+     */
+    HTTP_MAX_IDLE_CONNECTIONS("ckss.http_max_idle_connections"),
+    HTTP_KEEP_ALIVE("ckss.http_keep_alive_ms"),
+    HTTP_MAX_REQUESTS_PER_HOST("ckss.http_max_requests_per_host"),
+    HTTP_CALL_TIMEOUT("ckss.http_call_timeout_ms"),
+    HTTP_READ_TIMEOUT("ckss.http_read_timeout_ms"),
+    HTTP_WARM_UP("ckss.http_warm_up"),
+
+    /**
+     * Show how the condition values changed since the previous analysis, and optionally a sparkline of the last ones
+     */
+    TREND_ENABLED("ckss.trend_enabled"),
+    TREND_SPARKLINES("ckss.trend_sparklines"),
+    /**
+     * Days after which the history of a project and branch that was not analysed is deleted, 0 to keep it forever
+     */
+    TREND_RETENTION_DAYS("ckss.trend_retention_days"),
+
+    /**
+     * Milliseconds during which the notification of an identical analysis is not sent again, 0 to always send
+     */
+    DEDUP_WINDOW("ckss.dedup_window_ms"),
+
+    /**
+     * Circuit breaker per hook (percentage of failed calls opening it, 0 disables it, minimum number of calls and
+     * cool-down in milliseconds). Read once when the Compute Engine starts.
+     */
+    CIRCUIT_FAILURE_RATE("ckss.circuit_failure_rate"),
+    CIRCUIT_MINIMUM_CALLS("ckss.circuit_minimum_calls"),
+    CIRCUIT_COOL_DOWN("ckss.circuit_cool_down_ms"),
+
+    /**
+     * Percentage of the webhook calls whose payload and response are logged when DEBUG logs are enabled.
+     */
+    LOG_SAMPLE_RATE("ckss.log_sample_rate"),
+
+    /**
+     * Standalone relay receiving SonarQube webhooks (port, HMAC secret of the webhook, handler threads).
+     * Only read by {@code WebhookRelay}, from its properties file.
+     */
+    RELAY_PORT("ckss.relay_port"),
+    RELAY_SECRET("ckss.relay_secret"),
+    RELAY_THREADS("ckss.relay_threads"),
+
     /**
      * <p>
      * The project specific slack channels have to be configured in General, server side settings, instead of per project
@@ -72,7 +162,48 @@ public enum TeamsNotifierProp {
     /**
      * @see TeamsNotifierProp#CONFIG
      */
-    QG_FAIL_ONLY("qg");
+    QG_FAIL_ONLY("qg"),
+
+    /**
+     * Only notify when the Quality Gate status of the project and branch changed since the previous analysis
+     *
+     * @see TeamsNotifierProp#CONFIG
+     */
+    QG_CHANGE_ONLY("qgChange"),
+
+    /**
+     * @see TeamsNotifierProp#CONFIG
+     * @see TeamsNotifierProp#RATE_LIMIT
+     */
+    PROJECT_RATE_LIMIT("rateLimit"),
+
+    /**
+     * @see TeamsNotifierProp#CONFIG
+     * @see TeamsNotifierProp#RATE_BURST
+     */
+    PROJECT_RATE_BURST("rateBurst"),
+
+    /**
+     * Language tag of the metric names in the messages of a project config row, English when empty
+     *
+     * @see TeamsNotifierProp#CONFIG
+     */
+    PROJECT_LOCALE("locale"),
+
+    /**
+     * Templates of the title and text of the messages of a project config row, see {@code MessageTemplate}
+     *
+     * @see TeamsNotifierProp#CONFIG
+     */
+    TITLE_TEMPLATE("titleTemplate"),
+    TEXT_TEMPLATE("textTemplate"),
+
+    /**
+     * Format of the cards of a project config row, MESSAGE_CARD when empty
+     *
+     * @see TeamsNotifierProp#CONFIG
+     */
+    CARD_FORMAT("cardFormat");
 
     private final String property;
 
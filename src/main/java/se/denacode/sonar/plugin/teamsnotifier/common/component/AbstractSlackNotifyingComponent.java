@@ -1,20 +1,13 @@
 package se.denacode.sonar.plugin.teamsnotifier.common.component;
 
 import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.config.Configuration;
-import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
@@ -24,7 +17,7 @@ public abstract class AbstractSlackNotifyingComponent {
     private static final Logger LOG = Loggers.get(AbstractSlackNotifyingComponent.class);
 
     private final Configuration configuration;
-    private Map<String, ProjectConfig> projectConfigMap = Collections.emptyMap();
+    private volatile SettingsSnapshot settingsSnapshot = SettingsSnapshot.EMPTY;
 
     public AbstractSlackNotifyingComponent(final Configuration configuration) {
         this.configuration = configuration;
@@ -42,49 +35,17 @@ public abstract class AbstractSlackNotifyingComponent {
      * 4) thus when the instance is used to perform something, we must refresh the projectConfigMap when the
      * execution starts
      * </pre>
+     * The project configs are only rebuilt when their raw values changed, see {@link SettingsSnapshot}.
      */
     protected void refreshSettings() {
-        LOG.info("Refreshing settings");
-        this.refreshProjectConfigs();
-    }
-
-    private void refreshProjectConfigs() {
-        LOG.info("Refreshing project configs");
-        // final var oldValues =
-        Set<ProjectConfig> oldValues = projectConfigMap.values().stream().
-            map(ProjectConfigBuilder::cloneProjectConfig).collect(Collectors.toSet());
-        projectConfigMap = buildProjectConfigByProjectKeyMap(configuration);
-        // final Set newValues =
-        Set<ProjectConfig> newValues = new HashSet<>(projectConfigMap.values());
-        if (!oldValues.equals(newValues)) {
-            LOG.info("Old configs [{}] --> new configs [{}]", oldValues, newValues);
-        }
-    }
-
-    private static Map<String, ProjectConfig> buildProjectConfigByProjectKeyMap(final Configuration settings) {
-        final Map<String, ProjectConfig> map = new HashMap<>();
-        final String[] projectConfigIndexes = settings.getStringArray(TeamsNotifierProp.CONFIG.property());
-
-        LOG.info("SlackNotifierProp.CONFIG=[{}]", (Object) projectConfigIndexes);
-        for (final String projectConfigIndex : projectConfigIndexes) {
-            final String projectKeyProperty = TeamsNotifierProp.CONFIG
-                .property() + "." + projectConfigIndex + "." + TeamsNotifierProp.PROJECT_REGEXP
-                .property();
-            final Optional<String> projectKey = settings.get(projectKeyProperty);
-            if (!projectKey.isPresent()) {
-                throw MessageException.of(
-                    "Slack notifier configuration is corrupted. At least one project specific parameter has no " +
-                        "project key. " +
-                        "Contact your administrator to update this configuration in the global administration section" +
-                        " of SonarQube.");
-            }
-            final ProjectConfig value = new ProjectConfigBuilder()
-                .withConfiguration(settings, TeamsNotifierProp.CONFIG.property() + "." + projectConfigIndex + ".")
-                .build();
-            LOG.info("Found project configuration [{}]", value);
-            map.put(projectKey.get(), value);
+        final SettingsSnapshot current = this.settingsSnapshot;
+        if (current.isUpToDate(this.configuration)) {
+            return;
         }
-        return map;
+        LOG.info("Refreshing project configs");
+        final SettingsSnapshot refreshed = SettingsSnapshot.load(this.configuration);
+        LOG.info("Old configs [{}] --> new configs [{}]", current.getProjectConfigs(), refreshed.getProjectConfigs());
+        this.settingsSnapshot = refreshed;
     }
 
     protected String getIconUrl() {
@@ -105,6 +66,20 @@ public abstract class AbstractSlackNotifyingComponent {
         return this.configuration.getBoolean(TeamsNotifierProp.INCLUDE_BRANCH.property()).orElse(false);
     }
 
+    /**
+     * @return value for TREND_SPARKLINES property, defaults to false
+     */
+    protected boolean isSparklinesEnabled() {
+        return this.configuration.getBoolean(TeamsNotifierProp.TREND_SPARKLINES.property()).orElse(false);
+    }
+
+    /**
+     * @return value for DEDUP_WINDOW property, defaults to 0 (never suppress)
+     */
+    protected long getDedupWindowMillis() {
+        return this.configuration.getLong(TeamsNotifierProp.DEDUP_WINDOW.property()).orElse(0L);
+    }
+
     /**
      * Returns the sonar server url, with a trailing /
      *
@@ -124,33 +99,25 @@ public abstract class AbstractSlackNotifyingComponent {
     }
 
     protected Optional<ProjectConfig> getProjectConfig(final String projectKey) {
-        final List<ProjectConfig> projectConfigs = this.searchForProjectConfig(projectKey);
-        // Not configured at all
-        if (projectConfigs.isEmpty()) {
-            LOG.info("Could not find config for project [{}] in [{}]", projectKey, this.projectConfigMap);
-
-            LOG.info("Building the default project config.");
-            return Optional.of(buildDefaultProjectConfig(projectKey));
-        }
-
-        if (projectConfigs.size() > 1) {
-            LOG.warn("More than 1 project key was matched. Using first one: {}", projectConfigs.get(0).getProjectKey());
-        }
-        return Optional.of(projectConfigs.get(0));
+        return this.getProjectConfig(projectKey, "");
     }
 
-    @NotNull
-    private List<ProjectConfig> searchForProjectConfig(final String projectKey) {
-        List<ProjectConfig> list = new ArrayList<>();
-        Map<String, ProjectConfig> stringProjectConfigMap = this.projectConfigMap;
-        for (String s : this.projectConfigMap.keySet()) {
-            //if (projectKey.matches(s)) {
-            if (StringUtils.contains(s, projectKey)) {
-                ProjectConfig projectConfig = stringProjectConfigMap.get(s);
-                list.add(projectConfig);
-            }
+    /**
+     * @param projectKey the key of the analysed project
+     * @param branch     the analysed branch, picks the matching row when several rows only differ by target branch
+     * @return the matching project configuration, or the default one built from the global hook
+     * @see ProjectConfigIndex
+     */
+    protected Optional<ProjectConfig> getProjectConfig(final String projectKey, final String branch) {
+        final SettingsSnapshot snapshot = this.settingsSnapshot;
+        final Optional<ProjectConfig> projectConfig = snapshot.getProjectConfigIndex().find(projectKey, branch);
+        // Not configured at all
+        if (!projectConfig.isPresent()) {
+            LOG.debug("Could not find config for project [{}] in [{}], building the default project config",
+                projectKey, snapshot.getProjectConfigMap());
+            return Optional.of(buildDefaultProjectConfig(projectKey));
         }
-        return list;
+        return projectConfig;
     }
 
     @NotNull
@@ -161,6 +128,23 @@ public abstract class AbstractSlackNotifyingComponent {
             .build();
     }
 
+    /**
+     * Several rows may send to the same hook, the lowest of their rate limits applies to it, whatever row the
+     * notification comes from.
+     *
+     * @param hook          a hook of the project configuration
+     * @param projectConfig the row of the notified analysis
+     * @return the row whose rate limit and burst apply to the hook, the given row when no row sets a rate limit
+     */
+    protected ProjectConfig getRateLimitedRow(final String hook, final ProjectConfig projectConfig) {
+        final SettingsSnapshot snapshot = this.settingsSnapshot;
+        ProjectConfig slowest = snapshot.getSlowestRow(hook);
+        if (Objects.equals(hook, this.getDefaultHook())) {
+            slowest = SettingsSnapshot.slower(slowest, snapshot.getSlowestRow(SettingsSnapshot.GLOBAL_HOOK));
+        }
+        return slowest == null ? projectConfig : slowest;
+    }
+
     protected String getDefaultHook() {
         final Optional<String> defaultHook = this.configuration.get(TeamsNotifierProp.HOOK.property());
         return defaultHook.orElse(null);
@@ -175,7 +159,7 @@ public abstract class AbstractSlackNotifyingComponent {
         this.mapSetting(pluginSettings, TeamsNotifierProp.ENABLED);
         this.mapSetting(pluginSettings, TeamsNotifierProp.CONFIG);
         this.mapSetting(pluginSettings, TeamsNotifierProp.INCLUDE_BRANCH);
-        return pluginSettings + "; project specific channel config: " + this.projectConfigMap;
+        return pluginSettings + "; project specific channel config: " + this.settingsSnapshot.getProjectConfigMap();
     }
 
     private void mapSetting(final Map<String, String> pluginSettings, final TeamsNotifierProp key) {
@@ -185,7 +169,7 @@ public abstract class AbstractSlackNotifyingComponent {
     protected boolean shouldSkipSendingNotification(final ProjectConfig projectConfig, final QualityGate qualityGate) {
         if (projectConfig.isQgFailOnly() && qualityGate != null && QualityGate.Status.OK.equals(
             qualityGate.getStatus())) {
-            LOG.info("Project [{}] set up to send notification on failed Quality Gate, but was: {}",
+            LOG.debug("Project [{}] set up to send notification on failed Quality Gate, but was: {}",
                 projectConfig.getProjectKey(), qualityGate.getStatus().name());
             return true;
         }
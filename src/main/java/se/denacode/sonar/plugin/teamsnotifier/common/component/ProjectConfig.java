@@ -1,23 +1,85 @@
 package se.denacode.sonar.plugin.teamsnotifier.common.component;
 
+import se.denacode.sonar.plugin.teamsnotifier.common.template.MessageTemplate;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.CardFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
 public class ProjectConfig {
 
+    private static final char BRANCH_SEPARATOR = ';';
+    private static final Pattern HOOK_SEPARATOR = Pattern.compile("[,\\s]+");
+
     private final String projectHook;
+    private final List<String> projectHooks;
     private final String projectKey;
     private final String notify;
     private final boolean qgFailOnly;
+    private final boolean qgChangeOnly;
+    private final double rateLimit;
+    private final int rateBurst;
+    private final Locale locale;
+    private final MessageTemplate titleTemplate;
+    private final MessageTemplate textTemplate;
+    private final CardFormat cardFormat;
 
     public ProjectConfig(String projectHook, String projectKey, String notify, boolean qgFailOnly) {
+        this(projectHook, projectKey, notify, qgFailOnly, false, 0, 0, null);
+    }
+
+    public ProjectConfig(String projectHook, String projectKey, String notify, boolean qgFailOnly,
+        boolean qgChangeOnly, double rateLimit, int rateBurst, Locale locale) {
+        this(projectHook, projectKey, notify, qgFailOnly, qgChangeOnly, rateLimit, rateBurst, locale, null, null,
+            null);
+    }
+
+    public ProjectConfig(String projectHook, String projectKey, String notify, boolean qgFailOnly,
+        boolean qgChangeOnly, double rateLimit, int rateBurst, Locale locale, MessageTemplate titleTemplate,
+        MessageTemplate textTemplate, CardFormat cardFormat) {
         this.projectHook = projectHook;
+        this.projectHooks = splitHooks(projectHook);
         this.projectKey = projectKey;
         this.notify = notify;
         this.qgFailOnly = qgFailOnly;
+        this.qgChangeOnly = qgChangeOnly;
+        this.rateLimit = rateLimit;
+        this.rateBurst = rateBurst;
+        this.locale = locale == null ? Locale.ENGLISH : locale;
+        this.titleTemplate = titleTemplate;
+        this.textTemplate = textTemplate;
+        this.cardFormat = cardFormat == null ? CardFormat.MESSAGE_CARD : cardFormat;
     }
 
     public String getProjectHook() {
         return projectHook;
     }
 
+    /**
+     * @return the hooks listed in the project hook field, empty when the global hook is used
+     */
+    public List<String> getProjectHooks() {
+        return projectHooks;
+    }
+
+    /**
+     * @param hooks webhook URLs separated by commas or whitespace
+     * @return the non blank URLs
+     */
+    public static List<String> splitHooks(final String hooks) {
+        if (hooks == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.stream(HOOK_SEPARATOR.split(hooks.trim()))
+            .filter(hook -> !hook.isEmpty())
+            .distinct()
+            .collect(Collectors.toList()));
+    }
+
     public String getProjectKey() {
         return projectKey;
     }
@@ -29,4 +91,118 @@ public class ProjectConfig {
     public boolean isQgFailOnly() {
         return qgFailOnly;
     }
+
+    /**
+     * @return true to only notify when the Quality Gate status changed since the previous analysis
+     */
+    public boolean isQgChangeOnly() {
+        return qgChangeOnly;
+    }
+
+    /**
+     * @return messages per second to the hook of this row, 0 to use the global rate limit
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @return burst size for the hook of this row, 0 to use the global burst size
+     */
+    public int getRateBurst() {
+        return rateBurst;
+    }
+
+    /**
+     * @return the locale of the metric names in the messages of this row
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return the template of the message title of this row, null for the default title
+     */
+    public MessageTemplate getTitleTemplate() {
+        return titleTemplate;
+    }
+
+    /**
+     * @return the template of the message text of this row, null for the default text
+     */
+    public MessageTemplate getTextTemplate() {
+        return textTemplate;
+    }
+
+    /**
+     * @return the format of the cards sent for this row
+     */
+    public CardFormat getCardFormat() {
+        return cardFormat;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ProjectConfig that = (ProjectConfig) o;
+        return qgFailOnly == that.qgFailOnly
+            && qgChangeOnly == that.qgChangeOnly
+            && Double.compare(rateLimit, that.rateLimit) == 0
+            && rateBurst == that.rateBurst
+            && Objects.equals(locale, that.locale)
+            && Objects.equals(projectHook, that.projectHook)
+            && Objects.equals(projectKey, that.projectKey)
+            && Objects.equals(notify, that.notify)
+            && Objects.equals(titleTemplate, that.titleTemplate)
+            && Objects.equals(textTemplate, that.textTemplate)
+            && cardFormat == that.cardFormat;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(projectHook, projectKey, notify, qgFailOnly, qgChangeOnly, rateLimit, rateBurst, locale,
+            titleTemplate, textTemplate, cardFormat);
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectConfig{" +
+            "projectHook='" + projectHook + '\'' +
+            ", projectKey='" + projectKey + '\'' +
+            ", notify='" + notify + '\'' +
+            ", qgFailOnly=" + qgFailOnly +
+            ", qgChangeOnly=" + qgChangeOnly +
+            ", rateLimit=" + rateLimit +
+            ", rateBurst=" + rateBurst +
+            ", locale=" + locale +
+            ", titleTemplate='" + titleTemplate + '\'' +
+            ", textTemplate='" + textTemplate + '\'' +
+            ", cardFormat=" + cardFormat +
+            '}';
+    }
+
+    /**
+     * @return the part of the project key before the optional ";branch" suffix, used to match analysed projects
+     */
+    public String getProjectKeyPattern() {
+        final int separator = projectKey.indexOf(BRANCH_SEPARATOR);
+        return separator < 0 ? projectKey : projectKey.substring(0, separator);
+    }
+
+    /**
+     * @return the branch after the ";" in the project key, or an empty string when notifications are not limited to
+     * one branch
+     */
+    public String getTargetBranch() {
+        final String[] split = projectKey.split(String.valueOf(BRANCH_SEPARATOR));
+        if (split.length == 2) {
+            return split[1];
+        }
+        return "";
+    }
 }
@@ -1,13 +1,46 @@
 package se.denacode.sonar.plugin.teamsnotifier.common.component;
 
 import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import se.denacode.sonar.plugin.teamsnotifier.common.template.MessageTemplate;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.CardFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
 public class ProjectConfigBuilder {
+    private static final Logger LOG = Loggers.get(ProjectConfigBuilder.class);
+
+    /**
+     * The fields of a project config row read by {@link #withConfiguration(Configuration, String)}
+     */
+    static final List<TeamsNotifierProp> ROW_PROPERTIES = Collections.unmodifiableList(Arrays.asList(
+        TeamsNotifierProp.PROJECT_HOOK,
+        TeamsNotifierProp.PROJECT_REGEXP,
+        TeamsNotifierProp.NOTIFY,
+        TeamsNotifierProp.QG_FAIL_ONLY,
+        TeamsNotifierProp.QG_CHANGE_ONLY,
+        TeamsNotifierProp.PROJECT_RATE_LIMIT,
+        TeamsNotifierProp.PROJECT_RATE_BURST,
+        TeamsNotifierProp.PROJECT_LOCALE,
+        TeamsNotifierProp.TITLE_TEMPLATE,
+        TeamsNotifierProp.TEXT_TEMPLATE,
+        TeamsNotifierProp.CARD_FORMAT));
+
     private String projectHook;
     private String projectKeyOrRegExp;
     private String notify;
     private boolean qgFailOnly;
+    private boolean qgChangeOnly;
+    private double rateLimit;
+    private int rateBurst;
+    private Locale locale;
+    private MessageTemplate titleTemplate;
+    private MessageTemplate textTemplate;
+    private CardFormat cardFormat;
 
 
     public ProjectConfigBuilder from(final ProjectConfig c) {
@@ -15,6 +48,13 @@ public class ProjectConfigBuilder {
         projectKeyOrRegExp = c.getProjectKey();
         notify = c.getNotify();
         qgFailOnly = c.isQgFailOnly();
+        qgChangeOnly = c.isQgChangeOnly();
+        rateLimit = c.getRateLimit();
+        rateBurst = c.getRateBurst();
+        locale = c.getLocale();
+        titleTemplate = c.getTitleTemplate();
+        textTemplate = c.getTextTemplate();
+        cardFormat = c.getCardFormat();
         return this;
     }
 
@@ -38,12 +78,54 @@ public class ProjectConfigBuilder {
         return this;
     }
 
+    public ProjectConfigBuilder setQgChangeOnly(final boolean qgChangeOnly) {
+        this.qgChangeOnly = qgChangeOnly;
+        return this;
+    }
+
+    public ProjectConfigBuilder setRateLimit(final double rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    public ProjectConfigBuilder setRateBurst(final int rateBurst) {
+        this.rateBurst = rateBurst;
+        return this;
+    }
+
+    public ProjectConfigBuilder setLocale(final Locale locale) {
+        this.locale = locale;
+        return this;
+    }
+
+    public ProjectConfigBuilder setTitleTemplate(final MessageTemplate titleTemplate) {
+        this.titleTemplate = titleTemplate;
+        return this;
+    }
+
+    public ProjectConfigBuilder setTextTemplate(final MessageTemplate textTemplate) {
+        this.textTemplate = textTemplate;
+        return this;
+    }
+
+    public ProjectConfigBuilder setCardFormat(final CardFormat cardFormat) {
+        this.cardFormat = cardFormat;
+        return this;
+    }
+
     public ProjectConfig build() {
         return new ProjectConfig(
             this.projectHook,
             this.projectKeyOrRegExp,
             this.notify,
-            this.qgFailOnly
+            this.qgFailOnly,
+            this.qgChangeOnly,
+            this.rateLimit,
+            this.rateBurst,
+            this.locale,
+            this.titleTemplate,
+            this.textTemplate,
+            this.cardFormat
         );
     }
 
@@ -56,9 +138,42 @@ public class ProjectConfigBuilder {
         this.notify = settings.get(configurationPrefix + TeamsNotifierProp.NOTIFY.property()).orElse("");
         this.qgFailOnly = settings.getBoolean(
             configurationPrefix + TeamsNotifierProp.QG_FAIL_ONLY.property()).orElse(true);
+        this.qgChangeOnly = settings.getBoolean(
+            configurationPrefix + TeamsNotifierProp.QG_CHANGE_ONLY.property()).orElse(false);
+        this.rateLimit = settings.getDouble(
+            configurationPrefix + TeamsNotifierProp.PROJECT_RATE_LIMIT.property()).orElse(0d);
+        this.rateBurst = settings.getInt(
+            configurationPrefix + TeamsNotifierProp.PROJECT_RATE_BURST.property()).orElse(0);
+        // Parsed once here so messages only look the locale up
+        this.locale = settings.get(configurationPrefix + TeamsNotifierProp.PROJECT_LOCALE.property())
+            .map(String::trim)
+            .filter(tag -> !tag.isEmpty())
+            .map(tag -> Locale.forLanguageTag(tag.replace('_', '-')))
+            .orElse(null);
+        // Compiled once here so messages only render them
+        this.titleTemplate = template(settings, configurationPrefix + TeamsNotifierProp.TITLE_TEMPLATE.property());
+        this.textTemplate = template(settings, configurationPrefix + TeamsNotifierProp.TEXT_TEMPLATE.property());
+        this.cardFormat = CardFormat.parse(
+            settings.get(configurationPrefix + TeamsNotifierProp.CARD_FORMAT.property()).orElse(null));
         return this;
     }
 
+    /**
+     * @return the compiled template, or null for the default one when it is empty or invalid
+     */
+    private static MessageTemplate template(final Configuration settings, final String key) {
+        final String source = settings.get(key).filter(value -> !value.trim().isEmpty()).orElse(null);
+        if (source == null) {
+            return null;
+        }
+        try {
+            return MessageTemplate.compile(source);
+        } catch (final IllegalArgumentException e) {
+            LOG.warn("Ignoring the invalid template {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
     public static ProjectConfig cloneProjectConfig(final ProjectConfig projectConfig) {
         return new ProjectConfigBuilder().from(projectConfig).build();
     }
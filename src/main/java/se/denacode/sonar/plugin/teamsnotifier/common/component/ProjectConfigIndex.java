@@ -0,0 +1,356 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Immutable lookup structure from an analysed project key to its {@link ProjectConfig}, built once per settings
+ * change.
+ * <p>
+ * The project key pattern of every configuration row (the part before the optional ";branch") is classified as
+ * </p>
+ * <ul>
+ * <li>an exact key, e.g. <code>com.acme:app</code>, stored in a hash map. Dots are taken literally.</li>
+ * <li>a literal prefix, e.g. <code>com.acme:*</code> or <code>com.acme.*</code>, stored in a prefix trie</li>
+ * <li>a regular expression, e.g. <code>com\.acme:(app|lib)</code>, precompiled and attached to the trie node of its
+ * literal leading text. All expressions sharing a node are combined into a single {@link Pattern}, except the ones
+ * with back-references or named groups, whose meaning depends on the group numbers and names, which are matched
+ * on their own.</li>
+ * </ul>
+ * <p>
+ * An exact match wins over the longest prefix match, which wins over the first matching regular expression in
+ * configuration order. A lookup walks the trie once, so its cost depends on the length of the project key rather
+ * than on the number of configuration rows.
+ * </p>
+ */
+public final class ProjectConfigIndex {
+
+    private static final Logger LOG = Loggers.get(ProjectConfigIndex.class);
+
+    private static final String REGEX_META_CHARACTERS = "\\[](){}*+?^$|";
+    private static final String QUANTIFIERS = "*+?{";
+
+    static final ProjectConfigIndex EMPTY = of(Collections.emptyList());
+
+    private final Map<String, Slot> exact;
+    private final Node trie;
+    private final int size;
+
+    private ProjectConfigIndex(final Map<String, Slot> exact, final Node trie, final int size) {
+        this.exact = exact;
+        this.trie = trie;
+        this.size = size;
+    }
+
+    /**
+     * @param projectConfigs the configuration rows, in configuration order
+     * @return the index of the given rows
+     */
+    public static ProjectConfigIndex of(final List<ProjectConfig> projectConfigs) {
+        final Map<String, List<ProjectConfig>> rowsByPattern = new LinkedHashMap<>();
+        for (final ProjectConfig projectConfig : projectConfigs) {
+            rowsByPattern.computeIfAbsent(projectConfig.getProjectKeyPattern(), k -> new ArrayList<>()).add(projectConfig);
+        }
+
+        final Map<String, Slot> exact = new HashMap<>();
+        final Node trie = new Node();
+        int order = 0;
+        for (final Map.Entry<String, List<ProjectConfig>> entry : rowsByPattern.entrySet()) {
+            final Slot slot = new Slot(order++, entry.getValue().toArray(new ProjectConfig[0]));
+            final String pattern = entry.getKey();
+            if (isLiteral(pattern)) {
+                exact.put(pattern, slot);
+            } else if (pattern.endsWith(".*") && isLiteral(pattern.substring(0, pattern.length() - 2))) {
+                trie.insert(pattern.substring(0, pattern.length() - 2)).prefix = slot;
+            } else if (pattern.endsWith("*") && isLiteral(pattern.substring(0, pattern.length() - 1))) {
+                trie.insert(pattern.substring(0, pattern.length() - 1)).prefix = slot;
+            } else if (isValidRegex(pattern)) {
+                trie.insert(literalPrefix(pattern)).addRegex(pattern, slot);
+            } else {
+                LOG.warn("Project key [{}] is not a valid regular expression, matching it literally", pattern);
+                exact.putIfAbsent(pattern, slot);
+            }
+        }
+        trie.compile();
+        return new ProjectConfigIndex(exact, trie, projectConfigs.size());
+    }
+
+    /**
+     * @param projectKey the key of the analysed project
+     * @param branch     the analysed branch, used to choose between rows sharing the same project key pattern
+     * @return the best matching configuration row, if any
+     */
+    public Optional<ProjectConfig> find(final String projectKey, final String branch) {
+        final Slot exactMatch = this.exact.get(projectKey);
+        if (exactMatch != null) {
+            return Optional.of(exactMatch.select(branch));
+        }
+
+        // Longest literal prefix
+        Slot prefixMatch = this.trie.prefix;
+        Node node = this.trie;
+        for (int i = 0; i < projectKey.length() && node != null; i++) {
+            node = node.child(projectKey.charAt(i));
+            if (node != null && node.prefix != null) {
+                prefixMatch = node.prefix;
+            }
+        }
+        if (prefixMatch != null) {
+            return Optional.of(prefixMatch.select(branch));
+        }
+
+        // First regular expression in configuration order, only nodes on the path of the key are candidates
+        Slot regexMatch = this.trie.matchRegex(projectKey, null);
+        node = this.trie;
+        for (int i = 0; i < projectKey.length() && node != null; i++) {
+            node = node.child(projectKey.charAt(i));
+            if (node != null) {
+                regexMatch = node.matchRegex(projectKey, regexMatch);
+            }
+        }
+        return regexMatch == null ? Optional.empty() : Optional.of(regexMatch.select(branch));
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private static boolean isLiteral(final String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidRegex(final String pattern) {
+        try {
+            Pattern.compile(pattern);
+            return true;
+        } catch (final PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the text every match of the regular expression has to start with, possibly empty
+     */
+    static String literalPrefix(final String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            // Alternatives may start differently, do not try to be clever
+            return "";
+        }
+        final StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                prefix.append(regex.charAt(++i));
+            } else if (c == '.' || REGEX_META_CHARACTERS.indexOf(c) >= 0) {
+                if (QUANTIFIERS.indexOf(c) >= 0 && prefix.length() > 0) {
+                    // The quantified character is optional or repeated
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            } else {
+                prefix.append(c);
+            }
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * @return true when the regular expression refers to its groups by number or name, so combining it with others
+     * would change what it matches
+     */
+    static boolean hasGroupReferences(final String regex) {
+        for (int i = 0; i + 1 < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            final char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if ((next >= '1' && next <= '9') || next == 'k') {
+                    return true;
+                }
+                i++;
+            } else if (c == '(' && regex.startsWith("?<", i + 1) && i + 3 < regex.length()
+                && Character.isLetter(regex.charAt(i + 3))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasTopLevelAlternation(final String regex) {
+        int depth = 0;
+        boolean inCharacterClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inCharacterClass) {
+                inCharacterClass = c != ']';
+            } else if (c == '[') {
+                inCharacterClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * All configuration rows sharing one project key pattern, e.g. the same project with different target branches.
+     */
+    private static final class Slot {
+        private final int order;
+        private final ProjectConfig[] rows;
+
+        private Slot(final int order, final ProjectConfig[] rows) {
+            this.order = order;
+            this.rows = rows;
+        }
+
+        private ProjectConfig select(final String branch) {
+            if (this.rows.length == 1) {
+                return this.rows[0];
+            }
+            ProjectConfig anyBranch = null;
+            for (final ProjectConfig row : this.rows) {
+                final String targetBranch = row.getTargetBranch();
+                if (targetBranch.equals(branch)) {
+                    return row;
+                }
+                if (anyBranch == null && targetBranch.isEmpty()) {
+                    anyBranch = row;
+                }
+            }
+            return anyBranch != null ? anyBranch : this.rows[0];
+        }
+    }
+
+    private static final class Node {
+        private Map<Character, Node> children = Collections.emptyMap();
+        private Slot prefix;
+        private List<String> regexes;
+        private List<Slot> regexSlots = Collections.emptyList();
+        private Pattern combined;
+        private int[] groups;
+        private List<Pattern> separate = Collections.emptyList();
+        private List<Slot> separateSlots = Collections.emptyList();
+
+        private Node child(final char c) {
+            return this.children.get(c);
+        }
+
+        private Node insert(final String key) {
+            Node node = this;
+            for (int i = 0; i < key.length(); i++) {
+                if (node.children.isEmpty()) {
+                    node.children = new HashMap<>();
+                }
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            return node;
+        }
+
+        private void addRegex(final String regex, final Slot slot) {
+            if (hasGroupReferences(regex)) {
+                this.addSeparate(Pattern.compile(regex), slot);
+                return;
+            }
+            if (this.regexes == null) {
+                this.regexes = new ArrayList<>();
+                this.regexSlots = new ArrayList<>();
+            }
+            this.regexes.add(regex);
+            this.regexSlots.add(slot);
+        }
+
+        private void addSeparate(final Pattern pattern, final Slot slot) {
+            if (this.separate.isEmpty()) {
+                this.separate = new ArrayList<>();
+                this.separateSlots = new ArrayList<>();
+            }
+            this.separate.add(pattern);
+            this.separateSlots.add(slot);
+        }
+
+        /**
+         * Combines the regular expressions of this node into <code>(r1)|(r2)|...</code> and remembers the group of
+         * each alternative.
+         */
+        private void compile() {
+            if (this.regexes != null) {
+                this.combine();
+                this.regexes = null;
+            }
+            for (final Node child : this.children.values()) {
+                child.compile();
+            }
+        }
+
+        private void combine() {
+            final StringBuilder alternatives = new StringBuilder();
+            this.groups = new int[this.regexes.size()];
+            int group = 1;
+            for (int i = 0; i < this.regexes.size(); i++) {
+                final String regex = this.regexes.get(i);
+                if (i > 0) {
+                    alternatives.append('|');
+                }
+                alternatives.append('(').append(regex).append(')');
+                this.groups[i] = group;
+                group += 1 + Pattern.compile(regex).matcher("").groupCount();
+            }
+            try {
+                this.combined = Pattern.compile(alternatives.toString());
+            } catch (final PatternSyntaxException e) {
+                // E.g. a comment in an expression with the COMMENTS flag swallowing the closing parenthesis
+                LOG.debug("Cannot combine the project key expressions {}, matching them one by one", this.regexes);
+                this.groups = null;
+                for (int i = 0; i < this.regexes.size(); i++) {
+                    this.addSeparate(Pattern.compile(this.regexes.get(i)), this.regexSlots.get(i));
+                }
+                this.regexSlots = Collections.emptyList();
+            }
+        }
+
+        private Slot matchRegex(final String projectKey, final Slot best) {
+            Slot match = best;
+            for (int i = 0; i < this.separate.size(); i++) {
+                final Slot slot = this.separateSlots.get(i);
+                if ((match == null || slot.order < match.order) && this.separate.get(i).matcher(projectKey).matches()) {
+                    match = slot;
+                }
+            }
+            if (this.combined == null) {
+                return match;
+            }
+            final Matcher matcher = this.combined.matcher(projectKey);
+            if (!matcher.matches()) {
+                return match;
+            }
+            for (int i = 0; i < this.groups.length; i++) {
+                if (matcher.start(this.groups[i]) >= 0) {
+                    final Slot slot = this.regexSlots.get(i);
+                    return match == null || slot.order < match.order ? slot : match;
+                }
+            }
+            return match;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.component;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Immutable view of the project specific configuration, together with the raw <code>ckss.projectconfig*</code>
+ * values it was built from.
+ * <p>
+ * Those raw values are the fingerprint of the snapshot: {@link #isUpToDate(Configuration)} re-reads them and compares
+ * them with the stored ones. That is one settings lookup per row field on each analysis, plus whatever the
+ * {@link Configuration} does to return a value. Only when a value changed are the {@link ProjectConfig} map and the
+ * {@link ProjectConfigIndex} rebuilt and the configuration logged again.
+ * </p>
+ */
+final class SettingsSnapshot {
+
+    private static final Logger LOG = Loggers.get(SettingsSnapshot.class);
+
+    static final String GLOBAL_HOOK = "";
+
+    static final SettingsSnapshot EMPTY = new SettingsSnapshot(null, new String[0], new String[0],
+        Collections.emptyMap());
+
+    private final String rawConfig;
+    private final String[] rowKeys;
+    private final String[] rowValues;
+    private final Map<String, ProjectConfig> projectConfigMap;
+    private final ProjectConfigIndex projectConfigIndex;
+    private final Map<String, ProjectConfig> slowestRowByHook;
+
+    private SettingsSnapshot(final String rawConfig, final String[] rowKeys, final String[] rowValues,
+                             final Map<String, ProjectConfig> projectConfigMap) {
+        this.rawConfig = rawConfig;
+        this.rowKeys = rowKeys;
+        this.rowValues = rowValues;
+        this.projectConfigMap = Collections.unmodifiableMap(projectConfigMap);
+        this.projectConfigIndex = ProjectConfigIndex.of(new ArrayList<>(projectConfigMap.values()));
+        this.slowestRowByHook = slowestRowByHook(projectConfigMap.values());
+    }
+
+    /**
+     * Rows without hooks of their own send to the global hook, they are found under {@link #GLOBAL_HOOK}.
+     */
+    private static Map<String, ProjectConfig> slowestRowByHook(final Collection<ProjectConfig> projectConfigs) {
+        final Map<String, ProjectConfig> rows = new HashMap<>();
+        for (final ProjectConfig projectConfig : projectConfigs) {
+            if (projectConfig.getRateLimit() <= 0) {
+                continue;
+            }
+            final List<String> hooks = projectConfig.getProjectHooks().isEmpty()
+                ? Collections.singletonList(GLOBAL_HOOK) : projectConfig.getProjectHooks();
+            for (final String hook : hooks) {
+                rows.merge(hook, projectConfig, SettingsSnapshot::slower);
+            }
+        }
+        return rows;
+    }
+
+    static ProjectConfig slower(final ProjectConfig first, final ProjectConfig second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.getRateLimit() <= second.getRateLimit() ? first : second;
+    }
+
+    static SettingsSnapshot load(final Configuration settings) {
+        // Keep configuration order, the index uses it to rank regular expressions
+        final Map<String, ProjectConfig> map = new LinkedHashMap<>();
+        final String[] projectConfigIndexes = settings.getStringArray(TeamsNotifierProp.CONFIG.property());
+        final List<String> rowKeys = new ArrayList<>();
+
+        LOG.info("SlackNotifierProp.CONFIG=[{}]", (Object) projectConfigIndexes);
+        for (final String projectConfigIndex : projectConfigIndexes) {
+            final String prefix = TeamsNotifierProp.CONFIG.property() + "." + projectConfigIndex + ".";
+            final Optional<String> projectKey = settings.get(prefix + TeamsNotifierProp.PROJECT_REGEXP.property());
+            if (!projectKey.isPresent()) {
+                throw MessageException.of(
+                    "Slack notifier configuration is corrupted. At least one project specific parameter has no " +
+                        "project key. " +
+                        "Contact your administrator to update this configuration in the global administration section" +
+                        " of SonarQube.");
+            }
+            for (final TeamsNotifierProp rowProperty : ProjectConfigBuilder.ROW_PROPERTIES) {
+                rowKeys.add(prefix + rowProperty.property());
+            }
+            final ProjectConfig value = new ProjectConfigBuilder()
+                .withConfiguration(settings, prefix)
+                .build();
+            LOG.info("Found project configuration [{}]", value);
+            map.put(projectKey.get(), value);
+        }
+
+        final String[] keys = rowKeys.toArray(new String[0]);
+        final String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = settings.get(keys[i]).orElse(null);
+        }
+        return new SettingsSnapshot(settings.get(TeamsNotifierProp.CONFIG.property()).orElse(null), keys, values, map);
+    }
+
+    /**
+     * @return true when the raw project config values are still the ones this snapshot was built from
+     */
+    boolean isUpToDate(final Configuration settings) {
+        if (!Objects.equals(this.rawConfig, settings.get(TeamsNotifierProp.CONFIG.property()).orElse(null))) {
+            return false;
+        }
+        for (int i = 0; i < this.rowKeys.length; i++) {
+            if (!Objects.equals(this.rowValues[i], settings.get(this.rowKeys[i]).orElse(null))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Collection<ProjectConfig> getProjectConfigs() {
+        return this.projectConfigMap.values();
+    }
+
+    Map<String, ProjectConfig> getProjectConfigMap() {
+        return this.projectConfigMap;
+    }
+
+    ProjectConfigIndex getProjectConfigIndex() {
+        return this.projectConfigIndex;
+    }
+
+    /**
+     * @param hook a webhook URL, or {@link #GLOBAL_HOOK}
+     * @return of the rows sending to the hook and setting a rate limit, the one with the lowest rate, or null
+     */
+    ProjectConfig getSlowestRow(final String hook) {
+        return this.slowestRowByHook.get(hook);
+    }
+}
@@ -0,0 +1,221 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.template;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A message template like {@code Project {{project}} was analyzed{{#branch}} for branch {{branch}}{{/branch}}.}
+ * <ul>
+ * <li>{@code {{name}}} is replaced by the value of the {@link TemplateVariable}</li>
+ * <li>{@code {{#name}}...{{/name}}} is only rendered when the value is not empty</li>
+ * <li>{@code {{^name}}...{{/name}}} is only rendered when the value is empty</li>
+ * </ul>
+ * <p>
+ * Templates are parsed once, when the settings are refreshed, into an immutable tree of nodes which only append
+ * their literal texts and values to the message buffer when rendered. Compiled templates are shared by their text, so
+ * rows using the same template parse it once.
+ * </p>
+ */
+public final class MessageTemplate {
+
+    /**
+     * The values of the variables for one message
+     */
+    public interface Values {
+        /**
+         * @return the value, or null when there is none
+         */
+        String get(TemplateVariable variable);
+    }
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final int MAX_CACHED = 256;
+    private static final ConcurrentMap<String, MessageTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String source;
+    private final Node[] nodes;
+
+    private MessageTemplate(final String source, final Node[] nodes) {
+        this.source = source;
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return the compiled template, the same instance for the same text
+     * @throws IllegalArgumentException when the template has an unknown variable or an unclosed section
+     */
+    public static MessageTemplate compile(final String source) {
+        final MessageTemplate cached = CACHE.get(source);
+        if (cached != null) {
+            return cached;
+        }
+        final MessageTemplate compiled = new MessageTemplate(source, parse(source));
+        if (CACHE.size() >= MAX_CACHED) {
+            // Only grows when the settings change, start over rather than tracking usage
+            CACHE.clear();
+        }
+        final MessageTemplate previous = CACHE.putIfAbsent(source, compiled);
+        return previous == null ? compiled : previous;
+    }
+
+    /**
+     * Appends the message to the buffer.
+     */
+    public void render(final Values values, final StringBuilder out) {
+        renderAll(this.nodes, values, out);
+    }
+
+    public String getSource() {
+        return this.source;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || o instanceof MessageTemplate && this.source.equals(((MessageTemplate) o).source);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.source.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+
+    private static void renderAll(final Node[] nodes, final Values values, final StringBuilder out) {
+        for (final Node node : nodes) {
+            node.render(values, out);
+        }
+    }
+
+    private static boolean isEmpty(final String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static Node[] parse(final String source) {
+        final Deque<SectionBuilder> sections = new ArrayDeque<>();
+        List<Node> nodes = new ArrayList<>();
+        int position = 0;
+        while (position < source.length()) {
+            final int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                nodes.add(new Literal(source.substring(position)));
+                break;
+            }
+            if (open > position) {
+                nodes.add(new Literal(source.substring(position, open)));
+            }
+            final int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed " + OPEN + " at " + open + " in template " + source);
+            }
+            final String tag = source.substring(open + OPEN.length(), close).trim();
+            final char kind = tag.isEmpty() ? ' ' : tag.charAt(0);
+            switch (kind) {
+                case '#':
+                case '^':
+                    sections.push(new SectionBuilder(variable(tag.substring(1), source), kind == '^', nodes));
+                    nodes = new ArrayList<>();
+                    break;
+                case '/':
+                    final TemplateVariable closed = variable(tag.substring(1), source);
+                    if (sections.isEmpty() || sections.peek().variable != closed) {
+                        throw new IllegalArgumentException(
+                            "Unexpected " + OPEN + tag + CLOSE + " in template " + source);
+                    }
+                    final SectionBuilder section = sections.pop();
+                    section.parent.add(new Section(section.variable, section.inverted, nodes.toArray(new Node[0])));
+                    nodes = section.parent;
+                    break;
+                default:
+                    nodes.add(new Variable(variable(tag, source)));
+                    break;
+            }
+            position = close + CLOSE.length();
+        }
+        if (!sections.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed section " + sections.peek().variable.variableName()
+                + " in template " + source);
+        }
+        return nodes.toArray(new Node[0]);
+    }
+
+    private static TemplateVariable variable(final String name, final String source) {
+        final TemplateVariable variable = TemplateVariable.byName(name.trim());
+        if (variable == null) {
+            throw new IllegalArgumentException("Unknown variable '" + name.trim() + "' in template " + source);
+        }
+        return variable;
+    }
+
+    private interface Node {
+        void render(Values values, StringBuilder out);
+    }
+
+    private static final class Literal implements Node {
+        private final String text;
+
+        private Literal(final String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(final Values values, final StringBuilder out) {
+            out.append(this.text);
+        }
+    }
+
+    private static final class Variable implements Node {
+        private final TemplateVariable variable;
+
+        private Variable(final TemplateVariable variable) {
+            this.variable = variable;
+        }
+
+        @Override
+        public void render(final Values values, final StringBuilder out) {
+            final String value = values.get(this.variable);
+            if (value != null) {
+                out.append(value);
+            }
+        }
+    }
+
+    private static final class Section implements Node {
+        private final TemplateVariable variable;
+        private final boolean inverted;
+        private final Node[] children;
+
+        private Section(final TemplateVariable variable, final boolean inverted, final Node[] children) {
+            this.variable = variable;
+            this.inverted = inverted;
+            this.children = children;
+        }
+
+        @Override
+        public void render(final Values values, final StringBuilder out) {
+            if (isEmpty(values.get(this.variable)) == this.inverted) {
+                renderAll(this.children, values, out);
+            }
+        }
+    }
+
+    private static final class SectionBuilder {
+        private final TemplateVariable variable;
+        private final boolean inverted;
+        private final List<Node> parent;
+
+        private SectionBuilder(final TemplateVariable variable, final boolean inverted, final List<Node> parent) {
+            this.variable = variable;
+            this.inverted = inverted;
+            this.parent = parent;
+        }
+    }
+}
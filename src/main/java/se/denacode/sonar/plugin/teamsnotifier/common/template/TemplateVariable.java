@@ -0,0 +1,57 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.template;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The values a {@link MessageTemplate} can show, e.g. {@code {{project}}}.
+ */
+public enum TemplateVariable {
+    /**
+     * Name of the analysed project
+     */
+    PROJECT("project"),
+    PROJECT_KEY("projectKey"),
+    /**
+     * Name of the analysed branch, empty for the main branch or when the branch is not included in messages
+     */
+    BRANCH("branch"),
+    /**
+     * Quality Gate status, e.g. ERROR
+     */
+    STATUS("status"),
+    QUALITY_GATE("qualityGate"),
+    /**
+     * Who to notify, from the project config row
+     */
+    NOTIFY("notify"),
+    /**
+     * URL of the project dashboard
+     */
+    URL("url");
+
+    private static final Map<String, TemplateVariable> BY_NAME = new HashMap<>();
+
+    static {
+        for (final TemplateVariable variable : values()) {
+            BY_NAME.put(variable.variableName, variable);
+        }
+    }
+
+    private final String variableName;
+
+    TemplateVariable(final String variableName) {
+        this.variableName = variableName;
+    }
+
+    public String variableName() {
+        return this.variableName;
+    }
+
+    /**
+     * @return the variable, or null when there is none of this name
+     */
+    static TemplateVariable byName(final String name) {
+        return BY_NAME.get(name);
+    }
+}
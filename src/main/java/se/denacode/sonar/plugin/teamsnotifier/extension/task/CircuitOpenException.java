@@ -0,0 +1,25 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling a webhook whose circuit is open, see {@link HookCircuitBreaker}.
+ */
+class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    /**
+     * @param retryAfterMillis how long the circuit still fails calls
+     */
+    CircuitOpenException(final long retryAfterMillis) {
+        super("The circuit of the webhook is open for another " + retryAfterMillis + "ms");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    long getRetryAfterMillis() {
+        return this.retryAfterMillis;
+    }
+}
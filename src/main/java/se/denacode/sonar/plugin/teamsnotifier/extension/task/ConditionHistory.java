@@ -0,0 +1,299 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.ce.posttask.QualityGate;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * The last {@link #DEPTH} values of the quality gate conditions of every project and branch, so messages can show
+ * how they changed since the previous analyses.
+ * <p>
+ * Each project and branch has one fixed size file under the SonarQube data directory, found by the hash of its key
+ * and read and rewritten whole for each analysis. Nothing is kept in memory, so the number of projects does not
+ * matter. A file holds a ring of {@link #DEPTH} values for up to {@link #MAX_METRICS} metrics:
+ * </p>
+ * <pre>
+ * key length (short) | key (KEY_BYTES) | MAX_METRICS x [metric length (short) | metric (METRIC_BYTES) |
+ * next (int) | count (int) | DEPTH x value (double)]
+ * </pre>
+ * <p>
+ * The {@link #FILE_SIZE} bytes are read and written on the Compute Engine worker finishing the analysis, without
+ * forcing them to disk, which costs about as much as one small page cache read and write. Files of branches and pull
+ * requests not analysed for the retention period are deleted once a day by a background thread.
+ * </p>
+ */
+@ComputeEngineSide
+public class ConditionHistory implements Startable {
+
+    private static final Logger LOG = Loggers.get(ConditionHistory.class);
+
+    public static final int DEPTH = 8;
+    static final int MAX_METRICS = 16;
+    private static final int KEY_BYTES = 254;
+    private static final int METRIC_BYTES = 62;
+    private static final int SLOT_SIZE = Short.BYTES + METRIC_BYTES + 2 * Integer.BYTES + DEPTH * Double.BYTES;
+    private static final int KEYS_SIZE = Short.BYTES + KEY_BYTES;
+    static final int FILE_SIZE = KEYS_SIZE + MAX_METRICS * SLOT_SIZE;
+    private static final int LOCKS = 64;
+    public static final int DEFAULT_RETENTION_DAYS = 30;
+
+    private final Configuration settings;
+    private final Object[] locks = new Object[LOCKS];
+    private volatile Path directory;
+    private ScheduledExecutorService cleaner;
+
+    /**
+     * Default constructor invoked by SonarQube.
+     *
+     * @param settings
+     */
+    public ConditionHistory(final Configuration settings) {
+        this.settings = settings;
+        for (int i = 0; i < LOCKS; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void start() {
+        final boolean enabled = this.settings.getBoolean(TeamsNotifierProp.TREND_ENABLED.property()).orElse(true);
+        final Optional<String> dataPath = this.settings.get(WebhookDispatchQueue.DATA_PATH_PROPERTY);
+        if (!enabled || !dataPath.isPresent()) {
+            return;
+        }
+        this.directory = Paths.get(dataPath.get(), "teams-notifier", "history");
+        LOG.info("Keeping the quality gate condition history in {}", this.directory);
+        final int retentionDays = this.settings.getInt(TeamsNotifierProp.TREND_RETENTION_DAYS.property())
+            .orElse(DEFAULT_RETENTION_DAYS);
+        if (retentionDays > 0) {
+            this.cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "teams-notifier-history");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.cleaner.scheduleWithFixedDelay(
+                () -> this.purge(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays)),
+                0, 1, TimeUnit.DAYS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (this.cleaner != null) {
+            this.cleaner.shutdownNow();
+            this.cleaner = null;
+        }
+        this.directory = null;
+    }
+
+    /**
+     * Deletes the history of the projects and branches last analysed before the given time.
+     *
+     * @return the number of deleted files
+     */
+    int purge(final long olderThanMillis) {
+        final Path dir = this.directory;
+        if (dir == null || !Files.isDirectory(dir)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (final DirectoryStream<Path> prefixes = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (final Path prefix : prefixes) {
+                final Object lock = this.locks[Integer.parseInt(prefix.getFileName().toString(), 16) % LOCKS];
+                try (final DirectoryStream<Path> files = Files.newDirectoryStream(prefix)) {
+                    for (final Path file : files) {
+                        // Not while an analysis of the same project is updating it
+                        synchronized (lock) {
+                            if (Files.getLastModifiedTime(file).toMillis() < olderThanMillis) {
+                                Files.delete(file);
+                                deleted++;
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("Failed to delete the old condition history in {}: {}", dir, e.getMessage());
+        }
+        if (deleted > 0) {
+            LOG.info("Deleted the condition history of {} project(s) and branch(es) not analysed lately", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Adds the values of the conditions to the history of the project and branch.
+     *
+     * @return the values before this analysis
+     */
+    Trend record(final String projectKey, final String branch, final QualityGate qualityGate) {
+        final Path dir = this.directory;
+        if (dir == null || qualityGate == null) {
+            return Trend.EMPTY;
+        }
+        final String key = projectKey + ';' + branch;
+        final byte[] hash = sha1(key);
+        final String name = hex(hash);
+        final Path file = dir.resolve(name.substring(0, 2)).resolve(name.substring(2));
+        synchronized (this.locks[(hash[0] & 0xff) % LOCKS]) {
+            try {
+                return this.update(file, key, qualityGate);
+            } catch (final IOException | RuntimeException e) {
+                LOG.warn("Failed to update the condition history of {}: {}", key, e.getMessage());
+                return Trend.EMPTY;
+            }
+        }
+    }
+
+    private Trend update(final Path file, final String key, final QualityGate qualityGate) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                // Read the whole file
+            }
+            final byte[] keyBytes = truncate(key, KEY_BYTES);
+            if (buffer.position() < FILE_SIZE
+                || !new String(keyBytes, StandardCharsets.UTF_8).equals(read(buffer, 0, KEY_BYTES))) {
+                // New file or, very unlikely, another project with the same hash
+                Arrays.fill(buffer.array(), (byte) 0);
+                write(buffer, 0, keyBytes);
+            }
+
+            final Map<String, double[]> previous = new HashMap<>();
+            for (final QualityGate.Condition condition : qualityGate.getConditions()) {
+                final double value = valueOf(condition);
+                final int slot = Double.isNaN(value) ? -1 : slot(buffer, condition.getMetricKey());
+                if (slot < 0) {
+                    continue;
+                }
+                final int offset = KEYS_SIZE + slot * SLOT_SIZE + Short.BYTES + METRIC_BYTES;
+                final int next = buffer.getInt(offset);
+                final int count = buffer.getInt(offset + Integer.BYTES);
+                final int values = offset + 2 * Integer.BYTES;
+                if (count > 0) {
+                    final double[] recent = new double[count];
+                    for (int i = 0; i < count; i++) {
+                        recent[i] = buffer.getDouble(values + ((next - count + i + DEPTH) % DEPTH) * Double.BYTES);
+                    }
+                    previous.put(condition.getMetricKey(), recent);
+                }
+                buffer.putDouble(values + next * Double.BYTES, value);
+                buffer.putInt(offset, (next + 1) % DEPTH);
+                buffer.putInt(offset + Integer.BYTES, Math.min(DEPTH, count + 1));
+            }
+
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            return previous.isEmpty() ? Trend.EMPTY : new Trend(previous);
+        }
+    }
+
+    /**
+     * @return the slot of the metric, a newly assigned one when it has none yet, or -1 when all slots are taken
+     */
+    private static int slot(final ByteBuffer buffer, final String metricKey) {
+        final byte[] metric = truncate(metricKey, METRIC_BYTES);
+        for (int slot = 0; slot < MAX_METRICS; slot++) {
+            final int offset = KEYS_SIZE + slot * SLOT_SIZE;
+            final String stored = read(buffer, offset, METRIC_BYTES);
+            if (stored.isEmpty()) {
+                write(buffer, offset, metric);
+                return slot;
+            }
+            if (stored.equals(new String(metric, StandardCharsets.UTF_8))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static double valueOf(final QualityGate.Condition condition) {
+        if (condition.getStatus() == QualityGate.EvaluationStatus.NO_VALUE) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(condition.getValue());
+        } catch (final NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static byte[] truncate(final String value, final int maxBytes) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= maxBytes ? bytes : Arrays.copyOf(bytes, maxBytes);
+    }
+
+    private static String read(final ByteBuffer buffer, final int offset, final int maxBytes) {
+        final int length = Math.min(maxBytes, Math.max(0, buffer.getShort(offset)));
+        return new String(buffer.array(), offset + Short.BYTES, length, StandardCharsets.UTF_8);
+    }
+
+    private static void write(final ByteBuffer buffer, final int offset, final byte[] bytes) {
+        buffer.putShort(offset, (short) bytes.length);
+        System.arraycopy(bytes, 0, buffer.array(), offset + Short.BYTES, bytes.length);
+    }
+
+    private static byte[] sha1(final String key) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The values of the conditions before an analysis.
+     */
+    static final class Trend {
+        static final Trend EMPTY = new Trend(Collections.emptyMap());
+
+        private final Map<String, double[]> previous;
+
+        Trend(final Map<String, double[]> previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * @return the values of the metric in the previous analyses, oldest first, or an empty array
+         */
+        double[] previous(final String metricKey) {
+            final double[] values = this.previous.get(metricKey);
+            return values == null ? new double[0] : values;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Circuit breaker per webhook URL, so calls to a deleted webhook or a host that is down fail at once instead of
+ * waiting for the connect timeout every time.
+ * <p>
+ * A closed circuit lets calls through and keeps the outcome of the last {@link #WINDOW_SIZE} of them. When at least
+ * the minimum number of calls failed at the configured rate the circuit opens, and calls fail without opening a
+ * connection until the cool-down has passed. The circuit is then half-open: one call is let through, and closes the
+ * circuit when it succeeds or opens it again when it fails.
+ * </p>
+ */
+class HookCircuitBreaker {
+
+    private static final Logger LOG = Loggers.get(HookCircuitBreaker.class);
+
+    static final int WINDOW_SIZE = 20;
+    static final int DEFAULT_FAILURE_RATE = 50;
+    static final int DEFAULT_MINIMUM_CALLS = 5;
+    static final long DEFAULT_COOL_DOWN_MILLIS = 60_000;
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final long coolDownNanos;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param failureRatePercent the percentage of failed calls opening the circuit, 0 or less disables the breaker
+     * @param minimumCalls       the number of calls needed before the failure rate is considered
+     * @param coolDownMillis     how long an open circuit fails calls before letting one through again
+     */
+    HookCircuitBreaker(final int failureRatePercent, final int minimumCalls, final long coolDownMillis) {
+        this(failureRatePercent, minimumCalls, coolDownMillis, System::nanoTime);
+    }
+
+    HookCircuitBreaker(final int failureRatePercent, final int minimumCalls, final long coolDownMillis,
+        final LongSupplier nanoClock) {
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = Math.max(1, Math.min(WINDOW_SIZE, minimumCalls));
+        this.coolDownNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, coolDownMillis));
+        this.nanoClock = nanoClock;
+    }
+
+    static HookCircuitBreaker of(final Configuration settings) {
+        return new HookCircuitBreaker(
+            settings.getInt(TeamsNotifierProp.CIRCUIT_FAILURE_RATE.property()).orElse(DEFAULT_FAILURE_RATE),
+            settings.getInt(TeamsNotifierProp.CIRCUIT_MINIMUM_CALLS.property()).orElse(DEFAULT_MINIMUM_CALLS),
+            settings.getLong(TeamsNotifierProp.CIRCUIT_COOL_DOWN.property()).orElse(DEFAULT_COOL_DOWN_MILLIS));
+    }
+
+    /**
+     * Asks whether a call to the hook may be made now.
+     *
+     * @return 0 when the call may be made, otherwise how many milliseconds remain before the circuit lets a call
+     * through again
+     */
+    long acquire(final String hook) {
+        if (this.failureRatePercent <= 0) {
+            return 0;
+        }
+        return this.circuit(hook).acquire(hook, this.nanoClock.getAsLong());
+    }
+
+    void onSuccess(final String hook) {
+        if (this.failureRatePercent > 0) {
+            this.circuit(hook).onSuccess(hook);
+        }
+    }
+
+    /**
+     * Records a failed call. Responses telling that the destination is alive but refused this message, like 400 or
+     * 429, count as successful calls.
+     */
+    void onFailure(final String hook, final IOException failure) {
+        if (this.failureRatePercent <= 0) {
+            return;
+        }
+        if (failure instanceof WebhookResponseException
+            && !isDestinationFailure(((WebhookResponseException) failure).getCode())) {
+            this.onSuccess(hook);
+        } else {
+            this.circuit(hook).onFailure(hook, this.nanoClock.getAsLong());
+        }
+    }
+
+    /**
+     * @return true for a deleted webhook (404, 410), request timeout (408) and server errors (5xx)
+     */
+    static boolean isDestinationFailure(final int code) {
+        return code == 404 || code == 410 || code == 408 || code >= 500;
+    }
+
+    State state(final String hook) {
+        final Circuit circuit = this.circuits.get(hook);
+        return circuit == null ? State.CLOSED : circuit.state();
+    }
+
+    /**
+     * @return the number of circuits that are open or half-open
+     */
+    long openCount() {
+        return this.circuits.values().stream().filter(circuit -> circuit.state() != State.CLOSED).count();
+    }
+
+    private Circuit circuit(final String hook) {
+        final Circuit circuit = this.circuits.get(hook);
+        return circuit != null ? circuit : this.circuits.computeIfAbsent(hook, key -> new Circuit());
+    }
+
+    /**
+     * The state of one hook. Calls to a hook take milliseconds at least, so a lock per hook is cheap enough.
+     */
+    private final class Circuit {
+        private final boolean[] failures = new boolean[WINDOW_SIZE];
+        private int next;
+        private int calls;
+        private int failed;
+        private State state = State.CLOSED;
+        private long openUntil;
+        private long trialUntil;
+
+        private synchronized State state() {
+            return this.state;
+        }
+
+        private synchronized long acquire(final String hook, final long now) {
+            switch (this.state) {
+                case OPEN:
+                    if (now - this.openUntil < 0) {
+                        return remainingMillis(this.openUntil - now);
+                    }
+                    LOG.info("Circuit of hook {} is half-open, trying one call", NotificationLog.host(hook));
+                    this.state = State.HALF_OPEN;
+                    this.trialUntil = now + HookCircuitBreaker.this.coolDownNanos;
+                    return 0;
+                case HALF_OPEN:
+                    // Another trial call once the previous one has taken a whole cool-down without an outcome
+                    if (now - this.trialUntil < 0) {
+                        return remainingMillis(this.trialUntil - now);
+                    }
+                    this.trialUntil = now + HookCircuitBreaker.this.coolDownNanos;
+                    return 0;
+                case CLOSED:
+                default:
+                    return 0;
+            }
+        }
+
+        private synchronized void onSuccess(final String hook) {
+            if (this.state == State.HALF_OPEN) {
+                LOG.info("Circuit of hook {} is closed again", NotificationLog.host(hook));
+                this.reset();
+                this.state = State.CLOSED;
+            } else if (this.state == State.CLOSED) {
+                this.record(false);
+            }
+        }
+
+        private synchronized void onFailure(final String hook, final long now) {
+            if (this.state == State.HALF_OPEN) {
+                LOG.warn("Circuit of hook {} is open again after a failed trial call, failing calls for {}ms",
+                    NotificationLog.host(hook), TimeUnit.NANOSECONDS.toMillis(HookCircuitBreaker.this.coolDownNanos));
+                this.open(now);
+            } else if (this.state == State.CLOSED) {
+                this.record(true);
+                if (this.calls >= HookCircuitBreaker.this.minimumCalls
+                    && this.failed * 100 >= HookCircuitBreaker.this.failureRatePercent * this.calls) {
+                    LOG.warn("Circuit of hook {} is open after {} failed call(s) out of {}, failing calls for {}ms",
+                        NotificationLog.host(hook), this.failed, this.calls,
+                        TimeUnit.NANOSECONDS.toMillis(HookCircuitBreaker.this.coolDownNanos));
+                    this.open(now);
+                }
+            }
+        }
+
+        private void record(final boolean failure) {
+            if (this.calls == WINDOW_SIZE) {
+                if (this.failures[this.next]) {
+                    this.failed--;
+                }
+            } else {
+                this.calls++;
+            }
+            this.failures[this.next] = failure;
+            if (failure) {
+                this.failed++;
+            }
+            this.next = (this.next + 1) % WINDOW_SIZE;
+        }
+
+        private void open(final long now) {
+            this.state = State.OPEN;
+            this.openUntil = now + HookCircuitBreaker.this.coolDownNanos;
+        }
+
+        private void reset() {
+            this.next = 0;
+            this.calls = 0;
+            this.failed = 0;
+        }
+    }
+
+    private static long remainingMillis(final long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos + 999_999));
+    }
+}
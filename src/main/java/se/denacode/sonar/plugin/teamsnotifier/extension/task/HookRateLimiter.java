@@ -0,0 +1,105 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per webhook URL, so notifications are sent no faster than Teams accepts them.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the theoretical arrival time of the next message (GCRA), updated
+ * with compare-and-set. Threads sending to different hooks never touch the same bucket and threads sending to the
+ * same hook do not lock.
+ * </p>
+ */
+class HookRateLimiter {
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final double defaultPermitsPerSecond;
+    private final int defaultBurst;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param permitsPerSecond messages per second per hook, 0 or less disables the limiter
+     * @param burst            messages that can be sent at once after the hook has been idle
+     */
+    HookRateLimiter(final double permitsPerSecond, final int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    HookRateLimiter(final double permitsPerSecond, final int burst, final LongSupplier nanoClock) {
+        this.defaultPermitsPerSecond = permitsPerSecond;
+        this.defaultBurst = burst;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Sets the rate of one hook, for example from a project config row.
+     *
+     * @param permitsPerSecond messages per second, 0 or less to use the global rate
+     * @param burst            burst size, 0 or less to use the global burst
+     */
+    void configure(final String hook, final double permitsPerSecond, final int burst) {
+        final double rate = permitsPerSecond > 0 ? permitsPerSecond : this.defaultPermitsPerSecond;
+        final int size = burst > 0 ? burst : this.defaultBurst;
+        final Bucket bucket = this.buckets.get(hook);
+        if (bucket == null) {
+            this.buckets.putIfAbsent(hook, new Bucket(rate, size));
+        } else {
+            bucket.update(rate, size);
+        }
+    }
+
+    /**
+     * Takes a permit for the hook, possibly one in the future.
+     *
+     * @return 0 when the message can be sent now, otherwise how many milliseconds to wait before sending it. The
+     * permit is taken in both cases.
+     */
+    long reserve(final String hook) {
+        Bucket bucket = this.buckets.get(hook);
+        if (bucket == null) {
+            bucket = this.buckets.computeIfAbsent(hook,
+                key -> new Bucket(this.defaultPermitsPerSecond, this.defaultBurst));
+        }
+        final long waitNanos = bucket.reserve(this.nanoClock.getAsLong());
+        return waitNanos == 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999));
+    }
+
+    private static final class Bucket {
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+        private volatile long intervalNanos;
+        private volatile long toleranceNanos;
+
+        private Bucket(final double permitsPerSecond, final int burst) {
+            this.update(permitsPerSecond, burst);
+        }
+
+        private void update(final double permitsPerSecond, final int burst) {
+            if (permitsPerSecond <= 0) {
+                this.intervalNanos = 0;
+                this.toleranceNanos = 0;
+            } else {
+                this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+                this.toleranceNanos = this.intervalNanos * (Math.max(1, burst) - 1);
+            }
+        }
+
+        private long reserve(final long now) {
+            final long interval = this.intervalNanos;
+            if (interval == 0) {
+                return 0;
+            }
+            final long tolerance = this.toleranceNanos;
+            while (true) {
+                final long current = this.theoreticalArrival.get();
+                final long start = current == Long.MIN_VALUE ? now : Math.max(current, now);
+                if (this.theoreticalArrival.compareAndSet(current, start + interval)) {
+                    return Math.max(0, start - tolerance - now);
+                }
+            }
+        }
+    }
+}
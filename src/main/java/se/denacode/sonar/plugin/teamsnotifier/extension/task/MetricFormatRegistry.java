@@ -0,0 +1,91 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.sonar.api.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * The {@link MetricValueFormat} of every metric, looked up once per condition.
+ * <p>
+ * Filled with the core metrics when created and with the metrics of the other plugins, read from the
+ * {@link MetricFinder}, when started. A metric created afterwards is looked up the first time it is formatted.
+ * </p>
+ */
+@ComputeEngineSide
+public class MetricFormatRegistry implements Startable {
+
+    private static final Logger LOG = Loggers.get(MetricFormatRegistry.class);
+
+    private final MetricFinder metricFinder;
+    private final ConcurrentMap<String, MetricValueFormat> formats = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor invoked by SonarQube when it provides a {@link MetricFinder}.
+     *
+     * @param metricFinder
+     */
+    public MetricFormatRegistry(final MetricFinder metricFinder) {
+        this.metricFinder = metricFinder;
+        for (final Metric<?> metric : CoreMetrics.getMetrics()) {
+            this.register(metric);
+        }
+    }
+
+    /**
+     * Only knows the core metrics.
+     */
+    public MetricFormatRegistry() {
+        this(null);
+    }
+
+    @Override
+    public void start() {
+        if (this.metricFinder == null) {
+            return;
+        }
+        try {
+            for (final Metric<?> metric : this.metricFinder.findAll()) {
+                this.register(metric);
+            }
+            LOG.info("Loaded the value formats of {} metrics", this.formats.size());
+        } catch (final RuntimeException e) {
+            LOG.warn("Failed to load the metrics, only core metrics will be formatted: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to release
+    }
+
+    private void register(final Metric<?> metric) {
+        this.formats.put(metric.getKey(), MetricValueFormat.of(metric.getType()));
+    }
+
+    MetricValueFormat get(final String metricKey) {
+        final MetricValueFormat format = this.formats.get(metricKey);
+        if (format != null) {
+            return format;
+        }
+        return this.formats.computeIfAbsent(metricKey, this::find);
+    }
+
+    private MetricValueFormat find(final String metricKey) {
+        if (this.metricFinder == null) {
+            return MetricValueFormat.RAW;
+        }
+        try {
+            final Metric<?> metric = this.metricFinder.findByKey(metricKey);
+            return metric == null ? MetricValueFormat.RAW : MetricValueFormat.of(metric.getType());
+        } catch (final RuntimeException e) {
+            LOG.warn("Failed to look metric {} up: {}", metricKey, e.getMessage());
+            return MetricValueFormat.RAW;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sonar.api.i18n.I18n;
+
+/**
+ * Display names of the quality gate metrics per locale, so the bundles are only searched once per metric instead of
+ * for every condition of every analysis.
+ * <p>
+ * The cache lives as long as the component owning it, i.e. until the plugin is reloaded. It is emptied when it
+ * holds more than {@link #MAX_SIZE} names, which only happens with many custom metrics in many locales.
+ * </p>
+ */
+class MetricNameCache {
+
+    static final int MAX_SIZE = 1024;
+
+    private final I18n i18n;
+    private final ConcurrentMap<Locale, ConcurrentMap<String, String>> names = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    MetricNameCache(final I18n i18n) {
+        this.i18n = i18n;
+    }
+
+    /**
+     * @return the name of the metric in the locale, or the metric key when it has none
+     */
+    String get(final Locale locale, final String metricKey) {
+        ConcurrentMap<String, String> byKey = this.names.get(locale);
+        if (byKey == null) {
+            byKey = this.names.computeIfAbsent(locale, l -> new ConcurrentHashMap<>());
+        }
+        final String cached = byKey.get(metricKey);
+        if (cached != null) {
+            return cached;
+        }
+        final String message = this.i18n.message(locale, "metric." + metricKey + ".name", metricKey);
+        final String name = message == null ? metricKey : message;
+        if (byKey.putIfAbsent(metricKey, name) == null && this.size.incrementAndGet() > MAX_SIZE) {
+            this.clear();
+        }
+        return name;
+    }
+
+    void clear() {
+        this.names.clear();
+        this.size.set(0);
+    }
+
+    int size() {
+        return this.size.get();
+    }
+}
@@ -0,0 +1,166 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.text.DecimalFormat;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * How the values and thresholds of a quality gate condition are shown, depending on the type of its metric.
+ * Values that can not be parsed are shown as they are.
+ */
+enum MetricValueFormat {
+    /**
+     * The value as measured.
+     */
+    RAW {
+        @Override
+        void append(final String value, final StringBuilder sb) {
+            sb.append(value);
+        }
+    },
+    /**
+     * 25.01% instead of 25.0066666666666667.
+     */
+    PERCENT {
+        @Override
+        void append(final String value, final StringBuilder sb) {
+            final double number = parse(value);
+            if (Double.isNaN(number)) {
+                sb.append(value);
+            } else {
+                sb.append(DECIMAL_FORMAT.get().format(number));
+            }
+            sb.append('%');
+        }
+    },
+    /**
+     * A to E instead of 1 to 5.
+     */
+    RATING {
+        @Override
+        void append(final String value, final StringBuilder sb) {
+            final double number = parse(value);
+            final long rating = Math.round(number);
+            if (rating >= 1 && rating <= RATINGS.length()) {
+                sb.append(RATINGS.charAt((int) rating - 1));
+            } else {
+                sb.append(value);
+            }
+        }
+    },
+    /**
+     * Technical debt in minutes, shown with 8 hour days as 2d 3h, 3h 15min or 15min.
+     */
+    WORK_DURATION {
+        @Override
+        void append(final String value, final StringBuilder sb) {
+            final double number = parse(value);
+            if (Double.isNaN(number)) {
+                sb.append(value);
+                return;
+            }
+            appendDuration(Math.round(number), sb);
+        }
+
+        @Override
+        void appendNumber(final double number, final StringBuilder sb) {
+            appendDuration(Math.round(number), sb);
+        }
+
+        private void appendDuration(final long value, final StringBuilder sb) {
+            long minutes = value;
+            if (minutes < 0) {
+                sb.append('-');
+                minutes = -minutes;
+            }
+            final long days = minutes / MINUTES_IN_DAY;
+            final long hours = minutes % MINUTES_IN_DAY / 60;
+            final long remainder = minutes % 60;
+            if (days > 0) {
+                sb.append(days).append('d');
+                if (hours > 0) {
+                    sb.append(' ').append(hours).append('h');
+                }
+            } else if (hours > 0) {
+                sb.append(hours).append('h');
+                if (remainder > 0) {
+                    sb.append(' ').append(remainder).append("min");
+                }
+            } else {
+                sb.append(remainder).append("min");
+            }
+        }
+    },
+    /**
+     * 350ms, or 1.25s from a second on.
+     */
+    MILLISECONDS {
+        @Override
+        void append(final String value, final StringBuilder sb) {
+            final double number = parse(value);
+            if (Double.isNaN(number)) {
+                sb.append(value);
+            } else if (Math.abs(number) < 1000) {
+                sb.append(Math.round(number)).append("ms");
+            } else {
+                sb.append(DECIMAL_FORMAT.get().format(number / 1000)).append('s');
+            }
+        }
+    };
+
+    private static final Logger LOG = Loggers.get(MetricValueFormat.class);
+    private static final String RATINGS = "ABCDE";
+    private static final long MINUTES_IN_DAY = 8 * 60L;
+
+    /**
+     * At most two fraction digits. DecimalFormat is not thread safe.
+     */
+    private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT = ThreadLocal.withInitial(() -> {
+        final DecimalFormat format = new DecimalFormat();
+        format.setMaximumFractionDigits(2);
+        return format;
+    });
+
+    /**
+     * Appends the formatted value or threshold.
+     */
+    abstract void append(String value, StringBuilder sb);
+
+    /**
+     * Appends a number of the unit of the metric, e.g. the change of a value.
+     */
+    void appendNumber(final double number, final StringBuilder sb) {
+        sb.append(DECIMAL_FORMAT.get().format(number));
+    }
+
+    static MetricValueFormat of(final Metric.ValueType type) {
+        if (type == null) {
+            return RAW;
+        }
+        switch (type) {
+            case PERCENT:
+                return PERCENT;
+            case RATING:
+                return RATING;
+            case WORK_DUR:
+                return WORK_DURATION;
+            case MILLISEC:
+                return MILLISECONDS;
+            default:
+                return RAW;
+        }
+    }
+
+    /**
+     * @return the number, or NaN when the value is not one
+     */
+    private static double parse(final String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (final NumberFormatException e) {
+            LOG.error("Failed to parse [{}] into a Double due to [{}]", value, e.getMessage());
+            return Double.NaN;
+        }
+    }
+}
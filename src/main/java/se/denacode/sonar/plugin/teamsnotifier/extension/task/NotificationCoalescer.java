@@ -0,0 +1,184 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Action;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Collects the payloads sent to the same hook within a time window, or up to a maximum count, and passes them on as
+ * one MessageCard with one section per project. Used by {@link WebhookDispatchQueue} when a batch window is set.
+ */
+class NotificationCoalescer {
+
+    private static final Logger LOG = Loggers.get(NotificationCoalescer.class);
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Downstream downstream;
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param windowMillis how long the first payload of a batch waits for others
+     * @param maxBatchSize the batch is sent as soon as it holds this many payloads
+     * @param downstream   receives the hook and the combined payload
+     */
+    NotificationCoalescer(final long windowMillis, final int maxBatchSize, final Downstream downstream) {
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.downstream = downstream;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "teams-notifier-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void add(final String hook, final Payload payload) {
+        this.add(hook, payload, null);
+    }
+
+    /**
+     * @param onUndelivered called when the combined payload is dropped or given up on, may be null
+     */
+    void add(final String hook, final Payload payload, final Runnable onUndelivered) {
+        final Batch[] created = new Batch[1];
+        final Batch[] full = new Batch[1];
+        this.batches.compute(hook, (key, batch) -> {
+            Batch current = batch;
+            if (current == null) {
+                current = new Batch();
+                created[0] = current;
+            }
+            current.payloads.add(payload);
+            if (onUndelivered != null) {
+                current.onUndelivered.add(onUndelivered);
+            }
+            if (current.payloads.size() >= this.maxBatchSize) {
+                full[0] = current;
+                return null;
+            }
+            return current;
+        });
+        if (full[0] != null) {
+            // A flush task that already fired finds nothing to remove, so a batch is never sent twice
+            final ScheduledFuture<?> flushTask = full[0].flushTask;
+            if (flushTask != null) {
+                flushTask.cancel(false);
+            }
+            this.send(hook, full[0]);
+        } else if (created[0] != null) {
+            final Batch batch = created[0];
+            try {
+                batch.flushTask = this.scheduler.schedule(() -> this.flush(hook, batch), this.windowMillis,
+                    TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException e) {
+                // Stopped, do not hold the payload back
+                this.flush(hook, batch);
+            }
+        }
+    }
+
+    /**
+     * Sends every pending batch right away and stops the timer.
+     */
+    void stop() {
+        this.scheduler.shutdownNow();
+        for (final String hook : this.batches.keySet()) {
+            final Batch batch = this.batches.remove(hook);
+            if (batch != null) {
+                this.send(hook, batch);
+            }
+        }
+    }
+
+    private void flush(final String hook, final Batch batch) {
+        if (this.batches.remove(hook, batch)) {
+            this.send(hook, batch);
+        }
+    }
+
+    private void send(final String hook, final Batch batch) {
+        try {
+            final List<Runnable> callbacks = batch.onUndelivered;
+            this.downstream.accept(hook, combine(batch.payloads),
+                callbacks.isEmpty() ? null : () -> callbacks.forEach(Runnable::run));
+        } catch (final RuntimeException e) {
+            LOG.error("Failed to pass on {} coalesced notification(s): {}", batch.payloads.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the only payload, or a new payload holding the sections of all of them. Card level actions are moved to
+     * the section of their project.
+     */
+    static Payload combine(final List<Payload> payloads) {
+        if (payloads.size() == 1) {
+            return payloads.get(0);
+        }
+        Payload combined = null;
+        final StringJoiner correlationIds = new StringJoiner(",");
+        for (final Payload payload : payloads) {
+            if (payload.getCorrelationId() != null) {
+                correlationIds.add(payload.getCorrelationId());
+            }
+            // The payload may be sent to other hooks too, its first section is copied rather than changed
+            final List<Action> actions = payload.getPotentialAction();
+            for (final Section section : payload.getSections()) {
+                final Section combinedSection = section == payload.getSection() && !actions.isEmpty()
+                    ? section.withPotentialActions(actions) : section;
+                if (combined == null) {
+                    combined = new Payload(payload.getSummary(), combinedSection);
+                } else {
+                    combined.getSections().add(combinedSection);
+                }
+            }
+        }
+        LOG.debug("Coalesced {} notifications into one message", payloads.size());
+        // Rows sharing a hook would normally share its format too, the first one is used
+        return combined.withCorrelationId(correlationIds.length() == 0 ? null : correlationIds.toString())
+            .withFormat(payloads.get(0).getFormat())
+            .withThemeColor(worstThemeColor(payloads));
+    }
+
+    /**
+     * @return the color of the worst Quality Gate status of the payloads
+     */
+    private static String worstThemeColor(final List<Payload> payloads) {
+        String color = payloads.get(0).getThemeColor();
+        for (final Payload payload : payloads) {
+            if (Payload.COLOR_ERROR.equals(payload.getThemeColor())) {
+                return Payload.COLOR_ERROR;
+            }
+            if (Payload.COLOR_WARN.equals(payload.getThemeColor())) {
+                color = Payload.COLOR_WARN;
+            }
+        }
+        return color;
+    }
+
+    /**
+     * Receives the combined payloads.
+     */
+    interface Downstream {
+        void accept(String hook, Payload payload, Runnable onUndelivered);
+    }
+
+    private static final class Batch {
+        private final List<Payload> payloads = new ArrayList<>();
+        private final List<Runnable> onUndelivered = new ArrayList<>();
+        private volatile ScheduledFuture<?> flushTask;
+    }
+}
@@ -0,0 +1,152 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.assertj.core.util.VisibleForTesting;
+import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+import org.sonar.api.ce.posttask.QualityGate;
+
+/**
+ * Suppresses the notification of an analysis identical to one already sent to the same hook a moment ago, e.g. when
+ * CI analyses the same commit again.
+ * <p>
+ * Analyses are compared by a 64-bit fingerprint of their project, branch, quality gate status and conditions. The
+ * fingerprints sent within the window are kept in a small LRU map, at most {@link #MAX_ENTRIES} of them.
+ * </p>
+ * <p>
+ * A fingerprint is recorded as soon as the notification is queued, so an identical analysis finishing while it is in
+ * flight is suppressed too, and {@link #forget(String, long) forgotten} when it turns out not to be delivered.
+ * </p>
+ */
+class NotificationDeduplicator {
+
+    static final int MAX_ENTRIES = 10_000;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LongSupplier nanoClock;
+    private final Map<Key, Long> sent = new LinkedHashMap<Key, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, Long> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    NotificationDeduplicator() {
+        this(System::nanoTime);
+    }
+
+    @VisibleForTesting
+    NotificationDeduplicator(final LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Remembers the analysis as sent to the hook, unless the same one was sent within the window.
+     *
+     * @param windowMillis how long an identical analysis is suppressed, 0 to never suppress
+     * @return true when the notification should not be sent
+     */
+    boolean isDuplicate(final String hook, final PostProjectAnalysisTask.ProjectAnalysis analysis,
+        final String branch, final long windowMillis) {
+        return this.isDuplicate(hook, fingerprint(analysis, branch), windowMillis);
+    }
+
+    /**
+     * Same as {@link #isDuplicate(String, PostProjectAnalysisTask.ProjectAnalysis, String, long)} with the
+     * {@link #fingerprint(PostProjectAnalysisTask.ProjectAnalysis, String) fingerprint} of the analysis.
+     */
+    boolean isDuplicate(final String hook, final long fingerprint, final long windowMillis) {
+        if (windowMillis <= 0) {
+            return false;
+        }
+        final Key key = new Key(hook, fingerprint);
+        final long now = this.nanoClock.getAsLong();
+        synchronized (this.sent) {
+            final Long expiresAt = this.sent.get(key);
+            if (expiresAt != null && now - expiresAt < 0) {
+                return true;
+            }
+            this.sent.put(key, now + TimeUnit.MILLISECONDS.toNanos(windowMillis));
+            return false;
+        }
+    }
+
+    /**
+     * Forgets the analysis sent to the hook, after its notification was dropped or failed, so the next identical one
+     * is sent.
+     */
+    void forget(final String hook, final long fingerprint) {
+        synchronized (this.sent) {
+            this.sent.remove(new Key(hook, fingerprint));
+        }
+    }
+
+    int size() {
+        synchronized (this.sent) {
+            return this.sent.size();
+        }
+    }
+
+    /**
+     * @return the FNV-1a hash of what the notification of the analysis shows
+     */
+    static long fingerprint(final PostProjectAnalysisTask.ProjectAnalysis analysis, final String branch) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, analysis.getProject().getKey());
+        hash = hash(hash, branch);
+        final QualityGate qualityGate = analysis.getQualityGate();
+        if (qualityGate != null) {
+            hash = hash(hash, qualityGate.getStatus().name());
+            for (final QualityGate.Condition condition : qualityGate.getConditions()) {
+                hash = hash(hash, condition.getMetricKey());
+                hash = hash(hash, condition.getStatus().name());
+                if (condition.getStatus() != QualityGate.EvaluationStatus.NO_VALUE) {
+                    hash = hash(hash, condition.getValue());
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static long hash(final long hash, final String value) {
+        long result = hash;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                result = (result ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Separator, so "ab" + "c" and "a" + "bc" differ
+        return (result ^ 0xffff) * FNV_PRIME;
+    }
+
+    private static final class Key {
+        private final String hook;
+        private final long fingerprint;
+
+        private Key(final String hook, final long fingerprint) {
+            this.hook = hook;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return this.fingerprint == that.fingerprint && Objects.equals(this.hook, that.hook);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(this.hook) + Long.hashCode(this.fingerprint);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.PayloadJson;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Log lines of the notification path: one compact {@code key=value} line per delivery attempt, carrying the Compute
+ * Engine task id, the host of the hook, the latency and the outcome. Hooks are logged by host only, their path holds
+ * the webhook token.
+ * <p>
+ * A delivered notification logs a single INFO line, its outcome. The line of the analysis handing it over to the
+ * dispatch queue is DEBUG, only skipped analyses log one at INFO.
+ * </p>
+ * <p>
+ * The payload and response of a webhook call are only logged at DEBUG, for a sample of the calls.
+ * </p>
+ */
+final class NotificationLog {
+
+    private static final Logger LOG = Loggers.get(NotificationLog.class);
+
+    static final int DEFAULT_SAMPLE_RATE = 10;
+    private static final String UNKNOWN = "-";
+
+    private final int sampleRate;
+
+    /**
+     * @param sampleRate percentage of the webhook calls whose payload and response are logged at DEBUG
+     */
+    NotificationLog(final int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    static NotificationLog of(final Configuration settings) {
+        return new NotificationLog(
+            settings.getInt(TeamsNotifierProp.LOG_SAMPLE_RATE.property()).orElse(DEFAULT_SAMPLE_RATE));
+    }
+
+    /**
+     * @return true when DEBUG is enabled and this call is one of the sampled ones
+     */
+    boolean isSampled() {
+        return this.sampleRate > 0 && LOG.isDebugEnabled()
+            && (this.sampleRate >= 100 || ThreadLocalRandom.current().nextInt(100) < this.sampleRate);
+    }
+
+    void payload(final String hook, final Payload payload) {
+        LOG.debug("Payload task={} hook={}: {}", correlationId(payload), host(hook),
+            PayloadJson.toPrettyJson(payload));
+    }
+
+    void response(final String hook, final Payload payload, final int status, final String body) {
+        LOG.debug("Response task={} hook={} status={}: {}", correlationId(payload), host(hook), status, body);
+    }
+
+    static void queued(final String taskId, final String projectKey, final int hooks) {
+        LOG.debug("Notification task={} project={} hooks={} outcome=queued", taskId, projectKey, hooks);
+    }
+
+    static void skipped(final String taskId, final String projectKey, final String reason) {
+        LOG.info("Notification task={} project={} outcome=skipped reason={}", taskId, projectKey, reason);
+    }
+
+    static void delivered(final String hook, final Payload payload, final int attempt, final long startNanos) {
+        LOG.info("Notification task={} hook={} attempt={} latency={}ms outcome=delivered", correlationId(payload),
+            host(hook), attempt, elapsedMillis(startNanos));
+    }
+
+    static void retrying(final String hook, final Payload payload, final int attempt, final long startNanos,
+        final String error, final long delayMillis) {
+        LOG.warn("Notification task={} hook={} attempt={} latency={}ms outcome=retry retryIn={}ms error=\"{}\"",
+            correlationId(payload), host(hook), attempt, elapsedMillis(startNanos), delayMillis, error);
+    }
+
+    static void failed(final String hook, final Payload payload, final int attempt, final long startNanos,
+        final String error) {
+        LOG.error("Notification task={} hook={} attempt={} latency={}ms outcome=failed error=\"{}\"",
+            correlationId(payload), host(hook), attempt, elapsedMillis(startNanos), error);
+    }
+
+    /**
+     * @return the host of the hook, or the hook itself when it is not a URL
+     */
+    static String host(final String hook) {
+        if (hook == null) {
+            return UNKNOWN;
+        }
+        final HttpUrl url = HttpUrl.parse(hook);
+        return url == null ? hook : url.host();
+    }
+
+    private static String correlationId(final Payload payload) {
+        return payload.getCorrelationId() == null ? UNKNOWN : payload.getCorrelationId();
+    }
+
+    private static long elapsedMillis(final long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,397 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.PayloadJson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Append-only journal of the notifications that are not delivered yet, so they survive a Compute Engine restart.
+ * <p>
+ * Every payload is appended to the active segment file before it is queued, and an acknowledgement record is appended
+ * once it is delivered or given up on. Appends go through a {@link FileChannel} and are forced to disk in batches by a
+ * background thread, so the Compute Engine never waits for an fsync. Segments are rolled over at
+ * {@link #SEGMENT_SIZE} bytes and deleted, oldest first, when all their notifications are acknowledged.
+ * </p>
+ * <p>
+ * An interrupt of any thread writing or forcing the channel closes it for every thread, e.g. when the dispatch workers
+ * are shut down in the middle of an acknowledgement. The active segment is then reopened, cut back to its last complete
+ * record, and the write retried.
+ * </p>
+ * <p>
+ * Record layout: type (1 byte), id (8 bytes), length (4 bytes), data, CRC32 of everything before it (4 bytes). A torn
+ * record at the end of a segment is ignored when replaying.
+ * </p>
+ */
+class NotificationOutbox implements Closeable {
+
+    private static final Logger LOG = Loggers.get(NotificationOutbox.class);
+
+    static final long SEGMENT_SIZE = 8L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final byte APPEND = 'A';
+    private static final byte ACK = 'D';
+    private static final int HEADER_SIZE = 1 + 8 + 4;
+    private static final int CRC_SIZE = 4;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final Path directory;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<Long, Segment> pending = new HashMap<>();
+    private final List<Entry> recovered;
+    private final ScheduledExecutorService flusher;
+    private final CRC32 crc = new CRC32();
+    private Segment active;
+    private FileChannel channel;
+    private long nextId;
+    private boolean dirty;
+
+    private NotificationOutbox(final Path directory, final long fsyncIntervalMillis) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.recovered = Collections.unmodifiableList(this.replay());
+        final long nextSequence = this.segments.isEmpty() ? 0 : this.segments.getLast().sequence + 1;
+        this.openSegment(nextSequence);
+        this.deleteAcknowledgedSegments();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "teams-notifier-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMillis, fsyncIntervalMillis,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the outbox in the given directory, reading the notifications left undelivered by the previous run.
+     *
+     * @param fsyncIntervalMillis how often appended records are forced to disk
+     */
+    static NotificationOutbox open(final Path directory, final long fsyncIntervalMillis) throws IOException {
+        return new NotificationOutbox(directory, fsyncIntervalMillis);
+    }
+
+    /**
+     * @return the notifications appended but not acknowledged by the previous run, oldest first
+     */
+    List<Entry> getRecovered() {
+        return this.recovered;
+    }
+
+    /**
+     * @return the id to {@link #ack(long)} once the notification is delivered
+     */
+    long append(final String hook, final Payload payload) throws IOException {
+        final byte[] data = encode(hook, payload);
+        synchronized (this) {
+            if (this.active.size >= SEGMENT_SIZE) {
+                this.rollOver();
+            }
+            final long id = this.nextId++;
+            this.write(APPEND, id, data);
+            this.active.live++;
+            this.pending.put(id, this.active);
+            return id;
+        }
+    }
+
+    /**
+     * Marks the notification as done, either delivered or given up on. Unknown ids are ignored.
+     */
+    synchronized void ack(final long id) {
+        final Segment segment = this.pending.remove(id);
+        if (segment == null) {
+            return;
+        }
+        try {
+            this.write(ACK, id, new byte[0]);
+            segment.live--;
+            this.deleteAcknowledgedSegments();
+        } catch (final IOException e) {
+            LOG.warn("Failed to acknowledge notification {} in the outbox, it may be sent again after a restart: {}",
+                id, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of notifications not acknowledged yet
+     */
+    synchronized int size() {
+        return this.pending.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Not shutdownNow, interrupting a running force would close the channel
+        this.flusher.shutdown();
+        try {
+            this.flusher.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            final boolean interrupted = Thread.interrupted();
+            try {
+                if (!this.channel.isOpen()) {
+                    this.reopenSegment();
+                }
+                this.channel.force(false);
+                this.channel.close();
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void write(final byte type, final long id, final byte[] data) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.length + CRC_SIZE);
+        buffer.put(type).putLong(id).putInt(data.length).put(data);
+        this.crc.reset();
+        this.crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) this.crc.getValue());
+        buffer.flip();
+        try {
+            this.writeFully(buffer);
+        } catch (final ClosedChannelException e) {
+            // Closed by an interrupt, of this thread or another one. The interrupt status would close it again.
+            final boolean interrupted = Thread.interrupted();
+            try {
+                LOG.debug("Outbox segment {} closed by an interrupt, reopening it", this.active.path);
+                this.reopenSegment();
+                buffer.rewind();
+                this.writeFully(buffer);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        this.active.size += buffer.limit();
+        this.dirty = true;
+    }
+
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reopens the active segment after its channel was closed, dropping the part of a record written before.
+     */
+    private void reopenSegment() throws IOException {
+        this.channel = FileChannel.open(this.active.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.truncate(this.active.size);
+        this.channel.position(this.active.size);
+        // What was written before the channel closed may not be on disk yet
+        this.dirty = true;
+    }
+
+    private void flush() {
+        final FileChannel toForce;
+        synchronized (this) {
+            if (!this.dirty) {
+                return;
+            }
+            this.dirty = false;
+            toForce = this.channel;
+        }
+        try {
+            // Forcing outside of the lock so appends are not held up by the disk
+            toForce.force(false);
+        } catch (final ClosedChannelException e) {
+            // Rolled over or closed meanwhile, which forces the segment itself
+        } catch (final IOException e) {
+            LOG.warn("Failed to sync the notification outbox: {}", e.getMessage());
+        }
+    }
+
+    private void rollOver() throws IOException {
+        this.channel.force(false);
+        this.channel.close();
+        this.openSegment(this.active.sequence + 1);
+        this.deleteAcknowledgedSegments();
+    }
+
+    private void openSegment(final long sequence) throws IOException {
+        this.active = new Segment(sequence, this.directory.resolve(segmentName(sequence)));
+        this.channel = FileChannel.open(this.active.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        this.active.size = this.channel.size();
+        this.segments.addLast(this.active);
+    }
+
+    private void deleteAcknowledgedSegments() {
+        while (!this.segments.isEmpty() && this.segments.getFirst() != this.active && this.segments.getFirst().live == 0) {
+            final Segment segment = this.segments.removeFirst();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (final IOException e) {
+                LOG.warn("Failed to delete outbox segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    private List<Entry> replay() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+            SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        final Map<Long, Entry> undelivered = new LinkedHashMap<>();
+        for (final Path file : files) {
+            final Segment segment = new Segment(sequenceOf(file), file);
+            this.segments.addLast(segment);
+            this.readSegment(segment, undelivered);
+        }
+        for (final Entry entry : undelivered.values()) {
+            entry.segment.live++;
+            this.pending.put(entry.id, entry.segment);
+        }
+        if (!undelivered.isEmpty()) {
+            LOG.info("Recovered {} undelivered notification(s) from the outbox", undelivered.size());
+        }
+        return new ArrayList<>(undelivered.values());
+    }
+
+    private void readSegment(final Segment segment, final Map<Long, Entry> undelivered) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.path));
+        while (buffer.remaining() >= HEADER_SIZE + CRC_SIZE) {
+            final int start = buffer.position();
+            final byte type = buffer.get();
+            final long id = buffer.getLong();
+            final int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() < length + CRC_SIZE) {
+                break;
+            }
+            this.crc.reset();
+            this.crc.update(buffer.array(), start, HEADER_SIZE + length);
+            final int dataStart = buffer.position();
+            buffer.position(dataStart + length);
+            if (buffer.getInt() != (int) this.crc.getValue()) {
+                break;
+            }
+            this.nextId = Math.max(this.nextId, id + 1);
+            if (type == APPEND) {
+                try {
+                    undelivered.put(id, decode(id, segment, buffer.array(), dataStart, length));
+                } catch (final RuntimeException e) {
+                    LOG.warn("Skipping unreadable notification {} in outbox segment {}: {}", id, segment.path,
+                        e.getMessage());
+                }
+            } else if (type == ACK) {
+                undelivered.remove(id);
+            }
+        }
+        if (buffer.hasRemaining()) {
+            LOG.warn("Ignoring {} byte(s) of incomplete records at the end of outbox segment {}", buffer.remaining(),
+                segment.path);
+        }
+    }
+
+    private static byte[] encode(final String hook, final Payload payload) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        final byte[] hookBytes = hook == null ? new byte[0] : hook.getBytes(StandardCharsets.UTF_8);
+        out.write(ByteBuffer.allocate(4).putInt(hookBytes.length).array());
+        out.write(hookBytes);
+        final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        PayloadJson.write(payload, writer);
+        return out.toByteArray();
+    }
+
+    private static Entry decode(final long id, final Segment segment, final byte[] data, final int offset,
+        final int length) throws IOException {
+        final int hookLength = ByteBuffer.wrap(data, offset, 4).getInt();
+        final String hook = new String(data, offset + 4, hookLength, StandardCharsets.UTF_8);
+        final int jsonOffset = offset + 4 + hookLength;
+        try (final InputStreamReader reader = new InputStreamReader(
+            new ByteArrayInputStream(data, jsonOffset, offset + length - jsonOffset), StandardCharsets.UTF_8)) {
+            return new Entry(id, segment, hook, PayloadJson.read(reader));
+        }
+    }
+
+    private static String segmentName(final long sequence) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(final Path file) {
+        final String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A notification read back from the outbox.
+     */
+    static final class Entry {
+        private final long id;
+        private final Segment segment;
+        private final String hook;
+        private final Payload payload;
+
+        private Entry(final long id, final Segment segment, final String hook, final Payload payload) {
+            this.id = id;
+            this.segment = segment;
+            this.hook = hook;
+            this.payload = payload;
+        }
+
+        long getId() {
+            return this.id;
+        }
+
+        String getHook() {
+            return this.hook;
+        }
+
+        Payload getPayload() {
+            return this.payload;
+        }
+    }
+
+    private static final class Segment {
+        private final long sequence;
+        private final Path path;
+        private long size;
+        private int live;
+
+        private Segment(final long sequence, final Path path) {
+            this.sequence = sequence;
+            this.path = path;
+        }
+    }
+}
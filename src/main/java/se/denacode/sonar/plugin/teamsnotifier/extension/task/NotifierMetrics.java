@@ -0,0 +1,250 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.sonar.api.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Counters, gauges and timers of the notification path, published as attributes of the
+ * {@value #OBJECT_NAME} MBean of the Compute Engine JVM, e.g. for the Prometheus JMX exporter.
+ * <p>
+ * Timers keep a fixed histogram of power of two buckets, their percentiles are the upper bound of the bucket holding
+ * them. Recording never locks.
+ * </p>
+ */
+@ComputeEngineSide
+public class NotifierMetrics implements Startable {
+
+    private static final Logger LOG = Loggers.get(NotifierMetrics.class);
+
+    static final String OBJECT_NAME = "se.denacode.sonar.teamsnotifier:type=Metrics";
+
+    private final Map<String, Supplier<Object>> attributes = new ConcurrentSkipListMap<>();
+
+    final Counter sent = this.counter("notifications_sent_total");
+    final Counter failed = this.counter("notifications_failed_total");
+    final Counter retried = this.counter("notifications_retried_total");
+    final Counter dropped = this.counter("notifications_dropped_total");
+    final Counter skippedDisabled = this.counter("notifications_skipped_disabled_total");
+    final Counter skippedNoConfig = this.counter("notifications_skipped_no_config_total");
+    final Counter skippedBranch = this.counter("notifications_skipped_branch_total");
+    final Counter skippedQualityGate = this.counter("notifications_skipped_quality_gate_total");
+    final Counter skippedDuplicate = this.counter("notifications_skipped_duplicate_total");
+    final Counter skippedNoHook = this.counter("notifications_skipped_no_hook_total");
+    final Counter skippedUnchanged = this.counter("notifications_skipped_unchanged_status_total");
+    final Counter shortCircuited = this.counter("webhook_calls_short_circuited_total");
+    final Timer payloadBuild = this.timer("payload_build_seconds");
+    final Timer serialization = this.timer("payload_serialization_seconds");
+    final Timer httpRoundTrip = this.timer("http_round_trip_seconds");
+    final AtomicLong inFlight = new AtomicLong();
+
+    private ObjectName registeredName;
+
+    public NotifierMetrics() {
+        this.gauge("http_requests_in_flight", this.inFlight::get);
+    }
+
+    /**
+     * Publishes a value owned by another component, e.g. a queue depth.
+     */
+    void gauge(final String name, final LongSupplier value) {
+        this.attributes.put(name, value::getAsLong);
+    }
+
+    private Counter counter(final String name) {
+        final Counter counter = new Counter();
+        this.attributes.put(name, counter::get);
+        return counter;
+    }
+
+    private Timer timer(final String name) {
+        final Timer timer = new Timer();
+        this.attributes.put(name + "_count", timer::count);
+        this.attributes.put(name + "_sum", () -> toSeconds(timer.totalNanos.sum()));
+        this.attributes.put(name + "_max", () -> toSeconds(timer.maxNanos.get()));
+        this.attributes.put(name + "_p50", () -> toSeconds(timer.percentileNanos(0.50)));
+        this.attributes.put(name + "_p95", () -> toSeconds(timer.percentileNanos(0.95)));
+        this.attributes.put(name + "_p99", () -> toSeconds(timer.percentileNanos(0.99)));
+        return timer;
+    }
+
+    private static double toSeconds(final long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the current value of an attribute, as published over JMX
+     */
+    Object get(final String name) {
+        final Supplier<Object> supplier = this.attributes.get(name);
+        return supplier == null ? null : supplier.get();
+    }
+
+    @Override
+    public void start() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new MetricsMBean(), name);
+            this.registeredName = name;
+        } catch (final JMException e) {
+            LOG.warn("Failed to register the {} MBean: {}", OBJECT_NAME, e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (this.registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.registeredName);
+        } catch (final JMException e) {
+            LOG.warn("Failed to unregister the {} MBean: {}", OBJECT_NAME, e.getMessage());
+        }
+        this.registeredName = null;
+    }
+
+    static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        void increment() {
+            this.value.increment();
+        }
+
+        long get() {
+            return this.value.sum();
+        }
+    }
+
+    static final class Timer {
+        /**
+         * Bucket i holds durations below 2^(i + 10) ns, from about 1 microsecond to about 70 seconds and over.
+         */
+        private static final int BUCKETS = 27;
+        private static final int FIRST_BUCKET_BITS = 10;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Timer() {
+            for (int i = 0; i < BUCKETS; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * @param startNanos the {@link System#nanoTime()} when the timed operation started
+         */
+        void recordSince(final long startNanos) {
+            this.record(System.nanoTime() - startNanos);
+        }
+
+        void record(final long nanos) {
+            final long duration = Math.max(0, nanos);
+            final int bits = Long.SIZE - Long.numberOfLeadingZeros(duration);
+            this.buckets[Math.min(BUCKETS - 1, Math.max(0, bits - FIRST_BUCKET_BITS))].increment();
+            this.totalNanos.add(duration);
+            this.maxNanos.accumulateAndGet(duration, Math::max);
+        }
+
+        long count() {
+            long count = 0;
+            for (final LongAdder bucket : this.buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        long percentileNanos(final double quantile) {
+            final long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = this.buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(quantile * total);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank) {
+                    return Math.min(1L << (i + FIRST_BUCKET_BITS), this.maxNanos.get());
+                }
+            }
+            return this.maxNanos.get();
+        }
+    }
+
+    private final class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+            final Supplier<Object> supplier = attributes.get(attribute);
+            if (supplier == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return supplier.get();
+        }
+
+        @Override
+        public AttributeList getAttributes(final String[] names) {
+            final AttributeList list = new AttributeList();
+            for (final String name : names) {
+                final Supplier<Object> supplier = attributes.get(name);
+                if (supplier != null) {
+                    list.add(new Attribute(name, supplier.get()));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(final AttributeList list) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+            throw new UnsupportedOperationException("No operations: " + actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final MBeanAttributeInfo[] infos = attributes.entrySet().stream()
+                .map(entry -> new MBeanAttributeInfo(entry.getKey(), entry.getValue().get().getClass().getName(),
+                    entry.getKey(), true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+            return new MBeanInfo(NotifierMetrics.class.getName(), "Teams notifier metrics", infos, null, null, null);
+        }
+    }
+}
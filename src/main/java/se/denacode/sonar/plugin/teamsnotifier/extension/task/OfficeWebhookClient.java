@@ -16,128 +16,92 @@
  */
 package se.denacode.sonar.plugin.teamsnotifier.extension.task;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.apache.commons.lang3.StringUtils;
-import org.assertj.core.util.Strings;
 import org.sonar.api.config.Configuration;
-import org.sonar.api.utils.log.Logger;
-import org.sonar.api.utils.log.Loggers;
 import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
 
 public class OfficeWebhookClient {
     public static final String CONTENT_TYPE = "content-type";
     public static final String APPLICATION_X_WWW_FORM_URLENCODED = "application/x-www-form-urlencoded";
-    private static final Logger LOG = Loggers.get(OfficeWebhookClient.class);
+    private static final MediaType MEDIA_TYPE = MediaType.get(APPLICATION_X_WWW_FORM_URLENCODED);
     private final OkHttpClient httpClient;
     private final Configuration settings;
+    private final NotifierMetrics metrics;
+    private final HookCircuitBreaker circuitBreaker;
+    private final NotificationLog log;
 
     /**
      * Initializes the Slack HTTP Client.
      *
      * @param settings
+     * @param webhookHttpClient the HTTP client shared by the whole plugin
+     * @param metrics
      */
-    public OfficeWebhookClient(final Configuration settings) {
+    public OfficeWebhookClient(final Configuration settings, final WebhookHttpClient webhookHttpClient,
+        final NotifierMetrics metrics) {
         this.settings = settings;
-        final OkHttpClient.Builder builder = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .writeTimeout(10, TimeUnit.SECONDS);
-        this.declareProxyIfNecessary(builder);
-        httpClient = builder.build();
-
-
-    }
-
-    private void declareProxyIfNecessary(final OkHttpClient.Builder builder) {
-        final Proxy httpProxy = this.getHttpProxy();
-        if (httpProxy == null) {
-            builder.proxy(httpProxy);
-        }
-    }
-
-    private Proxy getHttpProxy() {
-        final Proxy.Type proxyProtocol = this.getProxyProtocol();
-        if (proxyProtocol == null) return null;
-
-        final String proxyIP = this.getProxyIP();
-        if (Strings.isNullOrEmpty(proxyIP)) {
-            return null;
-        }
-
-        return new Proxy(
-            proxyProtocol,
-            new InetSocketAddress(
-                proxyIP,
-                this.getProxyPort()
-            )
-        );
-    }
-
-    private Proxy.Type getProxyProtocol() {
-
-        final Optional<String> proxyProtocol = this.settings.get(TeamsNotifierProp.PROXY_PROTOCOL.property());
-        return proxyProtocol.map(Proxy.Type::valueOf).orElseThrow(() -> new IllegalStateException("Proxy type property not found"));
-
-    }
-
-    private String getProxyIP() {
-
-        final Optional<String> proxyIp = this.settings.get(TeamsNotifierProp.PROXY_IP.property());
-        return proxyIp.orElse(null);
-    }
-
-    private int getProxyPort() {
-        final Optional<Integer> proxyPort = this.settings.getInt(TeamsNotifierProp.PROXY_PORT.property());
-        return proxyPort.orElseThrow(() -> new IllegalStateException("Proxy port property not found"));
+        this.httpClient = webhookHttpClient.getClient();
+        this.metrics = metrics;
+        this.circuitBreaker = HookCircuitBreaker.of(settings);
+        this.log = NotificationLog.of(settings);
+        metrics.gauge("webhook_circuits_open", this.circuitBreaker::openCount);
     }
 
+    /**
+     * @throws WebhookResponseException when the webhook answers with a non successful status, carrying the
+     *                                  Retry-After delay used by {@link RetryPolicy}
+     * @throws CircuitOpenException     when the circuit of the webhook is open, without calling it
+     * @throws IOException              when the webhook could not be reached
+     */
     boolean invokeIncomingWebhook(final String projectCustomHook, final Payload payload) throws IOException {
 
-        final Gson gson = new Gson();
-        final String payloadJson = gson.toJson(payload);
-
         final String incomingWebhookUrl = StringUtils.isEmpty(projectCustomHook) ? this.getSlackIncomingWebhookUrl() :
             projectCustomHook;
-        final Request request = this.buildRequest(payloadJson, incomingWebhookUrl);
-        LOG.info("Request configuration: [uri={}, payload={}", request.url(), payloadJson);
-
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Formatted payload:");
-            LOG.debug(new GsonBuilder().setPrettyPrinting().create().toJson(payload));
+        final long openMillis = this.circuitBreaker.acquire(incomingWebhookUrl);
+        if (openMillis > 0) {
+            this.metrics.shortCircuited.increment();
+            throw new CircuitOpenException(openMillis);
+        }
+        final Request request = this.buildRequest(payload, incomingWebhookUrl);
+        final boolean sampled = this.log.isSampled();
+        if (sampled) {
+            this.log.payload(incomingWebhookUrl, payload);
         }
 
+        final long start = System.nanoTime();
+        this.metrics.inFlight.incrementAndGet();
         try (final Response response = this.httpClient.newCall(request).execute()) {
-            LOG.info("Webhook HTTP response status: {}", response.code());
             if (!response.isSuccessful()) {
-                throw new IllegalArgumentException("The webhook call has failed");
+                throw new WebhookResponseException(response.code(),
+                    RetryPolicy.parseRetryAfter(response.header("Retry-After")));
             }
             final ResponseBody body = response.body();
-            if (body != null) {
-                LOG.info("Webhook HTTP response body: {}", body.string());
-                return true;
-            } else {
-                LOG.error("Slack HTTP response body no body ");
+            if (sampled) {
+                this.log.response(incomingWebhookUrl, payload, response.code(), body == null ? null : body.string());
             }
+            this.circuitBreaker.onSuccess(incomingWebhookUrl);
+            return body != null;
+        } catch (final IOException e) {
+            this.circuitBreaker.onFailure(incomingWebhookUrl, e);
+            throw e;
+        } finally {
+            this.metrics.inFlight.decrementAndGet();
+            this.metrics.httpRoundTrip.recordSince(start);
         }
-        return false;
     }
 
-    private Request buildRequest(final String payloadJson, final String incomingWebhookUrl) {
+    private Request buildRequest(final Payload payload, final String incomingWebhookUrl) {
         final Request.Builder requestBuilder = new Request.Builder().url(incomingWebhookUrl);
         requestBuilder.addHeader(CONTENT_TYPE, APPLICATION_X_WWW_FORM_URLENCODED);
-        requestBuilder.post(RequestBody.create(payloadJson, MediaType.parse(APPLICATION_X_WWW_FORM_URLENCODED)));
+        requestBuilder.post(new PayloadRequestBody(payload, MEDIA_TYPE, this.metrics.serialization));
         return requestBuilder.build();
     }
 
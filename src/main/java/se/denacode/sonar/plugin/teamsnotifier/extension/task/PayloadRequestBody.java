@@ -0,0 +1,89 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.PayloadJson;
+import java.io.IOException;
+import java.io.Writer;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Request body serializing the payload straight into the OkHttp sink, without building the JSON as a String or
+ * byte[] first. The length is unknown up front, so the request is sent with chunked transfer encoding.
+ */
+class PayloadRequestBody extends RequestBody {
+
+    private final Payload payload;
+    private final MediaType contentType;
+    private final NotifierMetrics.Timer serialization;
+
+    PayloadRequestBody(final Payload payload, final MediaType contentType) {
+        this(payload, contentType, null);
+    }
+
+    /**
+     * @param serialization timer recording how long writing the payload takes, may be null
+     */
+    PayloadRequestBody(final Payload payload, final MediaType contentType,
+        final NotifierMetrics.Timer serialization) {
+        this.payload = payload;
+        this.contentType = contentType;
+        this.serialization = serialization;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public void writeTo(final BufferedSink sink) throws IOException {
+        final long start = System.nanoTime();
+        PayloadJson.writeCard(this.payload, new SinkWriter(sink));
+        if (this.serialization != null) {
+            this.serialization.recordSince(start);
+        }
+    }
+
+    /**
+     * Encodes the characters written by the JSON writer directly into the okio segments of the sink.
+     */
+    private static final class SinkWriter extends Writer {
+        private final BufferedSink sink;
+
+        private SinkWriter(final BufferedSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            this.sink.writeUtf8CodePoint(c);
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            this.sink.writeUtf8(str, off, off + len);
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            int i = off;
+            while (i < off + len) {
+                final int codePoint = Character.codePointAt(cbuf, i, off + len);
+                this.sink.writeUtf8CodePoint(codePoint);
+                i += Character.charCount(codePoint);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // The sink is flushed by OkHttp once the body is written
+        }
+
+        @Override
+        public void close() {
+            // The sink is owned by OkHttp
+        }
+    }
+}
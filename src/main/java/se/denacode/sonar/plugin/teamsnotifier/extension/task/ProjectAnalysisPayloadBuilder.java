@@ -1,54 +1,74 @@
 package se.denacode.sonar.plugin.teamsnotifier.extension.task;
 
 import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfig;
+import se.denacode.sonar.plugin.teamsnotifier.common.template.MessageTemplate;
+import se.denacode.sonar.plugin.teamsnotifier.common.template.TemplateVariable;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Action;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Fact;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
-import static java.lang.String.format;
-import java.text.DecimalFormat;
 import java.util.EnumMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import org.sonar.api.ce.posttask.Branch;
 import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
 import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.i18n.I18n;
-import org.sonar.api.measures.CoreMetrics;
-import org.sonar.api.utils.log.Logger;
-import org.sonar.api.utils.log.Loggers;
 
+/**
+ * Builds the MessageCard of an analysis.
+ * <p>
+ * Called for every analysis, so the texts are appended into a single {@link StringBuilder} reused for all facts,
+ * and the status symbols and operators are looked up from precomputed strings. The title and text are rendered from
+ * the {@link MessageTemplate}s compiled with the project config row, or the default ones.
+ * </p>
+ */
 class ProjectAnalysisPayloadBuilder {
-    private static final Logger LOG = Loggers.get(ProjectAnalysisPayloadBuilder.class);
-
-    private static final Map<QualityGate.Status, String> statusSymbol = new EnumMap<>(QualityGate.Status.class);
-    private static final Map<QualityGate.EvaluationStatus, String> evaluationStatusSymbol = new EnumMap<>(QualityGate.EvaluationStatus.class);
+    private static final MetricFormatRegistry CORE_METRIC_FORMATS = new MetricFormatRegistry();
+    private static final String SUMMARY = "Sonar report";
+    private static final String TITLE = "Sonar Quality Report";
+    private static final MessageTemplate DEFAULT_TEXT = MessageTemplate.compile("{{#notify}}<!{{notify}}> {{/notify}}"
+        + "Project {{project}} was analyzed{{#branch}} for branch {{branch}}{{/branch}}.");
+    private static final String QUALITY_GATE_STATUS = "Quality gate status";
+    private static final String ERROR_IF = ", error if ";
+    private static final String TREND = " trend";
+    private static final String SPARKS = "\u2581\u2582\u2583\u2584\u2585\u2586\u2587\u2588";
+    private static final char UP = '\u25B2';
+    private static final char DOWN = '\u25BC';
+    private static final Map<QualityGate.Status, String> statusText = new EnumMap<>(QualityGate.Status.class);
+    private static final Map<QualityGate.Status, String> themeColor = new EnumMap<>(QualityGate.Status.class);
+    private static final Map<QualityGate.EvaluationStatus, String> evaluationStatusPrefix = new EnumMap<>(QualityGate.EvaluationStatus.class);
+    private static final Map<QualityGate.Operator, String> errorThresholdPrefix = new EnumMap<>(QualityGate.Operator.class);
     static {
-        statusSymbol.put(QualityGate.Status.OK, "\uD83D\uDFE2");
-        statusSymbol.put(QualityGate.Status.WARN, "\uD83D\uDFE0");
-        statusSymbol.put(QualityGate.Status.ERROR, "\uD83D\uDD34");
-        evaluationStatusSymbol.put(QualityGate.EvaluationStatus.NO_VALUE, "⚪️️");
-        evaluationStatusSymbol.put(QualityGate.EvaluationStatus.OK, "\uD83D\uDFE2");
-        evaluationStatusSymbol.put(QualityGate.EvaluationStatus.WARN, "\uD83D\uDFE0");
-        evaluationStatusSymbol.put(QualityGate.EvaluationStatus.ERROR, "\uD83D\uDD34");
+        statusText.put(QualityGate.Status.OK, "\uD83D\uDFE2 " + QualityGate.Status.OK);
+        statusText.put(QualityGate.Status.WARN, "\uD83D\uDFE0 " + QualityGate.Status.WARN);
+        statusText.put(QualityGate.Status.ERROR, "\uD83D\uDD34 " + QualityGate.Status.ERROR);
+        themeColor.put(QualityGate.Status.OK, Payload.COLOR_OK);
+        themeColor.put(QualityGate.Status.WARN, Payload.COLOR_WARN);
+        themeColor.put(QualityGate.Status.ERROR, Payload.COLOR_ERROR);
+        evaluationStatusPrefix.put(QualityGate.EvaluationStatus.NO_VALUE, "⚪️️ ");
+        evaluationStatusPrefix.put(QualityGate.EvaluationStatus.OK, "\uD83D\uDFE2 ");
+        evaluationStatusPrefix.put(QualityGate.EvaluationStatus.WARN, "\uD83D\uDFE0 ");
+        evaluationStatusPrefix.put(QualityGate.EvaluationStatus.ERROR, "\uD83D\uDD34 ");
+        for (final QualityGate.Operator operator : QualityGate.Operator.values()) {
+            errorThresholdPrefix.put(operator, ERROR_IF + operatorSymbol(operator));
+        }
     }
 
     private final PostProjectAnalysisTask.ProjectAnalysis analysis;
-    private final DecimalFormat percentageFormat;
-    private I18n i18n;
+    private final StringBuilder text = new StringBuilder(64);
+    private MetricNameCache metricNames;
+    private MetricFormatRegistry metricFormats;
+    private ConditionHistory.Trend trend = ConditionHistory.Trend.EMPTY;
+    private boolean sparklines;
     private ProjectConfig projectConfig;
     private String projectUrl;
     private boolean includeBranch;
 
     private ProjectAnalysisPayloadBuilder(final PostProjectAnalysisTask.ProjectAnalysis analysis) {
         this.analysis = analysis;
-        // Format percentages as 25.01 instead of 25.0066666666666667 etc.
-        this.percentageFormat = new DecimalFormat();
-        this.percentageFormat.setMaximumFractionDigits(2);
     }
 
     static ProjectAnalysisPayloadBuilder of(final PostProjectAnalysisTask.ProjectAnalysis analysis) {
@@ -60,8 +80,37 @@ class ProjectAnalysisPayloadBuilder {
         return this;
     }
 
+    /**
+     * Looks the metric names up in the bundles for this payload only, see {@link #metricNames(MetricNameCache)}.
+     */
     ProjectAnalysisPayloadBuilder i18n(final I18n i18n) {
-        this.i18n = i18n;
+        this.metricNames = new MetricNameCache(i18n);
+        return this;
+    }
+
+    ProjectAnalysisPayloadBuilder metricNames(final MetricNameCache metricNames) {
+        this.metricNames = metricNames;
+        return this;
+    }
+
+    /**
+     * @param metricFormats the formats of the metric values, only the core metrics are known when not set
+     */
+    ProjectAnalysisPayloadBuilder metricFormats(final MetricFormatRegistry metricFormats) {
+        this.metricFormats = metricFormats;
+        return this;
+    }
+
+    /**
+     * @param trend the condition values of the previous analyses, to show how they changed
+     */
+    ProjectAnalysisPayloadBuilder trend(final ConditionHistory.Trend trend) {
+        this.trend = trend;
+        return this;
+    }
+
+    ProjectAnalysisPayloadBuilder sparklines(final boolean sparklines) {
+        this.sparklines = sparklines;
         return this;
     }
 
@@ -78,50 +127,77 @@ class ProjectAnalysisPayloadBuilder {
     Payload build() {
         assertNotNull(projectConfig, "projectConfig");
         assertNotNull(projectUrl, "projectUrl");
-        assertNotNull(i18n, "i18n");
+        assertNotNull(metricNames, "i18n");
         assertNotNull(analysis, "analysis");
-
-        final String notifyPrefix = isNotBlank(projectConfig.getNotify()) ? format("<!%s> ", projectConfig.getNotify()) : "";
-
-        final QualityGate qualityGate = analysis.getQualityGate();
-        final StringBuilder shortText = new StringBuilder();
-        shortText.append(notifyPrefix);
-        shortText.append(format("Project %s was analyzed", analysis.getProject().getName()));
-
-        final Optional<Branch> branch = analysis.getBranch();
-        if (branch.isPresent() && !branch.get().isMain() && this.includeBranch) {
-            shortText.append(format(" for branch %s", branch.get().getName().orElse("")));
+        if (metricFormats == null) {
+            metricFormats = CORE_METRIC_FORMATS;
         }
-        shortText.append(".");
 
-        Payload payload = new Payload("Sonar report",
-            new Section("Sonar Quality Report", shortText.toString()));
-
-        if (qualityGate != null) {
-            payload.getSection().getFacts().add(new Fact("Quality gate status",
-                String.format("%s %s", statusSymbol.get(qualityGate.getStatus()), qualityGate.getStatus().toString())));
-        }
+        final MessageTemplate titleTemplate = projectConfig.getTitleTemplate();
+        final String title = titleTemplate == null ? TITLE : this.render(titleTemplate);
+        final MessageTemplate textTemplate = projectConfig.getTextTemplate();
+        Payload payload = new Payload(titleTemplate == null ? SUMMARY : title,
+            new Section(title, this.render(textTemplate == null ? DEFAULT_TEXT : textTemplate)))
+            .withFormat(projectConfig.getCardFormat());
 
+        final QualityGate qualityGate = analysis.getQualityGate();
         if (qualityGate != null) {
-            payload.getSection().getFacts().addAll(buildFacts(qualityGate, projectConfig.isQgFailOnly()));
+            payload.withThemeColor(themeColor.get(qualityGate.getStatus()));
+            final List<Fact> facts = payload.getSection().getFacts();
+            facts.add(new Fact(QUALITY_GATE_STATUS, statusText.get(qualityGate.getStatus())));
+            addFacts(facts, qualityGate, projectConfig.isQgFailOnly());
         }
         payload.getPotentialAction().add(new Action("See report", projectUrl));
 
         return payload;
     }
 
+    private String render(final MessageTemplate template) {
+        final StringBuilder sb = this.text;
+        sb.setLength(0);
+        template.render(this::templateValue, sb);
+        return sb.toString();
+    }
+
+    private String templateValue(final TemplateVariable variable) {
+        switch (variable) {
+            case PROJECT:
+                return analysis.getProject().getName();
+            case PROJECT_KEY:
+                return analysis.getProject().getKey();
+            case BRANCH:
+                final Optional<Branch> branch = analysis.getBranch();
+                return branch.isPresent() && !branch.get().isMain() && this.includeBranch
+                    ? branch.get().getName().orElse("") : "";
+            case STATUS:
+                return analysis.getQualityGate() == null ? "" : analysis.getQualityGate().getStatus().name();
+            case QUALITY_GATE:
+                return analysis.getQualityGate() == null ? "" : analysis.getQualityGate().getName();
+            case NOTIFY:
+                return isNotBlank(projectConfig.getNotify()) ? projectConfig.getNotify() : "";
+            case URL:
+                return projectUrl;
+            default:
+                return null;
+        }
+    }
+
     private void assertNotNull(final Object object, final String argumentName) {
         if (object == null) {
             throw new IllegalArgumentException("[Assertion failed] - " + argumentName + " argument is required; it must not be null");
         }
     }
 
-    private List<Fact> buildFacts(final QualityGate qualityGate, final boolean qgFailOnly) {
-        return qualityGate.getConditions()
-            .stream()
-            .filter(condition -> !qgFailOnly || notOkNorNoValue(condition))
-            .map(this::translate)
-            .collect(Collectors.toList());
+    private void addFacts(final List<Fact> facts, final QualityGate qualityGate, final boolean qgFailOnly) {
+        for (final QualityGate.Condition condition : qualityGate.getConditions()) {
+            if (!qgFailOnly || notOkNorNoValue(condition)) {
+                final Fact fact = translate(condition);
+                facts.add(fact);
+                if (this.sparklines) {
+                    addSparkline(facts, fact.getName(), condition);
+                }
+            }
+        }
     }
 
     private boolean notOkNorNoValue(final QualityGate.Condition condition) {
@@ -130,83 +206,100 @@ class ProjectAnalysisPayloadBuilder {
     }
 
     private Fact translate(final QualityGate.Condition condition) {
-        final String i18nKey = "metric." + condition.getMetricKey() + ".name";
-        final String conditionName = i18n.message(Locale.ENGLISH, i18nKey, condition.getMetricKey());
+        final String conditionName = metricNames.get(projectConfig.getLocale(), condition.getMetricKey());
 
         if (QualityGate.EvaluationStatus.NO_VALUE.equals(condition.getStatus())) {
             // No value for given metric
             return new Fact(conditionName, condition.getStatus().name());
         } else {
-            final StringBuilder sb = new StringBuilder();
-            appendValue(condition, sb);
-            appendValuePostfix(condition, sb);
+            final MetricValueFormat format = metricFormats.get(condition.getMetricKey());
+            final StringBuilder sb = this.text;
+            sb.setLength(0);
+            sb.append(evaluationStatusPrefix.get(condition.getStatus()));
+            if ("".equals(condition.getValue())) {
+                sb.append('-');
+            } else {
+                format.append(condition.getValue(), sb);
+                appendDelta(condition, format, sb);
+            }
             if (condition.getErrorThreshold() != null) {
-                sb.append(", error if ");
-                appendValueOperatorPrefix(condition, sb);
-                sb.append(condition.getErrorThreshold());
-                appendValuePostfix(condition, sb);
+                sb.append(errorThresholdPrefix.get(condition.getOperator()));
+                format.append(condition.getErrorThreshold(), sb);
             }
-            return new Fact(conditionName,
-                String.format("%s %s", evaluationStatusSymbol.get(condition.getStatus()), sb.toString()));
+            return new Fact(conditionName, sb.toString());
         }
     }
 
-    private void appendValue(final QualityGate.Condition condition, final StringBuilder sb) {
-        if ("".equals(condition.getValue())) {
-            sb.append("-");
-        } else {
-            if (isPercentageCondition(condition)) {
-                appendPercentageValue(condition.getValue(), sb);
-            } else {
-                sb.append(condition.getValue());
-            }
+    /**
+     * Appends " (▲1.3)" when the value changed since the previous analysis.
+     */
+    private void appendDelta(final QualityGate.Condition condition, final MetricValueFormat format,
+        final StringBuilder sb) {
+        final double[] previous = this.trend.previous(condition.getMetricKey());
+        final double current = parse(condition.getValue());
+        if (previous.length == 0 || Double.isNaN(current)) {
+            return;
         }
-    }
-
-    private void appendValuePostfix(final QualityGate.Condition condition, final StringBuilder sb) {
-        if (isPercentageCondition(condition)) {
-            sb.append("%");
+        final double delta = current - previous[previous.length - 1];
+        if (delta != 0) {
+            sb.append(" (").append(delta > 0 ? UP : DOWN);
+            format.appendNumber(Math.abs(delta), sb);
+            sb.append(')');
         }
     }
 
-    private void appendValueOperatorPrefix(final QualityGate.Condition condition, final StringBuilder sb) {
-        switch (condition.getOperator()) {
-            case EQUALS:
-                sb.append("==");
-                break;
-            case NOT_EQUALS:
-                sb.append("!=");
-                break;
-            case GREATER_THAN:
-                sb.append(">");
-                break;
-            case LESS_THAN:
-                sb.append("<");
-                break;
-            default:
-                break;
+    /**
+     * Adds a "▁▃▅█" fact of the previous values and the current one, when there are previous values.
+     */
+    private void addSparkline(final List<Fact> facts, final String name, final QualityGate.Condition condition) {
+        final double[] previous = this.trend.previous(condition.getMetricKey());
+        final double current = parse(condition.getValue());
+        if (previous.length == 0 || Double.isNaN(current)) {
+            return;
+        }
+        double min = current;
+        double max = current;
+        for (final double value : previous) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
         }
+        final StringBuilder sb = this.text;
+        sb.setLength(0);
+        for (final double value : previous) {
+            sb.append(spark(value, min, max));
+        }
+        sb.append(spark(current, min, max));
+        facts.add(new Fact(name + TREND, sb.toString()));
     }
 
-    private boolean isPercentageCondition(final QualityGate.Condition condition) {
-        switch (condition.getMetricKey()) {
-            case CoreMetrics.NEW_COVERAGE_KEY:
-            case CoreMetrics.NEW_SQALE_DEBT_RATIO_KEY:
-                return true;
-            default:
-                break;
+    private static char spark(final double value, final double min, final double max) {
+        if (max == min) {
+            return SPARKS.charAt(0);
         }
-        return false;
+        return SPARKS.charAt((int) Math.round((value - min) / (max - min) * (SPARKS.length() - 1)));
     }
 
-    private void appendPercentageValue(final String s, final StringBuilder sb) {
+    private static double parse(final String value) {
         try {
-            final Double d = Double.parseDouble(s);
-            sb.append(percentageFormat.format(d));
+            return Double.parseDouble(value);
         } catch (final NumberFormatException e) {
-            LOG.error("Failed to parse [{}] into a Double due to [{}]", s, e.getMessage());
-            sb.append(s);
+            return Double.NaN;
         }
     }
-}
 
+    @SuppressWarnings("deprecation")
+    private static String operatorSymbol(final QualityGate.Operator operator) {
+        switch (operator) {
+            case EQUALS:
+                return "==";
+            case NOT_EQUALS:
+                return "!=";
+            case GREATER_THAN:
+                return ">";
+            case LESS_THAN:
+                return "<";
+            default:
+                return "";
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.sonar.api.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.ce.posttask.QualityGate;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * The Quality Gate status of the last analysis of every project and branch, to notify on status changes only.
+ * <p>
+ * The statuses are kept in memory and saved to a snapshot file under the SonarQube data directory every few seconds
+ * when they changed, and when the Compute Engine stops, so they survive restarts. Only the {@link #MAX_ENTRIES}
+ * most recently analysed branches are kept, so merged branches and pull requests do not pile up.
+ * </p>
+ */
+@ComputeEngineSide
+public class QualityGateStatusTracker implements Startable {
+
+    private static final Logger LOG = Loggers.get(QualityGateStatusTracker.class);
+
+    static final long SAVE_INTERVAL_MILLIS = 5000;
+    static final int MAX_ENTRIES = 10_000;
+
+    private final Configuration settings;
+    private final Map<String, QualityGate.Status> statuses = new LinkedHashMap<String, QualityGate.Status>(16, 0.75f,
+        true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, QualityGate.Status> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private Path snapshot;
+    private ScheduledExecutorService saver;
+
+    /**
+     * Default constructor invoked by SonarQube.
+     *
+     * @param settings
+     */
+    public QualityGateStatusTracker(final Configuration settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public void start() {
+        final Optional<String> dataPath = this.settings.get(WebhookDispatchQueue.DATA_PATH_PROPERTY);
+        if (!dataPath.isPresent()) {
+            return;
+        }
+        this.snapshot = Paths.get(dataPath.get(), "teams-notifier", "quality-gate-status.properties");
+        this.load();
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "teams-notifier-status-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.saver.scheduleWithFixedDelay(this::saveIfChanged, SAVE_INTERVAL_MILLIS, SAVE_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (this.saver != null) {
+            this.saver.shutdownNow();
+            this.saver = null;
+        }
+        this.saveIfChanged();
+    }
+
+    /**
+     * Records the status of the latest analysis of the project and branch.
+     *
+     * @return the status of the previous analysis, or null when there was none
+     */
+    QualityGate.Status update(final String projectKey, final String branch, final QualityGate.Status status) {
+        final QualityGate.Status previous;
+        synchronized (this.statuses) {
+            previous = this.statuses.put(projectKey + ';' + branch, status);
+        }
+        if (previous != status) {
+            this.dirty.set(true);
+        }
+        return previous;
+    }
+
+    int size() {
+        synchronized (this.statuses) {
+            return this.statuses.size();
+        }
+    }
+
+    private void load() {
+        final Properties properties = new Properties();
+        try (final InputStream in = Files.newInputStream(this.snapshot)) {
+            properties.load(in);
+        } catch (final NoSuchFileException e) {
+            return;
+        } catch (final IOException e) {
+            LOG.warn("Failed to read the Quality Gate statuses from {}: {}", this.snapshot, e.getMessage());
+            return;
+        }
+        synchronized (this.statuses) {
+            for (final String key : properties.stringPropertyNames()) {
+                try {
+                    this.statuses.putIfAbsent(key, QualityGate.Status.valueOf(properties.getProperty(key)));
+                } catch (final IllegalArgumentException e) {
+                    LOG.debug("Ignoring unknown Quality Gate status of {}", key);
+                }
+            }
+        }
+        LOG.info("Loaded the Quality Gate status of {} project branch(es)", this.size());
+    }
+
+    /**
+     * Writes the statuses to a temporary file moved over the snapshot, so a crash never leaves half a snapshot.
+     */
+    synchronized void saveIfChanged() {
+        if (this.snapshot == null || !this.dirty.getAndSet(false)) {
+            return;
+        }
+        final Properties properties = new Properties();
+        synchronized (this.statuses) {
+            for (final Map.Entry<String, QualityGate.Status> entry : this.statuses.entrySet()) {
+                properties.setProperty(entry.getKey(), entry.getValue().name());
+            }
+        }
+        final Path temporary = this.snapshot.resolveSibling(this.snapshot.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(this.snapshot.getParent());
+            try (final OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, null);
+            }
+            Files.move(temporary, this.snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            this.dirty.set(true);
+            LOG.warn("Failed to save the Quality Gate statuses to {}: {}", this.snapshot, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import org.sonar.api.config.Configuration;
+
+/**
+ * Decides whether, and after how long, a failed webhook call is tried again.
+ * <p>
+ * Connection failures, 408, 429 and 5xx responses are retried with exponential backoff and jitter, until the
+ * configured number of attempts is reached. A Retry-After header sent by Teams takes precedence over the backoff.
+ * Calls refused by an open circuit are retried once the circuit lets calls through again.
+ * </p>
+ */
+class RetryPolicy {
+
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_DELAY_MILLIS = 1000;
+    static final long DEFAULT_MAX_DELAY_MILLIS = 60_000;
+
+    static final long NO_RETRY = -1;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    RetryPolicy(final int maxAttempts, final long baseDelayMillis, final long maxDelayMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    static RetryPolicy of(final Configuration settings) {
+        return new RetryPolicy(
+            settings.getInt(TeamsNotifierProp.RETRY_MAX_ATTEMPTS.property()).orElse(DEFAULT_MAX_ATTEMPTS),
+            settings.getLong(TeamsNotifierProp.RETRY_BASE_DELAY.property()).orElse(DEFAULT_BASE_DELAY_MILLIS),
+            settings.getLong(TeamsNotifierProp.RETRY_MAX_DELAY.property()).orElse(DEFAULT_MAX_DELAY_MILLIS));
+    }
+
+    /**
+     * @param attempt the number of the attempt that just failed, starting at 1
+     * @param failure why it failed
+     * @return the delay before the next attempt in milliseconds, or {@link #NO_RETRY}
+     */
+    long delayMillis(final int attempt, final IOException failure) {
+        if (attempt >= this.maxAttempts) {
+            return NO_RETRY;
+        }
+        if (failure instanceof CircuitOpenException) {
+            // Not before the circuit lets a call through again
+            return Math.max(((CircuitOpenException) failure).getRetryAfterMillis(), this.backoffMillis(attempt));
+        }
+        if (failure instanceof WebhookResponseException) {
+            final WebhookResponseException responseException = (WebhookResponseException) failure;
+            if (!responseException.isRetryable()) {
+                return NO_RETRY;
+            }
+            if (responseException.getRetryAfterMillis() >= 0) {
+                return responseException.getRetryAfterMillis();
+            }
+        }
+        return this.backoffMillis(attempt);
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the delay is fixed, the other half random, so retries of
+     * notifications that failed together spread out.
+     */
+    long backoffMillis(final int attempt) {
+        final long exponential = this.baseDelayMillis << Math.min(attempt - 1, 30);
+        final long delay = Math.min(this.maxDelayMillis, exponential < 0 ? Long.MAX_VALUE : exponential);
+        final long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * @param retryAfter the Retry-After header, either delta seconds or an HTTP date
+     * @return the delay in milliseconds, or -1 when there is no usable header
+     */
+    static long parseRetryAfter(final String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (final NumberFormatException e) {
+            // Not delta seconds, try an HTTP date
+        }
+        try {
+            final ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (final DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -3,11 +3,13 @@ package se.denacode.sonar.plugin.teamsnotifier.extension.task;
 import se.denacode.sonar.plugin.teamsnotifier.common.component.AbstractSlackNotifyingComponent;
 import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfig;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import org.apache.commons.lang3.StringUtils;
-import org.assertj.core.util.VisibleForTesting;
 import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.i18n.I18n;
 import org.sonar.api.utils.log.Logger;
@@ -21,27 +23,37 @@ public class TeamsPostProjectAnalysisTask extends AbstractSlackNotifyingComponen
 
     private static final Logger LOG = Loggers.get(TeamsPostProjectAnalysisTask.class);
 
-    private final I18n i18n;
-    private final OfficeWebhookClient httpClient;
-
-    @VisibleForTesting
-    TeamsPostProjectAnalysisTask(final OfficeWebhookClient httpClient, final Configuration settings, final I18n i18n) {
-        super(settings);
-        this.i18n = i18n;
-        this.httpClient = httpClient;
-    }
+    private final MetricNameCache metricNames;
+    private final MetricFormatRegistry metricFormats;
+    private final ConditionHistory conditionHistory;
+    private final QualityGateStatusTracker statusTracker;
+    private final NotificationDeduplicator deduplicator = new NotificationDeduplicator();
+    private final WebhookDispatchQueue dispatchQueue;
+    private final NotifierMetrics metrics;
 
     /**
      * Default constructor invoked by SonarQube.
      *
      * @param settings
      * @param i18n
+     * @param dispatchQueue
+     * @param metrics
+     * @param metricFormats
+     * @param conditionHistory
+     * @param statusTracker
      */
-    public TeamsPostProjectAnalysisTask(final Configuration settings, final I18n i18n) {
+    public TeamsPostProjectAnalysisTask(final Configuration settings, final I18n i18n,
+                                        final WebhookDispatchQueue dispatchQueue, final NotifierMetrics metrics,
+                                        final MetricFormatRegistry metricFormats,
+                                        final ConditionHistory conditionHistory,
+                                        final QualityGateStatusTracker statusTracker) {
         super(settings);
-        this.i18n = i18n;
-        httpClient = new OfficeWebhookClient(settings);
-
+        this.metricNames = new MetricNameCache(i18n);
+        this.dispatchQueue = dispatchQueue;
+        this.metrics = metrics;
+        this.metricFormats = metricFormats;
+        this.conditionHistory = conditionHistory;
+        this.statusTracker = statusTracker;
     }
 
     public String getDescription() {
@@ -52,80 +64,128 @@ public class TeamsPostProjectAnalysisTask extends AbstractSlackNotifyingComponen
     public void finished(PostProjectAnalysisTask.Context context) {
 
         final ProjectAnalysis analysis = context.getProjectAnalysis();
+        final String taskId = analysis.getCeTask().getId();
+        final String projectKey = analysis.getProject().getKey();
         this.refreshSettings();
         if (!this.isPluginEnabled()) {
-            LOG.info("Slack notifier plugin disabled, skipping. Settings are [{}]", this.logRelevantSettings());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Slack notifier plugin disabled, skipping. Settings are [{}]", this.logRelevantSettings());
+            }
+            NotificationLog.skipped(taskId, projectKey, "disabled");
+            this.metrics.skippedDisabled.increment();
             return;
         }
-        LOG.info("Analysis ScannerContext: [{}]", analysis.getScannerContext().getProperties());
-        final String projectKey = analysis.getProject().getKey();
+        LOG.debug("Analysis ScannerContext: [{}]", analysis.getScannerContext().getProperties());
 
-        LOG.info("Looking for the configuration of the project {}", projectKey);
-        final Optional<ProjectConfig> projectConfigOptional = this.getProjectConfig(projectKey);
+        String builtBranch = context.getProjectAnalysis().getBranch().map(b -> b.getName()).orElse(Optional.of("")).get();
+
+        final Optional<ProjectConfig> projectConfigOptional = this.getProjectConfig(projectKey, builtBranch);
         if (!projectConfigOptional.isPresent()) {
+            NotificationLog.skipped(taskId, projectKey, "no_config");
+            this.metrics.skippedNoConfig.increment();
             return;
         }
 
 
         // final var projectConfig =
         ProjectConfig projectConfig = projectConfigOptional.get();
-        String targetBranch = getTargetBranch(projectConfig);
-        String builtBranch = context.getProjectAnalysis().getBranch().map(b -> b.getName()).orElse(Optional.of("")).get();
+        String targetBranch = projectConfig.getTargetBranch();
 
-        LOG.info("Project Key : {}", projectConfig.getProjectKey());
-        LOG.info("targetBranch- {}  / builtBranch {}", targetBranch, builtBranch);
+        LOG.debug("Project Key : {}, targetBranch- {}  / builtBranch {}", projectConfig.getProjectKey(), targetBranch,
+            builtBranch);
         if (StringUtils.isNotBlank(targetBranch) && !StringUtils.equals(targetBranch, builtBranch)) {
-            LOG.info("Branch doesn match, returing ...");
+            NotificationLog.skipped(taskId, projectKey, "branch");
+            this.metrics.skippedBranch.increment();
             return;
         }
 
-        LOG.info("Is moving forward");
-        if (this.shouldSkipSendingNotification(projectConfig, analysis.getQualityGate())) {
+        // Every analysis of the branch goes in the history, notified or not, so trends compare with the previous one
+        final ConditionHistory.Trend trend = this.conditionHistory.record(projectKey, builtBranch,
+            analysis.getQualityGate());
+        final QualityGate qualityGate = analysis.getQualityGate();
+        final QualityGate.Status previousStatus = this.updateQualityGateStatus(projectKey, builtBranch, qualityGate);
+        if (projectConfig.isQgChangeOnly() && qualityGate != null && previousStatus == qualityGate.getStatus()) {
+            LOG.debug("Project [{}] set up to send notification on Quality Gate change, but it is still {}",
+                projectKey, previousStatus);
+            NotificationLog.skipped(taskId, projectKey, "unchanged");
+            this.metrics.skippedUnchanged.increment();
+            return;
+        }
+        // On a row following status changes, a recovery to OK is notified even when the row only notifies failures
+        final boolean statusChanged = projectConfig.isQgChangeOnly() && previousStatus != null;
+        if (!statusChanged && this.shouldSkipSendingNotification(projectConfig, qualityGate)) {
+            NotificationLog.skipped(taskId, projectKey, "quality_gate");
+            this.metrics.skippedQualityGate.increment();
             return;
         }
 
-        final String hook = this.getSlackHook(projectConfig);
-
-        LOG.info("Slack notification will be sent: {}", analysis.toString());
+        final List<String> hooks = new ArrayList<>(this.getSlackHooks(projectConfig));
+        if (hooks.isEmpty()) {
+            LOG.warn("Project [{}] has no hook of its own and no global hook is set, not notifying it", projectKey);
+            NotificationLog.skipped(taskId, projectKey, "no_hook");
+            this.metrics.skippedNoHook.increment();
+            return;
+        }
+        final long dedupWindow = this.getDedupWindowMillis();
+        final long fingerprint = NotificationDeduplicator.fingerprint(analysis, builtBranch);
+        hooks.removeIf(hook -> {
+            if (this.deduplicator.isDuplicate(hook, fingerprint, dedupWindow)) {
+                LOG.debug("Same analysis of project {} already notified to hook {}, skipping it", projectKey,
+                    NotificationLog.host(hook));
+                this.metrics.skippedDuplicate.increment();
+                return true;
+            }
+            return false;
+        });
+        if (hooks.isEmpty()) {
+            NotificationLog.skipped(taskId, projectKey, "duplicate");
+            return;
+        }
 
         //final var payload =
+        final long buildStart = System.nanoTime();
         Payload payload = ProjectAnalysisPayloadBuilder.of(analysis)
-            .i18n(this.i18n)
+            .metricNames(this.metricNames)
+            .metricFormats(this.metricFormats)
+            .trend(trend)
+            .sparklines(this.isSparklinesEnabled())
             .projectConfig(projectConfig)
             .projectUrl(this.projectUrl(projectKey))
             .includeBranch(this.isBranchEnabled())
-            .build();
-
-        try {
-
-            if (httpClient.invokeIncomingWebhook(hook, payload)) {
-                LOG.info("Slack webhook invoked with success.");
-            } else {
-                throw new IllegalArgumentException("The Slack response has failed");
-            }
-        } catch (final IOException e) {
-            LOG.error("Failed to send message {}", e.getMessage(), e);
+            .build()
+            .withCorrelationId(taskId);
+        this.metrics.payloadBuild.recordSince(buildStart);
+
+        // Each hook is a separate delivery with its own retries, rate limit and circuit
+        // A notification that is not delivered does not suppress the next identical one
+        for (final String hook : hooks) {
+            this.dispatchQueue.enqueue(hook, payload, this.getRateLimitedRow(hook, projectConfig),
+                dedupWindow > 0 ? () -> this.deduplicator.forget(hook, fingerprint) : null);
         }
+        NotificationLog.queued(taskId, projectKey, hooks.size());
     }
 
-    private String getTargetBranch(ProjectConfig projectConfig) {
-        String[] split = projectConfig.getProjectKey().split(";");
-        if (split.length == 2) {
-            return split[1];
+    /**
+     * Records the Quality Gate status of the analysis, whatever the row settings, so the previous status is known
+     * when notifying on changes only is turned on.
+     *
+     * @return the status of the previous analysis of the branch, or null when unknown or without Quality Gate
+     */
+    private QualityGate.Status updateQualityGateStatus(final String projectKey, final String branch,
+        final QualityGate qualityGate) {
+        if (qualityGate == null) {
+            return null;
         }
-        return "";
+        return this.statusTracker.update(projectKey, branch, qualityGate.getStatus());
     }
 
-    private String getSlackHook(final ProjectConfig projectConfig) {
-        String hook = projectConfig.getProjectHook();
-        if (hook != null) {
-            hook = hook.trim();
-        }
-        LOG.info("Hook is: {}", hook);
-        if (hook == null || hook.isEmpty()) {
-            hook = this.getDefaultHook();
+    private List<String> getSlackHooks(final ProjectConfig projectConfig) {
+        final List<String> hooks = projectConfig.getProjectHooks();
+        if (hooks.isEmpty()) {
+            final String defaultHook = this.getDefaultHook();
+            return StringUtils.isBlank(defaultHook) ? Collections.emptyList() : Collections.singletonList(defaultHook);
         }
-        return hook;
+        return hooks;
     }
 
     private String projectUrl(final String projectKey) {
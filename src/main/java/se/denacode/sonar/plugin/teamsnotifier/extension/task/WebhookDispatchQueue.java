@@ -0,0 +1,482 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfig;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.util.VisibleForTesting;
+import org.sonar.api.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Bounded in-process queue between the Compute Engine workers and the Teams webhook.
+ * <p>
+ * {@link TeamsPostProjectAnalysisTask} only enqueues the built payload, the HTTP call itself is made by the
+ * worker threads of this queue. When the queue is full the configured {@link OverflowPolicy} decides what happens.
+ * Failed calls are put back into the queue after the delay given by the {@link RetryPolicy}, so waiting for a retry
+ * never occupies a worker. The {@link HookRateLimiter} holds back messages to a hook that would exceed its rate the
+ * same way. Pending notifications are drained when the Compute Engine shuts down, and the ones still undelivered are
+ * kept in the {@link NotificationOutbox} and sent after the next start. Those are fed to the workers as the queue has
+ * room, never through the overflow policy, so a backlog larger than the queue stays in the outbox until it is sent.
+ * Retries and held back messages are resubmitted the same way, the retry thread never blocks or drops them when the
+ * queue is full.
+ * </p>
+ */
+@ComputeEngineSide
+public class WebhookDispatchQueue implements Startable {
+
+    private static final Logger LOG = Loggers.get(WebhookDispatchQueue.class);
+
+    static final int DEFAULT_CAPACITY = 1000;
+    static final int DEFAULT_WORKERS = 2;
+    static final int DEFAULT_BATCH_MAX_SIZE = 10;
+    static final double DEFAULT_RATE_LIMIT = 0;
+    static final int DEFAULT_RATE_BURST = 4;
+    static final long DEFAULT_OUTBOX_FSYNC_INTERVAL_MILLIS = 200;
+    static final String DATA_PATH_PROPERTY = "sonar.path.data";
+    private static final long NOT_IN_OUTBOX = -1;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+    /**
+     * What to do with a notification when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the oldest queued notification to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the notification being enqueued.
+         */
+        DROP_NEWEST,
+        /**
+         * Block the Compute Engine worker until there is room in the queue.
+         */
+        BLOCK
+    }
+
+    private final OfficeWebhookClient httpClient;
+    private final Configuration settings;
+    private final NotifierMetrics metrics;
+    private ThreadPoolExecutor executor;
+    private NotificationCoalescer coalescer;
+    private RetryPolicy retryPolicy;
+    private HookRateLimiter rateLimiter;
+    private NotificationOutbox outbox;
+    private ScheduledExecutorService retryScheduler;
+    /**
+     * Notifications waiting for room in the queue: recovered from the outbox, retried or held back by the rate limit.
+     * Unbounded, but never holds more than what was accepted before.
+     */
+    private final Deque<Delivery> waiting = new ArrayDeque<>();
+
+    /**
+     * Default constructor invoked by SonarQube.
+     *
+     * @param settings
+     * @param webhookHttpClient
+     * @param metrics
+     */
+    public WebhookDispatchQueue(final Configuration settings, final WebhookHttpClient webhookHttpClient,
+        final NotifierMetrics metrics) {
+        this(new OfficeWebhookClient(settings, webhookHttpClient, metrics), settings, metrics);
+    }
+
+    @VisibleForTesting
+    WebhookDispatchQueue(final OfficeWebhookClient httpClient, final Configuration settings) {
+        this(httpClient, settings, new NotifierMetrics());
+    }
+
+    @VisibleForTesting
+    WebhookDispatchQueue(final OfficeWebhookClient httpClient, final Configuration settings,
+        final NotifierMetrics metrics) {
+        this.httpClient = httpClient;
+        this.settings = settings;
+        this.metrics = metrics;
+        metrics.gauge("dispatch_queue_depth", this::size);
+        metrics.gauge("outbox_pending", () -> this.outbox == null ? 0 : this.outbox.size());
+    }
+
+    @Override
+    public void start() {
+        final int capacity = this.settings.getInt(TeamsNotifierProp.QUEUE_CAPACITY.property()).orElse(DEFAULT_CAPACITY);
+        final int workers = this.settings.getInt(TeamsNotifierProp.QUEUE_WORKERS.property()).orElse(DEFAULT_WORKERS);
+        final OverflowPolicy overflowPolicy = this.getOverflowPolicy();
+        LOG.info("Starting webhook dispatch queue [capacity={}, workers={}, overflowPolicy={}]",
+            capacity, workers, overflowPolicy);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacity), new DispatchThreadFactory(), this.rejectionHandler(overflowPolicy));
+        // Waiting notifications are put in the queue directly, the workers must already be there to take them
+        this.executor.prestartAllCoreThreads();
+        this.retryPolicy = RetryPolicy.of(this.settings);
+        final double rateLimit = this.settings.getDouble(TeamsNotifierProp.RATE_LIMIT.property())
+            .orElse(DEFAULT_RATE_LIMIT);
+        final int rateBurst = this.settings.getInt(TeamsNotifierProp.RATE_BURST.property()).orElse(DEFAULT_RATE_BURST);
+        if (rateLimit > 0) {
+            LOG.info("Rate limiting webhook calls [rate={}/s, burst={}]", rateLimit, rateBurst);
+        }
+        this.rateLimiter = new HookRateLimiter(rateLimit, rateBurst);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "teams-notifier-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long batchWindow = this.settings.getLong(TeamsNotifierProp.BATCH_WINDOW.property()).orElse(0L);
+        if (batchWindow > 0) {
+            final int batchMaxSize = this.settings.getInt(TeamsNotifierProp.BATCH_MAX_SIZE.property())
+                .orElse(DEFAULT_BATCH_MAX_SIZE);
+            LOG.info("Coalescing notifications per hook [window={}ms, maxBatchSize={}]", batchWindow, batchMaxSize);
+            this.coalescer = new NotificationCoalescer(batchWindow, batchMaxSize, this::dispatch);
+        }
+        this.outbox = this.openOutbox();
+        if (this.outbox != null && !this.outbox.getRecovered().isEmpty()) {
+            LOG.info("Sending {} notification(s) recovered from the outbox", this.outbox.getRecovered().size());
+            synchronized (this.waiting) {
+                for (final NotificationOutbox.Entry entry : this.outbox.getRecovered()) {
+                    this.waiting.addLast(
+                        new Delivery(entry.getHook(), entry.getPayload(), 1, false, entry.getId(), null));
+                }
+            }
+            this.fillQueue(false);
+        }
+    }
+
+    /**
+     * Queues a notification already accepted once, without blocking nor going through the overflow policy.
+     */
+    private void resubmit(final Delivery delivery) {
+        synchronized (this.waiting) {
+            this.waiting.addLast(delivery);
+        }
+        this.fillQueue(false);
+    }
+
+    /**
+     * Moves waiting notifications into the queue while it has room. Called again each time a delivery ends, until
+     * all are queued.
+     *
+     * @param onWorker true when called by a worker, which goes on taking from the queue while it is drained
+     */
+    private void fillQueue(final boolean onWorker) {
+        synchronized (this.waiting) {
+            while (!this.waiting.isEmpty() && (onWorker || !this.executor.isShutdown())) {
+                if (!this.executor.getQueue().offer(this.waiting.peekFirst())) {
+                    return;
+                }
+                this.waiting.pollFirst();
+            }
+        }
+    }
+
+    private NotificationOutbox openOutbox() {
+        final boolean enabled = this.settings.getBoolean(TeamsNotifierProp.OUTBOX_ENABLED.property()).orElse(true);
+        final Optional<String> dataPath = this.settings.get(DATA_PATH_PROPERTY);
+        if (!enabled || !dataPath.isPresent()) {
+            return null;
+        }
+        final Path directory = Paths.get(dataPath.get(), "teams-notifier", "outbox");
+        final long fsyncInterval = this.settings.getLong(TeamsNotifierProp.OUTBOX_FSYNC_INTERVAL.property())
+            .orElse(DEFAULT_OUTBOX_FSYNC_INTERVAL_MILLIS);
+        try {
+            LOG.info("Keeping undelivered notifications in {}", directory);
+            return NotificationOutbox.open(directory, fsyncInterval);
+        } catch (final IOException e) {
+            LOG.error("Failed to open the notification outbox in {}, notifications will not survive a restart: {}",
+                directory, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (this.executor == null) {
+            return;
+        }
+        if (this.coalescer != null) {
+            this.coalescer.stop();
+        }
+        LOG.info("Draining webhook dispatch queue, {} notification(s) pending", this.executor.getQueue().size());
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("Webhook dispatch queue not drained within {}s, dropping {} notification(s)",
+                    DRAIN_TIMEOUT_SECONDS, this.executor.shutdownNow().size());
+            }
+        } catch (final InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        final int pendingRetries = this.retryScheduler.shutdownNow().size();
+        if (pendingRetries > 0) {
+            LOG.warn("Webhook dispatch queue stopped, dropping {} notification(s) waiting for a retry", pendingRetries);
+        }
+        synchronized (this.waiting) {
+            if (!this.waiting.isEmpty()) {
+                // Still in the outbox, sent after the next start
+                LOG.warn("Webhook dispatch queue stopped, dropping {} notification(s) waiting for room in the queue",
+                    this.waiting.size());
+                this.waiting.clear();
+            }
+        }
+        if (this.outbox != null) {
+            try {
+                if (this.outbox.size() > 0) {
+                    LOG.info("{} undelivered notification(s) kept in the outbox", this.outbox.size());
+                }
+                this.outbox.close();
+            } catch (final IOException e) {
+                LOG.warn("Failed to close the notification outbox: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hands the payload over to the dispatch workers, returns without waiting for the webhook call.
+     * When coalescing is enabled the payload first waits for others sent to the same hook.
+     *
+     * @param hook    the resolved webhook URL
+     * @param payload the message to send
+     */
+    public void enqueue(final String hook, final Payload payload) {
+        this.enqueue(hook, payload, (Runnable) null);
+    }
+
+    private void enqueue(final String hook, final Payload payload, final Runnable onUndelivered) {
+        if (this.executor == null) {
+            throw new IllegalStateException("Webhook dispatch queue is not started");
+        }
+        if (this.coalescer != null) {
+            this.coalescer.add(hook, payload, onUndelivered);
+        } else {
+            this.dispatch(hook, payload, onUndelivered);
+        }
+    }
+
+    /**
+     * Same as {@link #enqueue(String, Payload)}, sending to the hook at the rate set in the project config row.
+     *
+     * @param projectConfig the row whose rate limit applies to the hook, the global one when it sets none
+     */
+    public void enqueue(final String hook, final Payload payload, final ProjectConfig projectConfig) {
+        this.enqueue(hook, payload, projectConfig, null);
+    }
+
+    /**
+     * Same as {@link #enqueue(String, Payload, ProjectConfig)}, calling back when the notification is not delivered.
+     *
+     * @param onUndelivered called once the notification is dropped or given up on, may be null
+     */
+    public void enqueue(final String hook, final Payload payload, final ProjectConfig projectConfig,
+        final Runnable onUndelivered) {
+        if (this.rateLimiter != null) {
+            this.rateLimiter.configure(hook, projectConfig.getRateLimit(), projectConfig.getRateBurst());
+        }
+        this.enqueue(hook, payload, onUndelivered);
+    }
+
+    private void dispatch(final String hook, final Payload payload, final Runnable onUndelivered) {
+        long outboxId = NOT_IN_OUTBOX;
+        if (this.outbox != null) {
+            try {
+                outboxId = this.outbox.append(hook, payload);
+            } catch (final IOException e) {
+                LOG.warn("Failed to write notification to the outbox, it will not survive a restart: {}", e.getMessage());
+            }
+        }
+        this.executor.execute(new Delivery(hook, payload, 1, false, outboxId, onUndelivered));
+    }
+
+    private void schedule(final Delivery delivery, final long delayMillis) {
+        try {
+            this.retryScheduler.schedule(() -> this.resubmit(delivery), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            LOG.warn("Webhook dispatch queue is stopped, dropping {}", delivery);
+            this.metrics.dropped.increment();
+            delivery.undelivered();
+        }
+    }
+
+    private void retry(final Delivery failed, final IOException failure, final long startNanos) {
+        final long delayMillis = this.retryPolicy.delayMillis(failed.attempt, failure);
+        if (delayMillis == RetryPolicy.NO_RETRY) {
+            NotificationLog.failed(failed.hook, failed.payload, failed.attempt, startNanos, failure.getMessage());
+            LOG.debug("Failed to send {}", failed, failure);
+            failed.undelivered();
+            this.metrics.failed.increment();
+            failed.complete();
+            return;
+        }
+        this.metrics.retried.increment();
+        NotificationLog.retrying(failed.hook, failed.payload, failed.attempt, startNanos, failure.getMessage(),
+            delayMillis);
+        this.schedule(new Delivery(failed.hook, failed.payload, failed.attempt + 1, false, failed.outboxId,
+            failed.onUndelivered), delayMillis);
+    }
+
+    int size() {
+        return this.executor == null ? 0 : this.executor.getQueue().size();
+    }
+
+    private OverflowPolicy getOverflowPolicy() {
+        return this.settings.get(TeamsNotifierProp.QUEUE_OVERFLOW_POLICY.property())
+            .map(policy -> OverflowPolicy.valueOf(policy.trim().toUpperCase(Locale.ENGLISH)))
+            .orElse(OverflowPolicy.DROP_OLDEST);
+    }
+
+    private RejectedExecutionHandler rejectionHandler(final OverflowPolicy overflowPolicy) {
+        return (runnable, executor) -> {
+            if (executor.isShutdown()) {
+                // Still in the outbox, sent after the next start
+                LOG.warn("Webhook dispatch queue is stopped, dropping {}", runnable);
+                this.metrics.dropped.increment();
+                if (runnable instanceof Delivery) {
+                    ((Delivery) runnable).undelivered();
+                }
+                return;
+            }
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    final Runnable oldest = executor.getQueue().poll();
+                    LOG.warn("Webhook dispatch queue is full, dropping oldest {}", oldest);
+                    completeDropped(oldest);
+                    executor.execute(runnable);
+                    break;
+                case BLOCK:
+                    try {
+                        executor.getQueue().put(runnable);
+                    } catch (final InterruptedException e) {
+                        LOG.warn("Interrupted while waiting for room in the webhook dispatch queue, dropping {}", runnable);
+                        this.metrics.dropped.increment();
+                        if (runnable instanceof Delivery) {
+                            ((Delivery) runnable).undelivered();
+                        }
+                        Thread.currentThread().interrupt();
+                    }
+                    break;
+                case DROP_NEWEST:
+                default:
+                    LOG.warn("Webhook dispatch queue is full, dropping {}", runnable);
+                    completeDropped(runnable);
+                    break;
+            }
+        };
+    }
+
+    private void completeDropped(final Runnable runnable) {
+        this.metrics.dropped.increment();
+        if (runnable instanceof Delivery) {
+            ((Delivery) runnable).undelivered();
+            ((Delivery) runnable).complete();
+        }
+    }
+
+    private final class Delivery implements Runnable {
+        private final String hook;
+        private final Payload payload;
+        private final int attempt;
+        private final boolean permitted;
+        private final long outboxId;
+        private final Runnable onUndelivered;
+
+        private Delivery(final String hook, final Payload payload, final int attempt, final boolean permitted,
+            final long outboxId, final Runnable onUndelivered) {
+            this.hook = hook;
+            this.payload = payload;
+            this.attempt = attempt;
+            this.permitted = permitted;
+            this.outboxId = outboxId;
+            this.onUndelivered = onUndelivered;
+        }
+
+        @Override
+        public void run() {
+            if (!this.permitted) {
+                final long waitMillis = rateLimiter.reserve(this.hook);
+                if (waitMillis > 0) {
+                    LOG.debug("Rate limit of the hook reached, sending {} in {}ms", this, waitMillis);
+                    schedule(new Delivery(this.hook, this.payload, this.attempt, true, this.outboxId,
+                        this.onUndelivered), waitMillis);
+                    return;
+                }
+            }
+            final long start = System.nanoTime();
+            try {
+                if (httpClient.invokeIncomingWebhook(this.hook, this.payload)) {
+                    NotificationLog.delivered(this.hook, this.payload, this.attempt, start);
+                    metrics.sent.increment();
+                } else {
+                    NotificationLog.failed(this.hook, this.payload, this.attempt, start, "no response body");
+                    this.undelivered();
+                    metrics.failed.increment();
+                }
+                this.complete();
+            } catch (final IOException e) {
+                retry(this, e, start);
+            } catch (final RuntimeException e) {
+                NotificationLog.failed(this.hook, this.payload, this.attempt, start, e.getMessage());
+                LOG.debug("Failed to send {}", this, e);
+                this.undelivered();
+                metrics.failed.increment();
+                this.complete();
+            } finally {
+                fillQueue(true);
+            }
+        }
+
+        /**
+         * Removes the notification from the outbox once it is delivered or given up on.
+         */
+        private void complete() {
+            if (outbox != null && this.outboxId != NOT_IN_OUTBOX) {
+                outbox.ack(this.outboxId);
+            }
+        }
+
+        private void undelivered() {
+            if (this.onUndelivered == null) {
+                return;
+            }
+            try {
+                this.onUndelivered.run();
+            } catch (final RuntimeException e) {
+                LOG.warn("Failed to call back for undelivered {}: {}", this, e.getMessage());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "notification [" + this.payload.getSection().getActivitySubtitle() + "] to "
+                + NotificationLog.host(this.hook);
+        }
+    }
+
+    private static final class DispatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "teams-notifier-dispatch-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
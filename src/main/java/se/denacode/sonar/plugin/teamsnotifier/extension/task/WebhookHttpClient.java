@@ -0,0 +1,200 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfig;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Credentials;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.sonar.api.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * The one {@link OkHttpClient} of the plugin, shared by every webhook call so connections and TLS sessions to the
+ * hook hosts are reused.
+ * <p>
+ * The connection pool, concurrent calls per host and timeouts are configurable, proxies are chosen per host by the
+ * {@link WebhookProxySelector}. When warm-up is enabled a HEAD request is sent to every configured hook host at
+ * startup, so the first notification does not pay for the TLS handshake.
+ * </p>
+ */
+@ComputeEngineSide
+public class WebhookHttpClient implements Startable {
+
+    private static final Logger LOG = Loggers.get(WebhookHttpClient.class);
+
+    static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+    static final long DEFAULT_CALL_TIMEOUT_MILLIS = 30_000;
+    static final long DEFAULT_READ_TIMEOUT_MILLIS = 10_000;
+    private static final int PROXY_PROBE_TIMEOUT_MILLIS = 2000;
+    private static final String PROXY_AUTHORIZATION = "Proxy-Authorization";
+
+    private final Configuration settings;
+    private final WebhookProxySelector proxySelector;
+    private final OkHttpClient client;
+
+    /**
+     * Default constructor invoked by SonarQube.
+     *
+     * @param settings
+     * @param metrics
+     */
+    public WebhookHttpClient(final Configuration settings, final NotifierMetrics metrics) {
+        this.settings = settings;
+        final int maxRequestsPerHost = settings.getInt(TeamsNotifierProp.HTTP_MAX_REQUESTS_PER_HOST.property())
+            .orElse(DEFAULT_MAX_REQUESTS_PER_HOST);
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        final ConnectionPool connectionPool = new ConnectionPool(
+            settings.getInt(TeamsNotifierProp.HTTP_MAX_IDLE_CONNECTIONS.property()).orElse(DEFAULT_MAX_IDLE_CONNECTIONS),
+            settings.getLong(TeamsNotifierProp.HTTP_KEEP_ALIVE.property()).orElse(DEFAULT_KEEP_ALIVE_MILLIS),
+            TimeUnit.MILLISECONDS);
+        final OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            // The dispatcher only limits asynchronous calls, the webhook calls are synchronous
+            .addInterceptor(new HostConcurrencyLimit(maxRequestsPerHost))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .writeTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(settings.getLong(TeamsNotifierProp.HTTP_READ_TIMEOUT.property())
+                .orElse(DEFAULT_READ_TIMEOUT_MILLIS), TimeUnit.MILLISECONDS)
+            .callTimeout(settings.getLong(TeamsNotifierProp.HTTP_CALL_TIMEOUT.property())
+                .orElse(DEFAULT_CALL_TIMEOUT_MILLIS), TimeUnit.MILLISECONDS);
+        this.proxySelector = WebhookProxySelector.of(settings);
+        builder.proxySelector(this.proxySelector);
+        metrics.gauge("proxy_connect_failures_total", this.proxySelector::getConnectFailures);
+        this.declareProxyAuthentication(builder);
+        this.client = builder.build();
+    }
+
+    public OkHttpClient getClient() {
+        return this.client;
+    }
+
+    WebhookProxySelector getProxySelector() {
+        return this.proxySelector;
+    }
+
+    @Override
+    public void start() {
+        if (this.proxySelector.isProxyConfigured()) {
+            this.client.dispatcher().executorService()
+                .execute(() -> this.proxySelector.probe(PROXY_PROBE_TIMEOUT_MILLIS));
+        }
+        if (!this.settings.getBoolean(TeamsNotifierProp.HTTP_WARM_UP.property()).orElse(false)) {
+            return;
+        }
+        for (final HttpUrl host : this.getHookHosts()) {
+            LOG.info("Warming up connection to {}", host);
+            final Request request = new Request.Builder().url(host).head().build();
+            this.client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onResponse(final Call call, final Response response) {
+                    response.close();
+                }
+
+                @Override
+                public void onFailure(final Call call, final IOException e) {
+                    LOG.warn("Failed to warm up connection to {}: {}", host, e.getMessage());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void stop() {
+        this.client.dispatcher().executorService().shutdown();
+        this.client.connectionPool().evictAll();
+    }
+
+    /**
+     * @return the root URL of the global hook and of every project specific hook
+     */
+    Set<HttpUrl> getHookHosts() {
+        final Set<HttpUrl> hosts = new LinkedHashSet<>();
+        this.addHookHost(hosts, this.settings.get(TeamsNotifierProp.HOOK.property()));
+        for (final String projectConfigIndex : this.settings.getStringArray(TeamsNotifierProp.CONFIG.property())) {
+            this.addHookHost(hosts, this.settings.get(TeamsNotifierProp.CONFIG.property() + "." + projectConfigIndex +
+                "." + TeamsNotifierProp.PROJECT_HOOK.property()));
+        }
+        return hosts;
+    }
+
+    private void addHookHost(final Set<HttpUrl> hosts, final Optional<String> hooks) {
+        for (final String hook : ProjectConfig.splitHooks(hooks.orElse(null))) {
+            final HttpUrl url = HttpUrl.parse(hook);
+            if (url != null) {
+                hosts.add(url.resolve("/"));
+            }
+        }
+    }
+
+    private void declareProxyAuthentication(final OkHttpClient.Builder builder) {
+        final String user = this.settings.get(TeamsNotifierProp.PROXY_USER.property()).orElse("");
+        if (user.isEmpty()) {
+            return;
+        }
+        final String credential = Credentials.basic(user,
+            this.settings.get(TeamsNotifierProp.PROXY_PASSWORD.property()).orElse(""));
+        builder.proxyAuthenticator((route, response) -> {
+            if (response.request().header(PROXY_AUTHORIZATION) != null) {
+                // Already tried, the credentials are wrong
+                return null;
+            }
+            return response.request().newBuilder().header(PROXY_AUTHORIZATION, credential).build();
+        });
+    }
+
+    /**
+     * Makes calls to a host wait while {@code maxRequests} others are in flight.
+     */
+    static final class HostConcurrencyLimit implements Interceptor {
+        private final int maxRequests;
+        private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+        HostConcurrencyLimit(final int maxRequests) {
+            this.maxRequests = maxRequests;
+        }
+
+        @Override
+        public Response intercept(final Chain chain) throws IOException {
+            final Semaphore semaphore = this.permits.computeIfAbsent(chain.request().url().host(),
+                host -> new Semaphore(this.maxRequests));
+            try {
+                semaphore.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a call to " +
+                    chain.request().url().host());
+            }
+            try {
+                return chain.proceed(chain.request());
+            } finally {
+                semaphore.release();
+            }
+        }
+    }
+}
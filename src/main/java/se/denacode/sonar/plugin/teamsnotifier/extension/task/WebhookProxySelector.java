@@ -0,0 +1,137 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.StringUtils;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Chooses the proxy for each webhook host from the plugin settings.
+ * <p>
+ * Hosts matching one of the no-proxy patterns are reached directly, all others through the configured HTTP or SOCKS
+ * proxy. The choice is cached per host. Failed proxy connections are counted so an unreachable proxy shows up in the
+ * logs and metrics instead of as slow timeouts only.
+ * </p>
+ */
+class WebhookProxySelector extends ProxySelector {
+
+    private static final Logger LOG = Loggers.get(WebhookProxySelector.class);
+
+    static final int DEFAULT_PROXY_PORT = 8080;
+    private static final List<Proxy> NO_PROXY = Collections.singletonList(Proxy.NO_PROXY);
+
+    private final Proxy proxy;
+    private final Pattern nonProxyHosts;
+    private final ConcurrentMap<String, List<Proxy>> cache = new ConcurrentHashMap<>();
+    private final AtomicLong connectFailures = new AtomicLong();
+
+    WebhookProxySelector(final Proxy proxy, final String... nonProxyHosts) {
+        this.proxy = proxy;
+        this.nonProxyHosts = compileHostPatterns(nonProxyHosts);
+    }
+
+    static WebhookProxySelector of(final Configuration settings) {
+        final String proxyIp = settings.get(TeamsNotifierProp.PROXY_IP.property()).map(String::trim).orElse("");
+        final Proxy.Type type = getProxyType(settings);
+        if (proxyIp.isEmpty() || type == Proxy.Type.DIRECT) {
+            return new WebhookProxySelector(Proxy.NO_PROXY);
+        }
+        final int port = settings.getInt(TeamsNotifierProp.PROXY_PORT.property()).orElse(DEFAULT_PROXY_PORT);
+        final Proxy proxy = new Proxy(type, InetSocketAddress.createUnresolved(proxyIp, port));
+        LOG.info("Sending webhook calls through {}", proxy);
+        return new WebhookProxySelector(proxy,
+            settings.getStringArray(TeamsNotifierProp.PROXY_NON_PROXY_HOSTS.property()));
+    }
+
+    private static Proxy.Type getProxyType(final Configuration settings) {
+        final String protocol = settings.get(TeamsNotifierProp.PROXY_PROTOCOL.property()).map(String::trim)
+            .orElse(Proxy.Type.HTTP.name());
+        try {
+            return Proxy.Type.valueOf(protocol.toUpperCase(Locale.ENGLISH));
+        } catch (final IllegalArgumentException e) {
+            LOG.warn("Unknown proxy protocol '{}', using HTTP", protocol);
+            return Proxy.Type.HTTP;
+        }
+    }
+
+    /**
+     * @return a pattern matching any of the hosts, which may start or end with a '*' wildcard, or null when empty
+     */
+    private static Pattern compileHostPatterns(final String... hosts) {
+        final String alternation = Stream.of(hosts)
+            .map(String::trim)
+            .filter(host -> !host.isEmpty())
+            .map(host -> Stream.of(host.split("\\*", -1)).map(Pattern::quote).collect(Collectors.joining(".*")))
+            .collect(Collectors.joining("|"));
+        return alternation.isEmpty() ? null : Pattern.compile(alternation, Pattern.CASE_INSENSITIVE);
+    }
+
+    @Override
+    public List<Proxy> select(final URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("URI can't be null");
+        }
+        final String host = StringUtils.defaultString(uri.getHost());
+        return this.cache.computeIfAbsent(host.toLowerCase(Locale.ENGLISH), this::resolve);
+    }
+
+    private List<Proxy> resolve(final String host) {
+        if (this.proxy == Proxy.NO_PROXY
+            || (this.nonProxyHosts != null && this.nonProxyHosts.matcher(host).matches())) {
+            return NO_PROXY;
+        }
+        return Collections.singletonList(this.proxy);
+    }
+
+    @Override
+    public void connectFailed(final URI uri, final SocketAddress address, final IOException failure) {
+        this.connectFailures.incrementAndGet();
+        LOG.warn("Failed to connect to proxy {} for {}: {}", address, uri, failure.getMessage());
+    }
+
+    /**
+     * Opens and closes a connection to the proxy, so an unreachable proxy is reported at startup rather than on
+     * the first notification.
+     */
+    void probe(final int timeoutMillis) {
+        if (this.proxy == Proxy.NO_PROXY) {
+            return;
+        }
+        final InetSocketAddress address = (InetSocketAddress) this.proxy.address();
+        try (final Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), timeoutMillis);
+            LOG.info("Proxy {} is reachable", address);
+        } catch (final IOException e) {
+            this.connectFailures.incrementAndGet();
+            LOG.error("Proxy {} is unreachable, webhook calls will fail: {}", address, e.getMessage());
+        }
+    }
+
+    boolean isProxyConfigured() {
+        return this.proxy != Proxy.NO_PROXY;
+    }
+
+    /**
+     * @return the number of failed connections to the proxy since startup
+     */
+    long getConnectFailures() {
+        return this.connectFailures.get();
+    }
+}
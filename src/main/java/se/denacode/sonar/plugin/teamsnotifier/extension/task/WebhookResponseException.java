@@ -0,0 +1,39 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the webhook answers with a non successful HTTP status.
+ */
+class WebhookResponseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+    private final long retryAfterMillis;
+
+    /**
+     * @param code             the HTTP status code
+     * @param retryAfterMillis the delay asked for by the Retry-After header, or -1 when there is none
+     */
+    WebhookResponseException(final int code, final long retryAfterMillis) {
+        super("The webhook call has failed with HTTP status " + code);
+        this.code = code;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    int getCode() {
+        return this.code;
+    }
+
+    long getRetryAfterMillis() {
+        return this.retryAfterMillis;
+    }
+
+    /**
+     * @return true for throttling (429), request timeout (408) and server errors (5xx)
+     */
+    boolean isRetryable() {
+        return this.code == 429 || this.code == 408 || this.code >= 500;
+    }
+}
@@ -0,0 +1,174 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task.payload;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a payload as an Adaptive Card in a Teams message attachment: one container per section, with its title,
+ * text, facts and actions, and the card actions at the bottom.
+ * <p>
+ * The constant parts of the card are built once as JSON fragments, including one container header per style, so a
+ * notification only writes the fragments and its escaped texts.
+ * </p>
+ */
+final class AdaptiveCardJson {
+
+    private static final String CARD_START = "{\"type\":\"message\",\"attachments\":[{"
+        + "\"contentType\":\"application/vnd.microsoft.card.adaptive\",\"contentUrl\":null,\"content\":{"
+        + "\"$schema\":\"http://adaptivecards.io/schemas/adaptive-card.json\",\"type\":\"AdaptiveCard\","
+        + "\"version\":\"1.2\",\"msteams\":{\"width\":\"Full\"},\"body\":[";
+    private static final String CARD_ACTIONS = "],\"actions\":[";
+    private static final String CARD_END = "]}}]}";
+    private static final String CONTAINER_END = "]}";
+    private static final String TEXT_START = ",{\"type\":\"TextBlock\",\"wrap\":true,\"isSubtle\":true,\"text\":";
+    private static final String FACTS_START = ",{\"type\":\"FactSet\",\"facts\":[";
+    private static final String FACT_TITLE = "{\"title\":";
+    private static final String FACT_VALUE = ",\"value\":";
+    private static final String FACTS_END = "]}";
+    private static final String ACTION_SET_START = ",{\"type\":\"ActionSet\",\"actions\":[";
+    private static final String ACTION_SET_END = "]}";
+    private static final String ACTION_TITLE = "{\"type\":\"Action.OpenUrl\",\"title\":";
+    private static final String ACTION_URL = ",\"url\":";
+    private static final String DEFAULT_HEADER = header("default", "Default");
+    private static final Map<String, String> HEADERS = new HashMap<>();
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        // Theme color of the MessageCard -> style of the container and color of its title
+        HEADERS.put(Payload.COLOR_OK, header("good", "Good"));
+        HEADERS.put(Payload.COLOR_WARN, header("warning", "Warning"));
+        HEADERS.put(Payload.COLOR_ERROR, header("attention", "Attention"));
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = String.format("\\u%04x", c);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\f'] = "\\f";
+        // Same HTML safe escaping as Gson
+        ESCAPES['<'] = "\\u003c";
+        ESCAPES['>'] = "\\u003e";
+        ESCAPES['&'] = "\\u0026";
+        ESCAPES['='] = "\\u003d";
+        ESCAPES['\''] = "\\u0027";
+    }
+
+    private AdaptiveCardJson() {
+        // Only static members
+    }
+
+    static void write(final Payload payload, final Writer out) throws IOException {
+        final String header = HEADERS.getOrDefault(payload.getThemeColor(), DEFAULT_HEADER);
+        out.write(CARD_START);
+        boolean first = true;
+        for (final Section section : payload.getSections()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeSection(section, header, out);
+        }
+        out.write(CARD_ACTIONS);
+        writeActions(payload.getPotentialAction(), out);
+        out.write(CARD_END);
+        out.flush();
+    }
+
+    private static void writeSection(final Section section, final String header, final Writer out)
+        throws IOException {
+        out.write(header);
+        writeString(section.getActivityTitle(), out);
+        out.write('}');
+        if (section.getActivitySubtitle() != null) {
+            out.write(TEXT_START);
+            writeString(section.getActivitySubtitle(), out);
+            out.write('}');
+        }
+        if (!section.getFacts().isEmpty()) {
+            out.write(FACTS_START);
+            boolean first = true;
+            for (final Fact fact : section.getFacts()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(FACT_TITLE);
+                writeString(fact.getName(), out);
+                out.write(FACT_VALUE);
+                writeString(fact.getValue(), out);
+                out.write('}');
+            }
+            out.write(FACTS_END);
+        }
+        if (!section.getPotentialAction().isEmpty()) {
+            out.write(ACTION_SET_START);
+            writeActions(section.getPotentialAction(), out);
+            out.write(ACTION_SET_END);
+        }
+        out.write(CONTAINER_END);
+    }
+
+    private static void writeActions(final List<Action> actions, final Writer out) throws IOException {
+        boolean first = true;
+        for (final Action action : actions) {
+            for (final String target : action.getTarget()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(ACTION_TITLE);
+                writeString(action.getName(), out);
+                out.write(ACTION_URL);
+                writeString(target, out);
+                out.write('}');
+            }
+        }
+    }
+
+    /**
+     * Writes the value as a JSON string, an empty one for null as Adaptive Card texts are required.
+     */
+    private static void writeString(final String value, final Writer out) throws IOException {
+        out.write('"');
+        if (value != null) {
+            int last = 0;
+            final int length = value.length();
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                final String escape;
+                if (c < ESCAPES.length) {
+                    escape = ESCAPES[c];
+                } else if (c == '\u2028') {
+                    escape = "\\u2028";
+                } else if (c == '\u2029') {
+                    escape = "\\u2029";
+                } else {
+                    continue;
+                }
+                if (escape == null) {
+                    continue;
+                }
+                if (last < i) {
+                    out.write(value, last, i - last);
+                }
+                out.write(escape);
+                last = i + 1;
+            }
+            if (last < length) {
+                out.write(value, last, length - last);
+            }
+        }
+        out.write('"');
+    }
+
+    private static String header(final String style, final String color) {
+        return "{\"type\":\"Container\",\"style\":\"" + style + "\",\"items\":[{\"type\":\"TextBlock\","
+            + "\"size\":\"Medium\",\"weight\":\"Bolder\",\"wrap\":true,\"color\":\"" + color + "\",\"text\":";
+    }
+}
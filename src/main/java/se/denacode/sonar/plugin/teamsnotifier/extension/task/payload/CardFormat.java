@@ -0,0 +1,32 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task.payload;
+
+import java.util.Locale;
+
+/**
+ * The format of the card posted to the webhook.
+ */
+public enum CardFormat {
+    /**
+     * The legacy Office 365 connector card, the default
+     */
+    MESSAGE_CARD,
+    /**
+     * An Adaptive Card in a message attachment
+     */
+    ADAPTIVE_CARD;
+
+    /**
+     * @return the format of the given name, case insensitive, or the default one when it is empty or unknown
+     */
+    public static CardFormat parse(final String name) {
+        if (name != null) {
+            final String normalized = name.trim().toUpperCase(Locale.ENGLISH);
+            for (final CardFormat format : values()) {
+                if (format.name().equals(normalized) || format.name().replace("_", "").equals(normalized)) {
+                    return format;
+                }
+            }
+        }
+        return MESSAGE_CARD;
+    }
+}
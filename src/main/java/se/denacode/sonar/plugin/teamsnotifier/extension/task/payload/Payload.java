@@ -5,10 +5,21 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Payload {
+    /**
+     * Theme colors of the Quality Gate statuses
+     */
+    public static final String COLOR_OK = "#00FF00";
+    public static final String COLOR_WARN = "#FFA500";
+    public static final String COLOR_ERROR = "#FF0000";
+
     private final String summary;
-    private final String themeColor = "#00FF00";
+    private String themeColor = COLOR_OK;
     private final List<Section> sections = new ArrayList<>();
     private final List<Action> potentialAction = new ArrayList<>();
+    // Null for the default MessageCard, so the MessageCard JSON is unchanged
+    private CardFormat format;
+    // Only logged, neither sent nor kept in the outbox
+    private transient String correlationId;
 
     public Payload(String summary, Section section) {
         this.summary = summary;
@@ -23,14 +34,44 @@ public class Payload {
         return themeColor;
     }
 
+    public Payload withThemeColor(String themeColor) {
+        this.themeColor = themeColor;
+        return this;
+    }
+
+    public CardFormat getFormat() {
+        return format == null ? CardFormat.MESSAGE_CARD : format;
+    }
+
+    public Payload withFormat(CardFormat format) {
+        this.format = format == CardFormat.MESSAGE_CARD ? null : format;
+        return this;
+    }
+
     public Section getSection() {
         return sections.get(0);
     }
 
+    public List<Section> getSections() {
+        return sections;
+    }
+
     public List<Action> getPotentialAction() {
         return potentialAction;
     }
 
+    /**
+     * @return the id of the Compute Engine task(s) the payload was built for, null when unknown
+     */
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public Payload withCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+        return this;
+    }
+
 }
 
 
@@ -0,0 +1,181 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task.payload;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Shared JSON serialization of the MessageCard payload.
+ * <p>
+ * The type adapters are registered once and write the fields directly, so serializing a payload neither creates a
+ * new {@link Gson} nor goes through reflection. The output is the same as reflective Gson serialization. The adapters
+ * only write, so the {@link Gson} instances holding them stay private and payloads are read with {@link #read(Reader)}.
+ * </p>
+ */
+public final class PayloadJson {
+
+    private static final TypeAdapter<Fact> FACT_ADAPTER = new FactAdapter();
+    private static final TypeAdapter<Action> ACTION_ADAPTER = new ActionAdapter();
+    private static final TypeAdapter<Section> SECTION_ADAPTER = new SectionAdapter();
+    private static final TypeAdapter<Payload> PAYLOAD_ADAPTER = new PayloadAdapter();
+
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(Payload.class, PAYLOAD_ADAPTER)
+        .registerTypeAdapter(Section.class, SECTION_ADAPTER)
+        .registerTypeAdapter(Fact.class, FACT_ADAPTER)
+        .registerTypeAdapter(Action.class, ACTION_ADAPTER)
+        .create();
+
+    private static final Gson PRETTY_GSON = GSON.newBuilder().setPrettyPrinting().create();
+
+    /**
+     * Reads payloads back reflectively, which maps the same field names as the adapters write.
+     */
+    private static final Gson READ_GSON = new Gson();
+
+    private PayloadJson() {
+        // Only static members
+    }
+
+    /**
+     * @return the payload as JSON, like {@link #write(Payload, Writer)}
+     */
+    public static String toJson(final Payload payload) {
+        return GSON.toJson(payload);
+    }
+
+    /**
+     * For debug logging only.
+     */
+    public static String toPrettyJson(final Payload payload) {
+        return PRETTY_GSON.toJson(payload);
+    }
+
+    /**
+     * Streams the payload as JSON into the given writer, flushes it but does not close it.
+     */
+    public static void write(final Payload payload, final Writer writer) throws IOException {
+        final JsonWriter jsonWriter = GSON.newJsonWriter(writer);
+        // Same escaping of <, >, = etc. as Gson.toJson
+        jsonWriter.setHtmlSafe(GSON.htmlSafe());
+        PAYLOAD_ADAPTER.write(jsonWriter, payload);
+        jsonWriter.flush();
+    }
+
+    /**
+     * Streams the card posted to the webhook, a MessageCard or an Adaptive Card depending on the format of the payload.
+     */
+    public static void writeCard(final Payload payload, final Writer writer) throws IOException {
+        if (payload.getFormat() == CardFormat.ADAPTIVE_CARD) {
+            AdaptiveCardJson.write(payload, writer);
+        } else {
+            write(payload, writer);
+        }
+    }
+
+    /**
+     * Reads a payload written by {@link #write(Payload, Writer)}, e.g. when replaying the outbox.
+     */
+    public static Payload read(final Reader reader) {
+        return READ_GSON.fromJson(reader, Payload.class);
+    }
+
+    private static <T> void writeArray(final JsonWriter out, final List<T> values, final TypeAdapter<T> adapter)
+        throws IOException {
+        out.beginArray();
+        for (final T value : values) {
+            adapter.write(out, value);
+        }
+        out.endArray();
+    }
+
+    private abstract static class WriteOnlyAdapter<T> extends TypeAdapter<T> {
+        @Override
+        public T read(final JsonReader in) {
+            throw new UnsupportedOperationException("Payloads are only serialized");
+        }
+    }
+
+    private static final class PayloadAdapter extends WriteOnlyAdapter<Payload> {
+        @Override
+        public void write(final JsonWriter out, final Payload payload) throws IOException {
+            if (payload == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("summary").value(payload.getSummary());
+            out.name("themeColor").value(payload.getThemeColor());
+            out.name("sections");
+            writeArray(out, payload.getSections(), SECTION_ADAPTER);
+            out.name("potentialAction");
+            writeArray(out, payload.getPotentialAction(), ACTION_ADAPTER);
+            if (payload.getFormat() != CardFormat.MESSAGE_CARD) {
+                // Kept in the outbox, not part of the MessageCard
+                out.name("format").value(payload.getFormat().name());
+            }
+            out.endObject();
+        }
+    }
+
+    private static final class SectionAdapter extends WriteOnlyAdapter<Section> {
+        @Override
+        public void write(final JsonWriter out, final Section section) throws IOException {
+            if (section == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("markdown").value(section.isMarkdown());
+            out.name("facts");
+            writeArray(out, section.getFacts(), FACT_ADAPTER);
+            out.name("activityTitle").value(section.getActivityTitle());
+            out.name("activitySubtitle").value(section.getActivitySubtitle());
+            if (!section.getPotentialAction().isEmpty()) {
+                out.name("potentialAction");
+                writeArray(out, section.getPotentialAction(), ACTION_ADAPTER);
+            }
+            out.endObject();
+        }
+    }
+
+    private static final class FactAdapter extends WriteOnlyAdapter<Fact> {
+        @Override
+        public void write(final JsonWriter out, final Fact fact) throws IOException {
+            if (fact == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("name").value(fact.getName());
+            out.name("value").value(fact.getValue());
+            out.endObject();
+        }
+    }
+
+    private static final class ActionAdapter extends WriteOnlyAdapter<Action> {
+        @Override
+        public void write(final JsonWriter out, final Action action) throws IOException {
+            if (action == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("@context").value(action.getContext());
+            out.name("@type").value(action.getType());
+            out.name("name").value(action.getName());
+            out.name("target").beginArray();
+            for (final String target : action.getTarget()) {
+                out.value(target);
+            }
+            out.endArray();
+            out.endObject();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package se.denacode.sonar.plugin.teamsnotifier.extension.task.payload;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Section {
@@ -8,6 +9,7 @@ public class Section {
     private final List<Fact> facts = new ArrayList<>();
     private final String activityTitle;
     private final String activitySubtitle;
+    private List<Action> potentialAction;
 
 
     public Section(String activityTitle, String activitySubtitle) {
@@ -31,4 +33,34 @@ public class Section {
         return activitySubtitle;
     }
 
+    /**
+     * @return the actions of this section, only used when several reports are combined into one card
+     */
+    public List<Action> getPotentialAction() {
+        return potentialAction == null ? Collections.emptyList() : potentialAction;
+    }
+
+    public void addPotentialAction(final Action action) {
+        if (potentialAction == null) {
+            potentialAction = new ArrayList<>();
+        }
+        potentialAction.add(action);
+    }
+
+    /**
+     * @return a copy of this section with the actions added, leaving this section unchanged for the other hooks it is
+     * sent to
+     */
+    public Section withPotentialActions(final List<Action> actions) {
+        final Section copy = new Section(activityTitle, activitySubtitle);
+        copy.facts.addAll(facts);
+        for (final Action action : getPotentialAction()) {
+            copy.addPotentialAction(action);
+        }
+        for (final Action action : actions) {
+            copy.addPotentialAction(action);
+        }
+        return copy;
+    }
+
 }
@@ -0,0 +1,42 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import org.sonar.api.config.Configuration;
+
+/**
+ * The settings of the relay, read from a properties file with the same keys as the SonarQube settings. Multiple
+ * values are separated by commas.
+ */
+final class RelayConfiguration implements Configuration {
+
+    private final Map<String, String> properties = new HashMap<>();
+
+    RelayConfiguration(final Properties properties) {
+        for (final String key : properties.stringPropertyNames()) {
+            this.properties.put(key, properties.getProperty(key).trim());
+        }
+    }
+
+    @Override
+    public Optional<String> get(final String key) {
+        return Optional.ofNullable(this.properties.get(key));
+    }
+
+    @Override
+    public boolean hasKey(final String key) {
+        return this.properties.containsKey(key);
+    }
+
+    @Override
+    public String[] getStringArray(final String key) {
+        final String value = this.properties.get(key);
+        if (value == null || value.isEmpty()) {
+            return new String[0];
+        }
+        return Arrays.stream(value.split(",")).map(String::trim).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,136 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Receives the SonarQube webhooks and hands their analysis over to the same {@link PostProjectAnalysisTask} the
+ * plugin runs in the Compute Engine, which only enqueues the notification. Answers 202 once enqueued.
+ */
+final class RelayHandler implements HttpHandler {
+
+    private static final Logger LOG = Loggers.get(RelayHandler.class);
+
+    static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int INITIAL_BUFFER_BYTES = 4096;
+    private static final PostProjectAnalysisTask.LogStatistics NO_STATISTICS =
+        new PostProjectAnalysisTask.LogStatistics() {
+            @Override
+            public PostProjectAnalysisTask.LogStatistics add(final String key, final Object value) {
+                return this;
+            }
+        };
+
+    private final PostProjectAnalysisTask task;
+    private final WebhookSignature signature;
+
+    /**
+     * @param task      notifies the analyses
+     * @param signature checks the webhook signatures, or null to accept unsigned webhooks
+     */
+    RelayHandler(final PostProjectAnalysisTask task, final WebhookSignature signature) {
+        this.task = task;
+        this.signature = signature;
+    }
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+        try {
+            exchange.sendResponseHeaders(this.process(exchange), -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private int process(final HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return 405;
+        }
+        final byte[] body = readBody(exchange.getRequestBody(), exchange.getRequestHeaders().getFirst("Content-Length"));
+        if (body == null) {
+            LOG.warn("Rejecting a webhook from {} larger than {} bytes", exchange.getRemoteAddress(), MAX_BODY_BYTES);
+            return 413;
+        }
+        if (this.signature != null
+            && !this.signature.isValid(body, body.length, exchange.getRequestHeaders().getFirst(WebhookSignature.HEADER))) {
+            LOG.warn("Rejecting a webhook from {} with a missing or wrong signature", exchange.getRemoteAddress());
+            return 401;
+        }
+
+        final RelayedAnalysis analysis;
+        try {
+            analysis = SonarWebhookParser.parse(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("Rejecting a malformed webhook from {}: {}", exchange.getRemoteAddress(), e.getMessage());
+            return 400;
+        }
+
+        try {
+            this.task.finished(new PostProjectAnalysisTask.Context() {
+                @Override
+                public PostProjectAnalysisTask.ProjectAnalysis getProjectAnalysis() {
+                    return analysis;
+                }
+
+                @Override
+                public PostProjectAnalysisTask.LogStatistics getLogStatistics() {
+                    return NO_STATISTICS;
+                }
+            });
+        } catch (final RuntimeException e) {
+            LOG.error("Failed to relay {}: {}", analysis, e.getMessage(), e);
+            return 500;
+        }
+        return 202;
+    }
+
+    /**
+     * @return the body, or null when it is larger than {@link #MAX_BODY_BYTES}
+     */
+    private static byte[] readBody(final InputStream in, final String contentLength) throws IOException {
+        int capacity = INITIAL_BUFFER_BYTES;
+        if (contentLength != null) {
+            try {
+                final long declared = Long.parseLong(contentLength.trim());
+                if (declared > MAX_BODY_BYTES) {
+                    return null;
+                }
+                capacity = (int) Math.max(1, declared);
+            } catch (final NumberFormatException e) {
+                // Read until the end of the stream
+            }
+        }
+        byte[] buffer = new byte[capacity];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                // Full, grow only when the body goes on
+                final int next = in.read();
+                if (next < 0) {
+                    break;
+                }
+                if (length >= MAX_BODY_BYTES) {
+                    return null;
+                }
+                buffer = Arrays.copyOf(buffer, Math.min(MAX_BODY_BYTES, buffer.length * 2));
+                buffer[length++] = (byte) next;
+            }
+            final int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+}
@@ -0,0 +1,70 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import java.text.DateFormat;
+import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.i18n.I18n;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+
+/**
+ * The relay has no SonarQube language packs, metric names are the English names of the core metrics.
+ */
+final class RelayI18n implements I18n {
+
+    private static final Map<String, String> METRIC_NAMES;
+
+    static {
+        final Map<String, String> names = new HashMap<>();
+        for (final Metric<?> metric : CoreMetrics.getMetrics()) {
+            names.put("metric." + metric.getKey() + ".name", metric.getName());
+        }
+        METRIC_NAMES = Collections.unmodifiableMap(names);
+    }
+
+    @Override
+    public String message(final Locale locale, final String key, final String defaultValue,
+        final Object... parameters) {
+        return METRIC_NAMES.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public String age(final Locale locale, final long durationInMillis) {
+        return TimeUnit.MILLISECONDS.toDays(durationInMillis) + " days";
+    }
+
+    @Override
+    public String age(final Locale locale, final Date fromDate, final Date toDate) {
+        return this.age(locale, toDate.getTime() - fromDate.getTime());
+    }
+
+    @Override
+    public String ageFromNow(final Locale locale, final Date date) {
+        return this.age(locale, date, new Date());
+    }
+
+    @Override
+    public String formatDateTime(final Locale locale, final Date date) {
+        return DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.SHORT, locale).format(date);
+    }
+
+    @Override
+    public String formatDate(final Locale locale, final Date date) {
+        return DateFormat.getDateInstance(DateFormat.DEFAULT, locale).format(date);
+    }
+
+    @Override
+    public String formatDouble(final Locale locale, final Double value) {
+        return NumberFormat.getNumberInstance(locale).format(value);
+    }
+
+    @Override
+    public String formatInteger(final Locale locale, final Integer value) {
+        return NumberFormat.getNumberInstance(locale).format(value);
+    }
+}
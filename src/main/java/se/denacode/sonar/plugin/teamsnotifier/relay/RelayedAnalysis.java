@@ -0,0 +1,276 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import org.sonar.api.ce.posttask.Analysis;
+import org.sonar.api.ce.posttask.Branch;
+import org.sonar.api.ce.posttask.CeTask;
+import org.sonar.api.ce.posttask.Organization;
+import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+import org.sonar.api.ce.posttask.Project;
+import org.sonar.api.ce.posttask.QualityGate;
+import org.sonar.api.ce.posttask.ScannerContext;
+
+/**
+ * An analysis received in a SonarQube webhook, seen through the same interfaces as the analyses the Compute Engine
+ * passes to {@link PostProjectAnalysisTask}. The webhook has no project UUID, analysis UUID nor quality gate id, the
+ * project key, task id and quality gate name stand in for them.
+ */
+final class RelayedAnalysis implements PostProjectAnalysisTask.ProjectAnalysis {
+
+    private final String taskId;
+    private final CeTask.Status taskStatus;
+    private final Date analysedAt;
+    private final String revision;
+    private final RelayedProject project;
+    private final RelayedBranch branch;
+    private final RelayedQualityGate qualityGate;
+    private final Map<String, String> properties;
+
+    RelayedAnalysis(final String taskId, final CeTask.Status taskStatus, final Date analysedAt, final String revision,
+        final RelayedProject project, final RelayedBranch branch, final RelayedQualityGate qualityGate,
+        final Map<String, String> properties) {
+        this.taskId = taskId;
+        this.taskStatus = taskStatus;
+        this.analysedAt = analysedAt;
+        this.revision = revision;
+        this.project = project;
+        this.branch = branch;
+        this.qualityGate = qualityGate;
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    @Override
+    public Optional<Organization> getOrganization() {
+        return Optional.empty();
+    }
+
+    @Override
+    public CeTask getCeTask() {
+        return new CeTask() {
+            @Override
+            public String getId() {
+                return RelayedAnalysis.this.taskId;
+            }
+
+            @Override
+            public Status getStatus() {
+                return RelayedAnalysis.this.taskStatus;
+            }
+        };
+    }
+
+    @Override
+    public Project getProject() {
+        return this.project;
+    }
+
+    @Override
+    public Optional<Branch> getBranch() {
+        return Optional.ofNullable(this.branch);
+    }
+
+    @Override
+    public QualityGate getQualityGate() {
+        return this.qualityGate;
+    }
+
+    @Override
+    public Date getDate() {
+        return this.analysedAt;
+    }
+
+    @Override
+    public Optional<Date> getAnalysisDate() {
+        return Optional.ofNullable(this.analysedAt);
+    }
+
+    @Override
+    public Optional<Analysis> getAnalysis() {
+        if (this.analysedAt == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Analysis() {
+            @Override
+            public String getAnalysisUuid() {
+                return RelayedAnalysis.this.taskId;
+            }
+
+            @Override
+            public Date getDate() {
+                return RelayedAnalysis.this.analysedAt;
+            }
+
+            @Override
+            public Optional<String> getRevision() {
+                return Optional.ofNullable(RelayedAnalysis.this.revision);
+            }
+        });
+    }
+
+    @Override
+    public ScannerContext getScannerContext() {
+        return () -> this.properties;
+    }
+
+    @Override
+    public String getScmRevisionId() {
+        return this.revision;
+    }
+
+    @Override
+    public String toString() {
+        return "RelayedAnalysis{" +
+            "taskId='" + this.taskId + '\'' +
+            ", project=" + this.project.getKey() +
+            ", branch=" + (this.branch == null ? null : this.branch.name) +
+            ", qualityGate=" + (this.qualityGate == null ? null : this.qualityGate.status) +
+            '}';
+    }
+
+    static final class RelayedProject implements Project {
+        private final String key;
+        private final String name;
+
+        RelayedProject(final String key, final String name) {
+            this.key = key;
+            this.name = name == null ? key : name;
+        }
+
+        @Override
+        public String getUuid() {
+            return this.key;
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    static final class RelayedBranch implements Branch {
+        private final String name;
+        private final Type type;
+        private final boolean main;
+
+        RelayedBranch(final String name, final Type type, final boolean main) {
+            this.name = name;
+            this.type = type;
+            this.main = main;
+        }
+
+        @Override
+        public boolean isMain() {
+            return this.main;
+        }
+
+        @Override
+        public Optional<String> getName() {
+            return Optional.ofNullable(this.name);
+        }
+
+        @Override
+        public Type getType() {
+            return this.type;
+        }
+    }
+
+    static final class RelayedQualityGate implements QualityGate {
+        private final String name;
+        private final Status status;
+        private final Collection<Condition> conditions;
+
+        RelayedQualityGate(final String name, final Status status, final Collection<Condition> conditions) {
+            this.name = name;
+            this.status = status;
+            this.conditions = Collections.unmodifiableCollection(conditions);
+        }
+
+        @Override
+        public String getId() {
+            return this.name;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public Status getStatus() {
+            return this.status;
+        }
+
+        @Override
+        public Collection<Condition> getConditions() {
+            return this.conditions;
+        }
+    }
+
+    static final class RelayedCondition implements QualityGate.Condition {
+        private final QualityGate.EvaluationStatus status;
+        private final String metricKey;
+        private final QualityGate.Operator operator;
+        private final String errorThreshold;
+        private final String value;
+
+        RelayedCondition(final QualityGate.EvaluationStatus status, final String metricKey,
+            final QualityGate.Operator operator, final String errorThreshold, final String value) {
+            this.status = status;
+            this.metricKey = metricKey;
+            this.operator = operator;
+            this.errorThreshold = errorThreshold;
+            this.value = value;
+        }
+
+        @Override
+        public QualityGate.EvaluationStatus getStatus() {
+            return this.status;
+        }
+
+        @Override
+        public String getMetricKey() {
+            return this.metricKey;
+        }
+
+        @Override
+        public QualityGate.Operator getOperator() {
+            return this.operator;
+        }
+
+        @Override
+        public String getErrorThreshold() {
+            return this.errorThreshold;
+        }
+
+        @Override
+        @Deprecated
+        public String getWarningThreshold() {
+            return null;
+        }
+
+        @Override
+        public boolean isOnLeakPeriod() {
+            return this.metricKey.startsWith("new_");
+        }
+
+        /**
+         * @throws IllegalStateException when the condition has no value, like the Compute Engine conditions
+         */
+        @Override
+        public String getValue() {
+            if (this.status == QualityGate.EvaluationStatus.NO_VALUE) {
+                throw new IllegalStateException("There is no value when status is NO_VALUE");
+            }
+            return this.value;
+        }
+    }
+}
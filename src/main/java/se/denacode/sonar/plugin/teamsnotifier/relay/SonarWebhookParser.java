@@ -0,0 +1,236 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.sonar.api.ce.posttask.Branch;
+import org.sonar.api.ce.posttask.CeTask;
+import org.sonar.api.ce.posttask.QualityGate;
+
+/**
+ * Reads the body of a SonarQube webhook, like {@code example.json}, token by token without building a JSON tree.
+ * Unknown fields are skipped.
+ */
+final class SonarWebhookParser {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
+    private static final ThreadLocal<SimpleDateFormat> DATE_PARSER =
+        ThreadLocal.withInitial(() -> new SimpleDateFormat(DATE_FORMAT, Locale.ENGLISH));
+
+    private SonarWebhookParser() {
+    }
+
+    /**
+     * @throws IOException              when the body is not valid JSON
+     * @throws IllegalArgumentException when the body is not a webhook of a project analysis
+     */
+    static RelayedAnalysis parse(final Reader body) throws IOException {
+        String taskId = null;
+        CeTask.Status taskStatus = CeTask.Status.SUCCESS;
+        Date analysedAt = null;
+        String revision = null;
+        RelayedAnalysis.RelayedProject project = null;
+        RelayedAnalysis.RelayedBranch branch = null;
+        RelayedAnalysis.RelayedQualityGate qualityGate = null;
+        Map<String, String> properties = new HashMap<>();
+
+        try (final JsonReader reader = new JsonReader(body)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "taskId":
+                        taskId = nextString(reader);
+                        break;
+                    case "status":
+                        taskStatus = CeTask.Status.valueOf(reader.nextString());
+                        break;
+                    case "analysedAt":
+                        analysedAt = parseDate(nextString(reader));
+                        break;
+                    case "revision":
+                        revision = nextString(reader);
+                        break;
+                    case "project":
+                        project = readProject(reader);
+                        break;
+                    case "branch":
+                        branch = readBranch(reader);
+                        break;
+                    case "qualityGate":
+                        qualityGate = readQualityGate(reader);
+                        break;
+                    case "properties":
+                        properties = readProperties(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+        if (project == null || project.getKey() == null) {
+            throw new IllegalArgumentException("The webhook has no project key");
+        }
+        return new RelayedAnalysis(taskId, taskStatus, analysedAt, revision, project, branch, qualityGate, properties);
+    }
+
+    private static RelayedAnalysis.RelayedProject readProject(final JsonReader reader) throws IOException {
+        String key = null;
+        String name = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "key":
+                    key = nextString(reader);
+                    break;
+                case "name":
+                    name = nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new RelayedAnalysis.RelayedProject(key, name);
+    }
+
+    private static RelayedAnalysis.RelayedBranch readBranch(final JsonReader reader) throws IOException {
+        String name = null;
+        Branch.Type type = Branch.Type.BRANCH;
+        boolean main = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = nextString(reader);
+                    break;
+                case "type":
+                    type = Branch.Type.valueOf(reader.nextString());
+                    break;
+                case "isMain":
+                    main = reader.nextBoolean();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new RelayedAnalysis.RelayedBranch(name, type, main);
+    }
+
+    private static RelayedAnalysis.RelayedQualityGate readQualityGate(final JsonReader reader) throws IOException {
+        String name = null;
+        QualityGate.Status status = null;
+        final List<QualityGate.Condition> conditions = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = nextString(reader);
+                    break;
+                case "status":
+                    status = QualityGate.Status.valueOf(reader.nextString());
+                    break;
+                case "conditions":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        conditions.add(readCondition(reader));
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (status == null) {
+            throw new IllegalArgumentException("The quality gate has no status");
+        }
+        return new RelayedAnalysis.RelayedQualityGate(name, status, conditions);
+    }
+
+    private static RelayedAnalysis.RelayedCondition readCondition(final JsonReader reader) throws IOException {
+        String metric = null;
+        QualityGate.Operator operator = null;
+        String value = null;
+        QualityGate.EvaluationStatus status = null;
+        String errorThreshold = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "metric":
+                    metric = nextString(reader);
+                    break;
+                case "operator":
+                    operator = QualityGate.Operator.valueOf(reader.nextString());
+                    break;
+                case "value":
+                    value = nextString(reader);
+                    break;
+                case "status":
+                    status = QualityGate.EvaluationStatus.valueOf(reader.nextString());
+                    break;
+                case "errorThreshold":
+                    errorThreshold = nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (metric == null || operator == null || status == null) {
+            throw new IllegalArgumentException("Incomplete quality gate condition " + metric);
+        }
+        return new RelayedAnalysis.RelayedCondition(status, metric, operator, errorThreshold, value);
+    }
+
+    private static Map<String, String> readProperties(final JsonReader reader) throws IOException {
+        final Map<String, String> properties = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            final String value = nextString(reader);
+            if (value != null) {
+                properties.put(name, value);
+            }
+        }
+        reader.endObject();
+        return properties;
+    }
+
+    /**
+     * @return the string, or number as a string, or null
+     */
+    private static String nextString(final JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static Date parseDate(final String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return DATE_PARSER.get().parse(date);
+        } catch (final ParseException e) {
+            throw new IllegalArgumentException("Invalid analysis date " + date, e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.ConditionHistory;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.MetricFormatRegistry;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.NotifierMetrics;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.QualityGateStatusTracker;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.TeamsPostProjectAnalysisTask;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.WebhookDispatchQueue;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.WebhookHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.sonar.api.Startable;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Standalone relay forwarding SonarQube webhooks to Teams, so notifications can run on their own nodes instead of in
+ * the Compute Engine.
+ * <p>
+ * The relay runs the same components as the plugin, configured with the same {@code ckss.*} keys read from a
+ * properties file, and a small HTTP server receiving the webhooks. Each webhook is parsed, notified with the project
+ * configuration rows and enqueued in the {@link WebhookDispatchQueue}, the HTTP call to Teams is made later by its
+ * workers. When the webhook has a secret in SonarQube, {@link TeamsNotifierProp#RELAY_SECRET} must be the same.
+ * </p>
+ * <pre>
+ * mvn compile exec:java -Dexec.classpathScope=compile \
+ *   -Dexec.mainClass=se.denacode.sonar.plugin.teamsnotifier.relay.WebhookRelay -Dexec.args=relay.properties
+ * </pre>
+ */
+public final class WebhookRelay {
+
+    private static final Logger LOG = Loggers.get(WebhookRelay.class);
+
+    static final int DEFAULT_PORT = 9099;
+    static final String PATH = "/";
+    private static final int BACKLOG = 1024;
+    private static final int QUEUED_REQUESTS_PER_THREAD = 64;
+    private static final long STOP_DELAY_SECONDS = 1;
+
+    private final Configuration settings;
+    private final List<Startable> components;
+    private final TeamsPostProjectAnalysisTask task;
+    private HttpServer server;
+    private ThreadPoolExecutor executor;
+
+    public WebhookRelay(final Configuration settings) {
+        this.settings = settings;
+        final NotifierMetrics metrics = new NotifierMetrics();
+        final WebhookHttpClient httpClient = new WebhookHttpClient(settings, metrics);
+        final WebhookDispatchQueue dispatchQueue = new WebhookDispatchQueue(settings, httpClient, metrics);
+        final MetricFormatRegistry metricFormats = new MetricFormatRegistry();
+        final ConditionHistory conditionHistory = new ConditionHistory(settings);
+        final QualityGateStatusTracker statusTracker = new QualityGateStatusTracker(settings);
+        // Started in this order, stopped in the reverse order
+        this.components = Arrays.asList(metrics, httpClient, metricFormats, conditionHistory, statusTracker,
+            dispatchQueue);
+        this.task = new TeamsPostProjectAnalysisTask(settings, new RelayI18n(), dispatchQueue, metrics, metricFormats,
+            conditionHistory, statusTracker);
+    }
+
+    /**
+     * @throws IllegalStateException when {@link TeamsNotifierProp#ENABLED} is not set, the relay has no setting
+     *                               defaults and every webhook would fail
+     */
+    public void start() throws IOException {
+        if (!this.settings.hasKey(TeamsNotifierProp.ENABLED.property())) {
+            throw new IllegalStateException(TeamsNotifierProp.ENABLED.property() + " must be set, e.g. to true");
+        }
+        for (final Startable component : this.components) {
+            component.start();
+        }
+        final int port = this.settings.getInt(TeamsNotifierProp.RELAY_PORT.property()).orElse(DEFAULT_PORT);
+        final int threads = this.settings.getInt(TeamsNotifierProp.RELAY_THREADS.property())
+            .orElse(2 * Runtime.getRuntime().availableProcessors());
+        final Optional<String> secret = this.settings.get(TeamsNotifierProp.RELAY_SECRET.property())
+            .filter(value -> !value.isEmpty());
+        if (!secret.isPresent()) {
+            LOG.warn("No {} set, accepting unsigned webhooks", TeamsNotifierProp.RELAY_SECRET.property());
+        }
+
+        // Once the queue is full the HTTP server thread handles requests itself, which stops it accepting new ones
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * QUEUED_REQUESTS_PER_THREAD), new RelayThreadFactory(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.server.createContext(PATH, new RelayHandler(this.task, secret.map(WebhookSignature::new).orElse(null)));
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        LOG.info("Relaying SonarQube webhooks received on port {} [threads={}]", this.getPort(), threads);
+    }
+
+    public void stop() {
+        if (this.server != null) {
+            this.server.stop((int) STOP_DELAY_SECONDS);
+            this.executor.shutdown();
+            try {
+                this.executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.server = null;
+        }
+        final List<Startable> reversed = new ArrayList<>(this.components);
+        Collections.reverse(reversed);
+        for (final Startable component : reversed) {
+            component.stop();
+        }
+    }
+
+    /**
+     * @return the port the relay listens on, useful when configured with port 0
+     */
+    int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: " + WebhookRelay.class.getName() + " <relay.properties>");
+            System.exit(2);
+        }
+        final Properties properties = new Properties();
+        try (final InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+            properties.load(in);
+        }
+        final WebhookRelay relay = new WebhookRelay(new RelayConfiguration(properties));
+        Runtime.getRuntime().addShutdownHook(new Thread(relay::stop, "teams-notifier-relay-shutdown"));
+        relay.start();
+    }
+
+    private static final class RelayThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "teams-notifier-relay-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Checks the {@value #HEADER} header SonarQube adds to webhooks that have a secret: the hexadecimal HMAC-SHA256 of
+ * the body keyed with the secret.
+ */
+final class WebhookSignature {
+
+    static final String HEADER = "X-Sonar-Webhook-HMAC-SHA256";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * @param secret the secret of the webhook in SonarQube
+     */
+    WebhookSignature(final String secret) {
+        final SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (final GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * @param signature the value of the {@value #HEADER} header, possibly null
+     * @return true when the signature is the one of the body, compared in constant time
+     */
+    boolean isValid(final byte[] body, final int length, final String signature) {
+        if (signature == null) {
+            return false;
+        }
+        final byte[] expected = this.sign(body, length);
+        final byte[] actual = decodeHex(signature.trim());
+        return actual != null && MessageDigest.isEqual(expected, actual);
+    }
+
+    byte[] sign(final byte[] body, final int length) {
+        final Mac instance = this.mac.get();
+        instance.update(body, 0, length);
+        return instance.doFinal();
+    }
+
+    private static byte[] decodeHex(final String hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(2 * i), 16);
+            final int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
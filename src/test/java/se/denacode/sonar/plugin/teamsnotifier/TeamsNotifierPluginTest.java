@@ -1,13 +1,48 @@
 package se.denacode.sonar.plugin.teamsnotifier;
 
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.BATCH_MAX_SIZE;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.BATCH_WINDOW;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.CIRCUIT_COOL_DOWN;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.CIRCUIT_FAILURE_RATE;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.CIRCUIT_MINIMUM_CALLS;
 import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.CONFIG;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.DEDUP_WINDOW;
 import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.ENABLED;
 import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.HOOK;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.HTTP_CALL_TIMEOUT;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.HTTP_KEEP_ALIVE;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.HTTP_MAX_IDLE_CONNECTIONS;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.HTTP_MAX_REQUESTS_PER_HOST;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.HTTP_READ_TIMEOUT;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.HTTP_WARM_UP;
 import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.INCLUDE_BRANCH;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.LOG_SAMPLE_RATE;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.OUTBOX_ENABLED;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.OUTBOX_FSYNC_INTERVAL;
 import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.PROXY_IP;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.PROXY_NON_PROXY_HOSTS;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.PROXY_PASSWORD;
 import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.PROXY_PORT;
 import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.PROXY_PROTOCOL;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.PROXY_USER;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.QUEUE_CAPACITY;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.QUEUE_OVERFLOW_POLICY;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.QUEUE_WORKERS;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.RATE_BURST;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.RATE_LIMIT;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.RETRY_BASE_DELAY;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.RETRY_MAX_ATTEMPTS;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.RETRY_MAX_DELAY;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.TREND_ENABLED;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.TREND_RETENTION_DAYS;
+import static se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp.TREND_SPARKLINES;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.ConditionHistory;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.MetricFormatRegistry;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.NotifierMetrics;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.QualityGateStatusTracker;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.TeamsPostProjectAnalysisTask;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.WebhookDispatchQueue;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.WebhookHttpClient;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -33,7 +68,7 @@ public class TeamsNotifierPluginTest {
         verify(mockContext, times(1)).addExtensions(arg.capture());
 
         final List extensions = arg.getValue();
-        Assert.assertEquals(8, extensions.size());
+        Assert.assertEquals(43, extensions.size());
         Assert.assertEquals(HOOK.property(), ((PropertyDefinition) extensions.get(0)).key());
         Assert.assertEquals(PROXY_IP.property(), ((PropertyDefinition) extensions.get(1)).key());
         Assert.assertEquals(PROXY_PORT.property(), ((PropertyDefinition) extensions.get(2)).key());
@@ -41,7 +76,42 @@ public class TeamsNotifierPluginTest {
         Assert.assertEquals(ENABLED.property(), ((PropertyDefinition) extensions.get(4)).key());
         Assert.assertEquals(INCLUDE_BRANCH.property(), ((PropertyDefinition) extensions.get(5)).key());
         Assert.assertEquals(CONFIG.property(), ((PropertyDefinition) extensions.get(6)).key());
-        Assert.assertEquals(TeamsPostProjectAnalysisTask.class, extensions.get(7));
+        Assert.assertEquals(QUEUE_CAPACITY.property(), ((PropertyDefinition) extensions.get(7)).key());
+        Assert.assertEquals(QUEUE_OVERFLOW_POLICY.property(), ((PropertyDefinition) extensions.get(8)).key());
+        Assert.assertEquals(QUEUE_WORKERS.property(), ((PropertyDefinition) extensions.get(9)).key());
+        Assert.assertEquals(BATCH_WINDOW.property(), ((PropertyDefinition) extensions.get(10)).key());
+        Assert.assertEquals(BATCH_MAX_SIZE.property(), ((PropertyDefinition) extensions.get(11)).key());
+        Assert.assertEquals(RETRY_MAX_ATTEMPTS.property(), ((PropertyDefinition) extensions.get(12)).key());
+        Assert.assertEquals(RETRY_BASE_DELAY.property(), ((PropertyDefinition) extensions.get(13)).key());
+        Assert.assertEquals(RETRY_MAX_DELAY.property(), ((PropertyDefinition) extensions.get(14)).key());
+        Assert.assertEquals(RATE_LIMIT.property(), ((PropertyDefinition) extensions.get(15)).key());
+        Assert.assertEquals(RATE_BURST.property(), ((PropertyDefinition) extensions.get(16)).key());
+        Assert.assertEquals(OUTBOX_ENABLED.property(), ((PropertyDefinition) extensions.get(17)).key());
+        Assert.assertEquals(OUTBOX_FSYNC_INTERVAL.property(), ((PropertyDefinition) extensions.get(18)).key());
+        Assert.assertEquals(HTTP_MAX_IDLE_CONNECTIONS.property(), ((PropertyDefinition) extensions.get(19)).key());
+        Assert.assertEquals(HTTP_KEEP_ALIVE.property(), ((PropertyDefinition) extensions.get(20)).key());
+        Assert.assertEquals(HTTP_MAX_REQUESTS_PER_HOST.property(), ((PropertyDefinition) extensions.get(21)).key());
+        Assert.assertEquals(HTTP_CALL_TIMEOUT.property(), ((PropertyDefinition) extensions.get(22)).key());
+        Assert.assertEquals(HTTP_READ_TIMEOUT.property(), ((PropertyDefinition) extensions.get(23)).key());
+        Assert.assertEquals(HTTP_WARM_UP.property(), ((PropertyDefinition) extensions.get(24)).key());
+        Assert.assertEquals(PROXY_NON_PROXY_HOSTS.property(), ((PropertyDefinition) extensions.get(25)).key());
+        Assert.assertEquals(PROXY_USER.property(), ((PropertyDefinition) extensions.get(26)).key());
+        Assert.assertEquals(PROXY_PASSWORD.property(), ((PropertyDefinition) extensions.get(27)).key());
+        Assert.assertEquals(TREND_ENABLED.property(), ((PropertyDefinition) extensions.get(28)).key());
+        Assert.assertEquals(TREND_SPARKLINES.property(), ((PropertyDefinition) extensions.get(29)).key());
+        Assert.assertEquals(DEDUP_WINDOW.property(), ((PropertyDefinition) extensions.get(30)).key());
+        Assert.assertEquals(CIRCUIT_FAILURE_RATE.property(), ((PropertyDefinition) extensions.get(31)).key());
+        Assert.assertEquals(CIRCUIT_MINIMUM_CALLS.property(), ((PropertyDefinition) extensions.get(32)).key());
+        Assert.assertEquals(CIRCUIT_COOL_DOWN.property(), ((PropertyDefinition) extensions.get(33)).key());
+        Assert.assertEquals(LOG_SAMPLE_RATE.property(), ((PropertyDefinition) extensions.get(34)).key());
+        Assert.assertEquals(TREND_RETENTION_DAYS.property(), ((PropertyDefinition) extensions.get(35)).key());
+        Assert.assertEquals(TeamsPostProjectAnalysisTask.class, extensions.get(36));
+        Assert.assertEquals(WebhookDispatchQueue.class, extensions.get(37));
+        Assert.assertEquals(WebhookHttpClient.class, extensions.get(38));
+        Assert.assertEquals(NotifierMetrics.class, extensions.get(39));
+        Assert.assertEquals(MetricFormatRegistry.class, extensions.get(40));
+        Assert.assertEquals(ConditionHistory.class, extensions.get(41));
+        Assert.assertEquals(QualityGateStatusTracker.class, extensions.get(42));
 
     }
 
@@ -59,7 +129,7 @@ public class TeamsNotifierPluginTest {
         final Set<Integer> indexes = extensions.stream().filter(PropertyDefinition.class::isInstance)
             .map(PropertyDefinition.class::cast).map(PropertyDefinition::index).
                 collect(Collectors.toSet());
-        Assert.assertEquals(7, indexes.size());
+        Assert.assertEquals(36, indexes.size());
 
     }
 
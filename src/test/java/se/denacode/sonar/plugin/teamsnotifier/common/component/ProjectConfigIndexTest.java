@@ -0,0 +1,117 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.component;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class ProjectConfigIndexTest {
+
+    @Test
+    public void find_exactKey() {
+        final ProjectIndexFixture fixture = new ProjectIndexFixture("com.acme:app", "com.acme:other");
+
+        assertThat(fixture.find("com.acme:app")).contains("com.acme:app");
+        assertThat(fixture.find("com.acme:ap")).isEmpty();
+        assertThat(fixture.find("comXacme:app")).isEmpty();
+    }
+
+    @Test
+    public void find_wildcardPrefix_longestWins() {
+        final ProjectIndexFixture fixture = new ProjectIndexFixture("com.*", "com.acme:*", "org.acme.*");
+
+        assertThat(fixture.find("com.acme:app")).contains("com.acme:*");
+        assertThat(fixture.find("com.other:app")).contains("com.*");
+        assertThat(fixture.find("org.acme:app")).contains("org.acme.*");
+        assertThat(fixture.find("net.acme:app")).isEmpty();
+    }
+
+    @Test
+    public void find_regex_firstInConfigurationOrderWins() {
+        final ProjectIndexFixture fixture = new ProjectIndexFixture(
+            "com\\.acme:(app|lib)-[0-9]+", "com\\.acme:.*", ".*-legacy", "(?i)NET:.*");
+
+        assertThat(fixture.find("com.acme:app-12")).contains("com\\.acme:(app|lib)-[0-9]+");
+        assertThat(fixture.find("com.acme:tool")).contains("com\\.acme:.*");
+        assertThat(fixture.find("com.acme:tool-legacy")).contains("com\\.acme:.*");
+        assertThat(fixture.find("org.acme:tool-legacy")).contains(".*-legacy");
+        assertThat(fixture.find("net:tool")).contains("(?i)NET:.*");
+        assertThat(fixture.find("org.acme:tool")).isEmpty();
+    }
+
+    @Test
+    public void find_regexWithGroupReferences_matchesAsOnItsOwn() {
+        final ProjectIndexFixture fixture = new ProjectIndexFixture(
+            "(a+)x", "(b)\\1-.*", "(?<team>c)-\\k<team>", "(?<team>d)-.*", "(?x) e - .* # comment");
+
+        assertThat(fixture.find("aax")).contains("(a+)x");
+        assertThat(fixture.find("bb-app")).contains("(b)\\1-.*");
+        assertThat(fixture.find("b-app")).isEmpty();
+        assertThat(fixture.find("c-c")).contains("(?<team>c)-\\k<team>");
+        assertThat(fixture.find("d-app")).contains("(?<team>d)-.*");
+        assertThat(fixture.find("e-app")).contains("(?x) e - .* # comment");
+    }
+
+    @Test
+    public void hasGroupReferences() {
+        assertThat(ProjectConfigIndex.hasGroupReferences("(a)\\1")).isTrue();
+        assertThat(ProjectConfigIndex.hasGroupReferences("(?<n>a)\\k<n>")).isTrue();
+        assertThat(ProjectConfigIndex.hasGroupReferences("(?<n>a)")).isTrue();
+        assertThat(ProjectConfigIndex.hasGroupReferences("(?<=a)b(?<!c)")).isFalse();
+        assertThat(ProjectConfigIndex.hasGroupReferences("a\\\\1\\.b")).isFalse();
+        assertThat(ProjectConfigIndex.hasGroupReferences("com\\.acme:(app|lib)")).isFalse();
+    }
+
+    @Test
+    public void find_exactBeatsPrefixBeatsRegex() {
+        final ProjectIndexFixture fixture = new ProjectIndexFixture("com\\.acme.*", "com.acme*", "com.acme:app");
+
+        assertThat(fixture.find("com.acme:app")).contains("com.acme:app");
+        assertThat(fixture.find("com.acme:lib")).contains("com.acme*");
+    }
+
+    @Test
+    public void find_rowsSharingKey_selectedByTargetBranch() {
+        final ProjectIndexFixture fixture = new ProjectIndexFixture("com.acme:app;develop", "com.acme:app", "com.acme:app;main");
+
+        assertThat(fixture.find("com.acme:app", "main")).contains("com.acme:app;main");
+        assertThat(fixture.find("com.acme:app", "develop")).contains("com.acme:app;develop");
+        assertThat(fixture.find("com.acme:app", "feature")).contains("com.acme:app");
+    }
+
+    @Test
+    public void find_invalidRegex_matchedLiterally() {
+        final ProjectIndexFixture fixture = new ProjectIndexFixture("com.acme:app(");
+
+        assertThat(fixture.find("com.acme:app(")).contains("com.acme:app(");
+    }
+
+    @Test
+    public void literalPrefix() {
+        assertThat(ProjectConfigIndex.literalPrefix("com\\.acme:.*")).isEqualTo("com.acme:");
+        assertThat(ProjectConfigIndex.literalPrefix("com\\.acme:(a|b)")).isEqualTo("com.acme:");
+        assertThat(ProjectConfigIndex.literalPrefix("com\\.acmes?:.*")).isEqualTo("com.acme");
+        assertThat(ProjectConfigIndex.literalPrefix("com\\d+")).isEqualTo("com");
+        assertThat(ProjectConfigIndex.literalPrefix("com|org")).isEmpty();
+        assertThat(ProjectConfigIndex.literalPrefix("^com")).isEmpty();
+    }
+
+    private static final class ProjectIndexFixture {
+        private final ProjectConfigIndex index;
+
+        private ProjectIndexFixture(final String... projectKeys) {
+            this.index = ProjectConfigIndex.of(Arrays.stream(projectKeys)
+                .map(key -> new ProjectConfigBuilder().setProjectKeyOrRegExp(key).build())
+                .collect(Collectors.toList()));
+        }
+
+        private Optional<String> find(final String projectKey) {
+            return this.find(projectKey, "");
+        }
+
+        private Optional<String> find(final String projectKey, final String branch) {
+            return this.index.find(projectKey, branch).map(ProjectConfig::getProjectKey);
+        }
+    }
+}
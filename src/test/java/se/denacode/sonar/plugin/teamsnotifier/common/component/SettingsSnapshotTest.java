@@ -0,0 +1,118 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.component;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import se.denacode.sonar.plugin.teamsnotifier.common.template.MessageTemplate;
+import java.util.Locale;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+
+public class SettingsSnapshotTest {
+
+    private MapSettings settings;
+    private Configuration configuration;
+
+    @Before
+    public void before() {
+        this.settings = new MapSettings();
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property(), "1");
+        this.setRowProperty("1", TeamsNotifierProp.PROJECT_REGEXP, "com.acme:app");
+        this.setRowProperty("1", TeamsNotifierProp.PROJECT_HOOK, "http://hook/1");
+        this.configuration = new ConfigurationBridge(this.settings);
+    }
+
+    @Test
+    public void isUpToDate_unchangedSettings() {
+        final SettingsSnapshot snapshot = SettingsSnapshot.load(this.configuration);
+
+        assertThat(snapshot.isUpToDate(this.configuration)).isTrue();
+        assertThat(snapshot.getProjectConfigIndex().find("com.acme:app", "")).isPresent();
+    }
+
+    @Test
+    public void getSlowestRow_lowestRateOfTheRowsSharingTheHook() {
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property(), "1,2,3,4,5");
+        this.setRowProperty("1", TeamsNotifierProp.PROJECT_RATE_LIMIT, "2");
+        this.setRowProperty("2", TeamsNotifierProp.PROJECT_REGEXP, "com.acme:lib");
+        this.setRowProperty("2", TeamsNotifierProp.PROJECT_HOOK, "http://hook/1");
+        this.setRowProperty("2", TeamsNotifierProp.PROJECT_RATE_LIMIT, "0.5");
+        this.setRowProperty("3", TeamsNotifierProp.PROJECT_REGEXP, "com.acme:tool");
+        this.setRowProperty("3", TeamsNotifierProp.PROJECT_HOOK, "http://hook/1, http://hook/2");
+        this.setRowProperty("3", TeamsNotifierProp.PROJECT_RATE_LIMIT, "1");
+        this.setRowProperty("4", TeamsNotifierProp.PROJECT_REGEXP, "com.acme:web");
+        this.setRowProperty("4", TeamsNotifierProp.PROJECT_RATE_LIMIT, "3");
+        this.setRowProperty("5", TeamsNotifierProp.PROJECT_REGEXP, "com.acme:doc");
+        this.setRowProperty("5", TeamsNotifierProp.PROJECT_HOOK, "http://hook/3");
+
+        final SettingsSnapshot snapshot = SettingsSnapshot.load(this.configuration);
+
+        assertThat(snapshot.getSlowestRow("http://hook/1").getProjectKey()).isEqualTo("com.acme:lib");
+        assertThat(snapshot.getSlowestRow("http://hook/2").getProjectKey()).isEqualTo("com.acme:tool");
+        assertThat(snapshot.getSlowestRow(SettingsSnapshot.GLOBAL_HOOK).getProjectKey()).isEqualTo("com.acme:web");
+        assertThat(snapshot.getSlowestRow("http://hook/3")).isNull();
+    }
+
+    @Test
+    public void isUpToDate_rowFieldChanged() {
+        final SettingsSnapshot snapshot = SettingsSnapshot.load(this.configuration);
+        this.setRowProperty("1", TeamsNotifierProp.QG_FAIL_ONLY, "false");
+
+        assertThat(snapshot.isUpToDate(this.configuration)).isFalse();
+    }
+
+    @Test
+    public void isUpToDate_rowAdded() {
+        final SettingsSnapshot snapshot = SettingsSnapshot.load(this.configuration);
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property(), "1,2");
+        this.setRowProperty("2", TeamsNotifierProp.PROJECT_REGEXP, "com.acme:lib");
+
+        assertThat(snapshot.isUpToDate(this.configuration)).isFalse();
+        assertThat(SettingsSnapshot.load(this.configuration).getProjectConfigs()).hasSize(2);
+    }
+
+    @Test
+    public void load_parsesRowLocale() {
+        this.setRowProperty("1", TeamsNotifierProp.PROJECT_LOCALE, " pt_BR ");
+
+        final SettingsSnapshot snapshot = SettingsSnapshot.load(this.configuration);
+
+        assertThat(snapshot.getProjectConfigs().iterator().next().getLocale()).isEqualTo(new Locale("pt", "BR"));
+    }
+
+    @Test
+    public void load_splitsRowHooks() {
+        this.setRowProperty("1", TeamsNotifierProp.PROJECT_HOOK, " http://hook/team, http://hook/release\nhttp://hook/team ");
+
+        assertThat(SettingsSnapshot.load(this.configuration).getProjectConfigs().iterator().next().getProjectHooks())
+            .containsExactly("http://hook/team", "http://hook/release");
+    }
+
+    @Test
+    public void load_compilesRowTemplates_ignoringInvalidOnes() {
+        this.setRowProperty("1", TeamsNotifierProp.TITLE_TEMPLATE, "{{project}} is {{status}}");
+        this.setRowProperty("1", TeamsNotifierProp.TEXT_TEMPLATE, "{{#branch}}unclosed");
+
+        final ProjectConfig projectConfig = SettingsSnapshot.load(this.configuration).getProjectConfigs().iterator()
+            .next();
+        assertThat(projectConfig.getTitleTemplate()).isSameAs(MessageTemplate.compile("{{project}} is {{status}}"));
+        assertThat(projectConfig.getTextTemplate()).isNull();
+    }
+
+    @Test
+    public void load_defaultsToEnglish() {
+        assertThat(SettingsSnapshot.load(this.configuration).getProjectConfigs().iterator().next().getLocale())
+            .isEqualTo(Locale.ENGLISH);
+    }
+
+    @Test
+    public void empty_upToDateWithoutProjectConfig() {
+        assertThat(SettingsSnapshot.EMPTY.isUpToDate(new ConfigurationBridge(new MapSettings()))).isTrue();
+    }
+
+    private void setRowProperty(final String row, final TeamsNotifierProp property, final String value) {
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property() + "." + row + "." + property.property(), value);
+    }
+}
@@ -0,0 +1,54 @@
+package se.denacode.sonar.plugin.teamsnotifier.common.template;
+
+import java.util.EnumMap;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.Test;
+
+public class MessageTemplateTest {
+
+    private final Map<TemplateVariable, String> values = new EnumMap<>(TemplateVariable.class);
+
+    @Test
+    public void render_replacesVariables() {
+        this.values.put(TemplateVariable.PROJECT, "Deus");
+        this.values.put(TemplateVariable.STATUS, "ERROR");
+
+        assertThat(this.render("Project {{project}} is {{ status }}, {{notify}}.")).isEqualTo("Project Deus is ERROR, .");
+    }
+
+    @Test
+    public void render_showsSectionsOfNonEmptyValues() {
+        final String template = "Project {{project}}{{#branch}} on {{branch}}{{/branch}}{{^branch}} on main{{/branch}}";
+        this.values.put(TemplateVariable.PROJECT, "Deus");
+
+        assertThat(this.render(template)).isEqualTo("Project Deus on main");
+        this.values.put(TemplateVariable.BRANCH, "feature");
+        assertThat(this.render(template)).isEqualTo("Project Deus on feature");
+    }
+
+    @Test
+    public void compile_sameText_isSharedInstance() {
+        assertThat(MessageTemplate.compile(new String("{{project}} was analyzed")))
+            .isSameAs(MessageTemplate.compile("{{project}} was analyzed"));
+    }
+
+    @Test
+    public void compile_invalidTemplate_isRejected() {
+        assertThatThrownBy(() -> MessageTemplate.compile("{{projet}}"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("projet");
+        assertThatThrownBy(() -> MessageTemplate.compile("{{#branch}} on {{branch}}"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unclosed section");
+        assertThatThrownBy(() -> MessageTemplate.compile("{{#branch}}{{/project}}"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MessageTemplate.compile("{{project"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private String render(final String template) {
+        final StringBuilder out = new StringBuilder();
+        MessageTemplate.compile(template).render(this.values::get, out);
+        return out.toString();
+    }
+}
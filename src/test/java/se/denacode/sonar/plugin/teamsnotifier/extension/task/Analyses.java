@@ -16,7 +16,7 @@ import org.sonar.api.measures.CoreMetrics;
 public class Analyses {
 
     public static final String PROJECT_KEY = "my-sonar-project-key";
-    private static final String PROJECT_NAME = "Sonar Project Name";
+    public static final String PROJECT_NAME = "Sonar Project Name";
     private static final Project PROJECT = PostProjectAnalysisTaskTester.newProjectBuilder()
         .setUuid("uuid")
         .setKey(PROJECT_KEY)
@@ -81,6 +81,7 @@ public class Analyses {
         PostProjectAnalysisTaskTester.of(analysisTask)
             .withCeTask(CE_TASK)
             .withProject(PROJECT)
+            .withScannerContext(newScannerContextBuilder().build())
             .at(new Date())
             .withQualityGate(
                 newQualityGateBuilder()
@@ -117,9 +118,32 @@ public class Analyses {
     }
 
     public static void qualityGateError2Of3ConditionsFailed(final PostProjectAnalysisTask analysisTask) {
+        qualityGateError2Of3ConditionsFailed(analysisTask, PROJECT, CE_TASK);
+    }
+
+    /**
+     * Same analysis of another project, named after its key, e.g. to tell the notifications of a load test apart.
+     */
+    public static void qualityGateError2Of3ConditionsFailed(final PostProjectAnalysisTask analysisTask,
+        final String projectKey, final String taskId) {
+        qualityGateError2Of3ConditionsFailed(analysisTask,
+            PostProjectAnalysisTaskTester.newProjectBuilder()
+                .setUuid(projectKey)
+                .setKey(projectKey)
+                .setName(projectKey)
+                .build(),
+            newCeTaskBuilder()
+                .setId(taskId)
+                .setStatus(CeTask.Status.SUCCESS)
+                .build());
+    }
+
+    private static void qualityGateError2Of3ConditionsFailed(final PostProjectAnalysisTask analysisTask,
+        final Project project, final CeTask ceTask) {
         PostProjectAnalysisTaskTester.of(analysisTask)
-            .withCeTask(CE_TASK)
-            .withProject(PROJECT)
+            .withCeTask(ceTask)
+            .withProject(project)
+            .withScannerContext(newScannerContextBuilder().build())
             .at(new Date())
             .withQualityGate(
                 newQualityGateBuilder()
@@ -146,6 +170,31 @@ public class Analyses {
     }
 
 
+    /**
+     * Analysis with a single condition on the issues, failing or not, e.g. to follow a project over several analyses.
+     */
+    public static void violations(final PostProjectAnalysisTask analysisTask, final QualityGate.Status status,
+        final String violations) {
+        PostProjectAnalysisTaskTester.of(analysisTask)
+            .withCeTask(CE_TASK)
+            .withProject(PROJECT)
+            .withScannerContext(newScannerContextBuilder().build())
+            .at(new Date())
+            .withQualityGate(
+                newQualityGateBuilder()
+                    .setId("id")
+                    .setName("name")
+                    .setStatus(status)
+                    .add(newConditionBuilder()
+                        .setMetricKey(CoreMetrics.VIOLATIONS_KEY)
+                        .setErrorThreshold("5")
+                        .setOperator(QualityGate.Operator.GREATER_THAN)
+                        .build(status == QualityGate.Status.OK
+                            ? QualityGate.EvaluationStatus.OK : QualityGate.EvaluationStatus.ERROR, violations))
+                    .build())
+            .execute();
+    }
+
     public static void noQualityGate(final PostProjectAnalysisTask analysisTask) {
         PostProjectAnalysisTaskTester.of(analysisTask)
             .withCeTask(CE_TASK)
@@ -0,0 +1,130 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.ce.posttask.QualityGate;
+import static org.sonar.api.ce.posttask.PostProjectAnalysisTaskTester.newConditionBuilder;
+import static org.sonar.api.ce.posttask.PostProjectAnalysisTaskTester.newQualityGateBuilder;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.measures.CoreMetrics;
+
+public class ConditionHistoryTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MapSettings settings;
+    private ConditionHistory history;
+
+    @Before
+    public void before() throws IOException {
+        this.settings = new MapSettings();
+        this.settings.setProperty(WebhookDispatchQueue.DATA_PATH_PROPERTY, this.temporaryFolder.getRoot().getPath());
+        this.history = new ConditionHistory(new ConfigurationBridge(this.settings));
+        this.history.start();
+    }
+
+    @After
+    public void after() {
+        this.history.stop();
+    }
+
+    @Test
+    public void record_returnsPreviousValuesOfTheSameBranch() {
+        assertThat(this.history.record("app", "main", qualityGate("80.5", "3")).previous(CoreMetrics.NEW_COVERAGE_KEY))
+            .isEmpty();
+        this.history.record("app", "feature", qualityGate("10", "0"));
+
+        final ConditionHistory.Trend trend = this.history.record("app", "main", qualityGate("81.0", "2"));
+
+        assertThat(trend.previous(CoreMetrics.NEW_COVERAGE_KEY)).containsExactly(80.5);
+        assertThat(trend.previous(CoreMetrics.NEW_BUGS_KEY)).containsExactly(3.0);
+    }
+
+    @Test
+    public void record_keepsTheLastValuesOnly() {
+        for (int i = 0; i < ConditionHistory.DEPTH + 3; i++) {
+            this.history.record("app", "", qualityGate(String.valueOf(i), "0"));
+        }
+
+        final double[] previous = this.history.record("app", "", qualityGate("99", "0"))
+            .previous(CoreMetrics.NEW_COVERAGE_KEY);
+
+        assertThat(previous).hasSize(ConditionHistory.DEPTH);
+        assertThat(previous[0]).isEqualTo(3.0);
+        assertThat(previous[ConditionHistory.DEPTH - 1]).isEqualTo(10.0);
+    }
+
+    @Test
+    public void record_filesHaveAFixedSize() throws IOException {
+        this.history.record("app", "", qualityGate("1", "0"));
+        this.history.record("lib", "", qualityGate("1", "0"));
+
+        try (final Stream<Path> files = Files.walk(this.temporaryFolder.getRoot().toPath())) {
+            assertThat(files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()))
+                .containsOnly((long) ConditionHistory.FILE_SIZE)
+                .hasSize(2);
+        }
+    }
+
+    @Test
+    public void purge_deletesHistoryNotUpdatedSince() throws IOException {
+        this.history.record("app", "merged", qualityGate("10", "1"));
+        this.history.record("app", "main", qualityGate("20", "2"));
+        final FileTime longAgo = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(100));
+        try (final Stream<Path> files = Files.walk(this.temporaryFolder.getRoot().toPath())) {
+            for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Files.setLastModifiedTime(file, longAgo);
+            }
+        }
+        this.history.record("app", "main", qualityGate("21", "2"));
+
+        assertThat(this.history.purge(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30))).isEqualTo(1);
+
+        assertThat(this.history.record("app", "merged", qualityGate("11", "1")).previous(CoreMetrics.NEW_BUGS_KEY))
+            .isEmpty();
+        assertThat(this.history.record("app", "main", qualityGate("22", "2")).previous(CoreMetrics.NEW_BUGS_KEY))
+            .containsExactly(2.0, 2.0);
+    }
+
+    @Test
+    public void record_disabled() {
+        this.settings.setProperty(TeamsNotifierProp.TREND_ENABLED.property(), "false");
+        final ConditionHistory disabled = new ConditionHistory(new ConfigurationBridge(this.settings));
+        disabled.start();
+        disabled.record("app", "", qualityGate("1", "0"));
+
+        assertThat(disabled.record("app", "", qualityGate("2", "0")).previous(CoreMetrics.NEW_COVERAGE_KEY)).isEmpty();
+        assertThat(this.temporaryFolder.getRoot().list()).isEmpty();
+    }
+
+    static QualityGate qualityGate(final String coverage, final String bugs) {
+        return newQualityGateBuilder()
+            .setId("id")
+            .setName("name")
+            .setStatus(QualityGate.Status.OK)
+            .add(newConditionBuilder()
+                .setMetricKey(CoreMetrics.NEW_COVERAGE_KEY)
+                .setOperator(QualityGate.Operator.LESS_THAN)
+                .setErrorThreshold("80")
+                .build(QualityGate.EvaluationStatus.OK, coverage))
+            .add(newConditionBuilder()
+                .setMetricKey(CoreMetrics.NEW_BUGS_KEY)
+                .setOperator(QualityGate.Operator.GREATER_THAN)
+                .setErrorThreshold("5")
+                .build(QualityGate.EvaluationStatus.OK, bugs))
+            .build();
+    }
+}
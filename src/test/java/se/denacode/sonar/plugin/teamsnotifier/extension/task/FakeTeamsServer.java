@@ -0,0 +1,157 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * A local Teams endpoint for load tests. Hook {@code /hook/<n>} answers with the latency and error rates of the n-th
+ * {@link HookProfile}, and the body of every accepted notification is passed on with its arrival time.
+ */
+final class FakeTeamsServer implements Closeable {
+
+    private static final byte[] ACCEPTED = "1".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] THROTTLED = "Application is over its MessageCard sending rate"
+        .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FAILED = "Internal error".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * How one hook answers.
+     */
+    static final class HookProfile {
+        final long latencyMillis;
+        final long jitterMillis;
+        final double throttleRate;
+        final int retryAfterSeconds;
+        final double errorRate;
+
+        /**
+         * @param latencyMillis     time before answering
+         * @param jitterMillis      random extra time, up to this
+         * @param throttleRate      share of the calls answered with 429
+         * @param retryAfterSeconds Retry-After of the 429 answers
+         * @param errorRate         share of the calls answered with 503
+         */
+        HookProfile(final long latencyMillis, final long jitterMillis, final double throttleRate,
+            final int retryAfterSeconds, final double errorRate) {
+            this.latencyMillis = latencyMillis;
+            this.jitterMillis = jitterMillis;
+            this.throttleRate = throttleRate;
+            this.retryAfterSeconds = retryAfterSeconds;
+            this.errorRate = errorRate;
+        }
+
+        @Override
+        public String toString() {
+            return "latency=" + this.latencyMillis + "ms+" + this.jitterMillis + "ms, 429=" + this.throttleRate
+                + ", 503=" + this.errorRate;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<HookProfile> profiles;
+    private final BiConsumer<String, Long> accepted;
+    final AtomicLong calls = new AtomicLong();
+    final AtomicLong throttled = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * @param profiles the profile of each hook
+     * @param accepted receives the body and {@link System#nanoTime()} arrival of the accepted notifications
+     */
+    FakeTeamsServer(final List<HookProfile> profiles, final BiConsumer<String, Long> accepted) throws IOException {
+        this.profiles = profiles;
+        this.accepted = accepted;
+        // Slow hooks sleep on their own thread, like a slow remote server would not hold up the others
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "fake-teams-" + this.threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.server.createContext("/hook/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    String hookUrl(final int hook) {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/hook/" + hook;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final String body = read(exchange.getRequestBody());
+            final long arrival = System.nanoTime();
+            this.calls.incrementAndGet();
+            final String path = exchange.getRequestURI().getPath();
+            final HookProfile profile = this.profiles.get(Integer.parseInt(path.substring(path.lastIndexOf('/') + 1)));
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            sleep(profile.latencyMillis + (profile.jitterMillis > 0 ? random.nextLong(profile.jitterMillis) : 0));
+
+            final double draw = random.nextDouble();
+            if (draw < profile.throttleRate) {
+                this.throttled.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(profile.retryAfterSeconds));
+                respond(exchange, 429, THROTTLED);
+            } else if (draw < profile.throttleRate + profile.errorRate) {
+                this.failed.incrementAndGet();
+                respond(exchange, 503, FAILED);
+            } else {
+                this.accepted.accept(body, arrival);
+                respond(exchange, 200, ACCEPTED);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
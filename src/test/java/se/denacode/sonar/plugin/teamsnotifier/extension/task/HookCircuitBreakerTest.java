@@ -0,0 +1,87 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class HookCircuitBreakerTest {
+
+    private static final String HOOK = "http://hook";
+    private static final IOException CONNECT_FAILURE = new IOException("Connection refused");
+
+    private final AtomicLong now = new AtomicLong();
+    private final HookCircuitBreaker breaker = new HookCircuitBreaker(50, 4, 10_000, this.now::get);
+
+    @Test
+    public void circuit_opensOnceTheFailureRateIsReached() {
+        this.breaker.onSuccess(HOOK);
+        this.breaker.onFailure(HOOK, CONNECT_FAILURE);
+        this.breaker.onSuccess(HOOK);
+        assertThat(this.breaker.state(HOOK)).isEqualTo(HookCircuitBreaker.State.CLOSED);
+
+        this.breaker.onFailure(HOOK, CONNECT_FAILURE);
+
+        assertThat(this.breaker.state(HOOK)).isEqualTo(HookCircuitBreaker.State.OPEN);
+        assertThat(this.breaker.acquire(HOOK)).isEqualTo(10_000);
+        assertThat(this.breaker.acquire("http://other")).isZero();
+        assertThat(this.breaker.openCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void halfOpenCircuit_letsOneCallThroughAndClosesOnSuccess() {
+        this.open();
+        this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10_000));
+
+        assertThat(this.breaker.acquire(HOOK)).isZero();
+        assertThat(this.breaker.state(HOOK)).isEqualTo(HookCircuitBreaker.State.HALF_OPEN);
+        assertThat(this.breaker.acquire(HOOK)).isEqualTo(10_000);
+
+        this.breaker.onSuccess(HOOK);
+
+        assertThat(this.breaker.state(HOOK)).isEqualTo(HookCircuitBreaker.State.CLOSED);
+        assertThat(this.breaker.acquire(HOOK)).isZero();
+        assertThat(this.breaker.openCount()).isZero();
+    }
+
+    @Test
+    public void halfOpenCircuit_opensAgainOnFailure() {
+        this.open();
+        this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10_000));
+        this.breaker.acquire(HOOK);
+
+        this.breaker.onFailure(HOOK, new WebhookResponseException(503, -1));
+
+        assertThat(this.breaker.state(HOOK)).isEqualTo(HookCircuitBreaker.State.OPEN);
+        assertThat(this.breaker.acquire(HOOK)).isEqualTo(10_000);
+    }
+
+    @Test
+    public void refusedMessages_doNotOpenTheCircuit() {
+        for (int i = 0; i < 10; i++) {
+            this.breaker.onFailure(HOOK, new WebhookResponseException(400, -1));
+            this.breaker.onFailure(HOOK, new WebhookResponseException(429, 1000));
+        }
+
+        assertThat(this.breaker.state(HOOK)).isEqualTo(HookCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void zeroFailureRate_disablesBreaker() {
+        final HookCircuitBreaker disabled = new HookCircuitBreaker(0, 1, 10_000, this.now::get);
+
+        for (int i = 0; i < 10; i++) {
+            disabled.onFailure(HOOK, CONNECT_FAILURE);
+        }
+
+        assertThat(disabled.acquire(HOOK)).isZero();
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            this.breaker.onFailure(HOOK, new WebhookResponseException(404, -1));
+        }
+        assertThat(this.breaker.state(HOOK)).isEqualTo(HookCircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,61 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class HookRateLimiterTest {
+
+    private static final String HOOK = "http://hook";
+
+    private final AtomicLong now = new AtomicLong();
+    private final HookRateLimiter limiter = new HookRateLimiter(2, 3, this.now::get);
+
+    @Test
+    public void reserve_allowsBurstThenSpacesMessages() {
+        assertThat(this.limiter.reserve(HOOK)).isZero();
+        assertThat(this.limiter.reserve(HOOK)).isZero();
+        assertThat(this.limiter.reserve(HOOK)).isZero();
+        assertThat(this.limiter.reserve(HOOK)).isEqualTo(500);
+        assertThat(this.limiter.reserve(HOOK)).isEqualTo(1000);
+    }
+
+    @Test
+    public void reserve_refillsWhileIdle() {
+        for (int i = 0; i < 3; i++) {
+            this.limiter.reserve(HOOK);
+        }
+        this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        assertThat(this.limiter.reserve(HOOK)).isZero();
+        assertThat(this.limiter.reserve(HOOK)).isZero();
+        assertThat(this.limiter.reserve(HOOK)).isEqualTo(500);
+    }
+
+    @Test
+    public void reserve_limitsEachHookSeparately() {
+        for (int i = 0; i < 3; i++) {
+            this.limiter.reserve(HOOK);
+        }
+
+        assertThat(this.limiter.reserve("http://other")).isZero();
+    }
+
+    @Test
+    public void configure_overridesGlobalRate() {
+        this.limiter.configure(HOOK, 10, 1);
+
+        assertThat(this.limiter.reserve(HOOK)).isZero();
+        assertThat(this.limiter.reserve(HOOK)).isEqualTo(100);
+    }
+
+    @Test
+    public void zeroRate_disablesLimiter() {
+        final HookRateLimiter disabled = new HookRateLimiter(0, 1, this.now::get);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(disabled.reserve(HOOK)).isZero();
+        }
+    }
+}
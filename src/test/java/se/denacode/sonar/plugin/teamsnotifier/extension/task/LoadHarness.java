@@ -0,0 +1,396 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.i18n.I18n;
+
+/**
+ * Replays a burst of analyses, like a CI wave on a large instance, through the real
+ * {@link TeamsPostProjectAnalysisTask}, dispatch queue and HTTP client against a {@link FakeTeamsServer} where some
+ * hooks are slow or throttled. Reports the time each {@code finished()} call holds the Compute Engine thread, the time
+ * from the analysis until Teams accepts its notification, and the notifications lost or sent twice.
+ * <p>
+ * The profile comes from {@code load.*} system properties, see {@link Profile}, and any {@code ckss.*} system property
+ * overrides the plugin setting, so the same wave can be replayed with other queue, retry or rate limit settings:
+ * </p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dsun.net.httpserver.nodelay=true \
+ *   -Dexec.mainClass=se.denacode.sonar.plugin.teamsnotifier.extension.task.LoadHarness \
+ *   -Dload.analyses=500 -Dload.seconds=120 -Dckss.queue_workers=4
+ * </pre>
+ * Without {@code sun.net.httpserver.nodelay} the fake server stalls every response on delayed ACKs, adding about 40ms
+ * to each webhook call.
+ */
+final class LoadHarness {
+
+    private static final Pattern ANALYSIS_ID = Pattern.compile("load-\\d+-\\d+");
+    private static final long DRAIN_POLL_MILLIS = 50;
+
+    /**
+     * The shape of the wave and of the Teams hooks.
+     */
+    static final class Profile {
+        int analyses = 500;
+        long durationMillis = 120_000;
+        int hooks = 60;
+        int threads = 8;
+        double slowHooks = 0.1;
+        long slowLatencyMillis = 3_000;
+        long latencyMillis = 150;
+        long jitterMillis = 100;
+        double throttledHooks = 0.1;
+        double throttleRate = 0.3;
+        int retryAfterSeconds = 1;
+        double errorRate = 0.01;
+        long drainTimeoutMillis = 300_000;
+        long seed = 42;
+        final Map<String, String> settings = new ConcurrentHashMap<>();
+
+        static Profile fromSystemProperties() {
+            final Profile profile = new Profile();
+            profile.analyses = Integer.getInteger("load.analyses", profile.analyses);
+            profile.durationMillis = TimeUnit.SECONDS.toMillis(
+                Long.getLong("load.seconds", TimeUnit.MILLISECONDS.toSeconds(profile.durationMillis)));
+            profile.hooks = Integer.getInteger("load.hooks", profile.hooks);
+            profile.threads = Integer.getInteger("load.threads", profile.threads);
+            profile.slowHooks = doubleProperty("load.slow_hooks", profile.slowHooks);
+            profile.slowLatencyMillis = Long.getLong("load.slow_latency_ms", profile.slowLatencyMillis);
+            profile.latencyMillis = Long.getLong("load.latency_ms", profile.latencyMillis);
+            profile.jitterMillis = Long.getLong("load.jitter_ms", profile.jitterMillis);
+            profile.throttledHooks = doubleProperty("load.throttled_hooks", profile.throttledHooks);
+            profile.throttleRate = doubleProperty("load.throttle_rate", profile.throttleRate);
+            profile.retryAfterSeconds = Integer.getInteger("load.retry_after_s", profile.retryAfterSeconds);
+            profile.errorRate = doubleProperty("load.error_rate", profile.errorRate);
+            profile.drainTimeoutMillis = TimeUnit.SECONDS.toMillis(
+                Long.getLong("load.drain_timeout_s", TimeUnit.MILLISECONDS.toSeconds(profile.drainTimeoutMillis)));
+            profile.seed = Long.getLong("load.seed", profile.seed);
+            for (final String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("ckss.")) {
+                    profile.settings.put(name, System.getProperty(name));
+                }
+            }
+            return profile;
+        }
+
+        private static double doubleProperty(final String name, final double defaultValue) {
+            final String value = System.getProperty(name);
+            return value == null ? defaultValue : Double.parseDouble(value);
+        }
+
+        /**
+         * The first hooks are slow, the next ones throttled, the same with every seed.
+         */
+        List<FakeTeamsServer.HookProfile> hookProfiles() {
+            final int slow = (int) Math.round(this.hooks * this.slowHooks);
+            final int throttled = (int) Math.round(this.hooks * this.throttledHooks);
+            final List<FakeTeamsServer.HookProfile> profiles = new ArrayList<>(this.hooks);
+            for (int hook = 0; hook < this.hooks; hook++) {
+                if (hook < slow) {
+                    profiles.add(new FakeTeamsServer.HookProfile(this.slowLatencyMillis, this.jitterMillis, 0,
+                        this.retryAfterSeconds, this.errorRate));
+                } else if (hook < slow + throttled) {
+                    profiles.add(new FakeTeamsServer.HookProfile(this.latencyMillis, this.jitterMillis,
+                        this.throttleRate, this.retryAfterSeconds, this.errorRate));
+                } else {
+                    profiles.add(new FakeTeamsServer.HookProfile(this.latencyMillis, this.jitterMillis, 0,
+                        this.retryAfterSeconds, this.errorRate));
+                }
+            }
+            return profiles;
+        }
+    }
+
+    /**
+     * What a run measured, latencies in nanoseconds.
+     */
+    static final class Report {
+        final long[] finishedNanos;
+        final long[] deliveryNanos;
+        final int analyses;
+        final int delivered;
+        final int duplicates;
+        final long calls;
+        final long throttled;
+        final long errors;
+        final long sent;
+        final long retried;
+        final long failed;
+        final long dropped;
+        final long elapsedMillis;
+
+        Report(final long[] finishedNanos, final long[] deliveryNanos, final int analyses, final int duplicates,
+            final FakeTeamsServer server, final NotifierMetrics metrics, final long elapsedMillis) {
+            this.finishedNanos = finishedNanos;
+            this.deliveryNanos = deliveryNanos;
+            this.analyses = analyses;
+            this.delivered = deliveryNanos.length;
+            this.duplicates = duplicates;
+            this.calls = server.calls.get();
+            this.throttled = server.throttled.get();
+            this.errors = server.failed.get();
+            this.sent = metrics.sent.get();
+            this.retried = metrics.retried.get();
+            this.failed = metrics.failed.get();
+            this.dropped = metrics.dropped.get();
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        int lost() {
+            return this.analyses - this.delivered;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH,
+                "%d analyses in %d ms%n"
+                    + "finished() us:  %s%n"
+                    + "delivery ms:    %s%n"
+                    + "delivered=%d lost=%d duplicates=%d%n"
+                    + "webhook calls=%d 429=%d 503=%d%n"
+                    + "metrics sent=%d retried=%d failed=%d dropped=%d",
+                this.analyses, this.elapsedMillis,
+                percentiles(this.finishedNanos, TimeUnit.MICROSECONDS),
+                percentiles(this.deliveryNanos, TimeUnit.MILLISECONDS),
+                this.delivered, this.lost(), this.duplicates,
+                this.calls, this.throttled, this.errors,
+                this.sent, this.retried, this.failed, this.dropped);
+        }
+
+        private static String percentiles(final long[] sortedNanos, final TimeUnit unit) {
+            if (sortedNanos.length == 0) {
+                return "none";
+            }
+            return String.format(Locale.ENGLISH, "p50=%d p90=%d p99=%d max=%d",
+                unit.convert(percentile(sortedNanos, 0.5), TimeUnit.NANOSECONDS),
+                unit.convert(percentile(sortedNanos, 0.9), TimeUnit.NANOSECONDS),
+                unit.convert(percentile(sortedNanos, 0.99), TimeUnit.NANOSECONDS),
+                unit.convert(sortedNanos[sortedNanos.length - 1], TimeUnit.NANOSECONDS));
+        }
+
+        static long percentile(final long[] sortedNanos, final double rank) {
+            final int index = (int) Math.ceil(rank * sortedNanos.length) - 1;
+            return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))];
+        }
+    }
+
+    private LoadHarness() {
+    }
+
+    static Report run(final Profile profile) throws IOException, InterruptedException {
+        // Submission time of each analysis, then the time of its first delivery
+        final AtomicLongArray submitted = new AtomicLongArray(profile.analyses);
+        final long[] delivery = new long[profile.analyses];
+        final AtomicInteger duplicates = new AtomicInteger();
+        final Path dataDir = Files.createTempDirectory("teams-notifier-load");
+        try (final FakeTeamsServer server = new FakeTeamsServer(profile.hookProfiles(), (body, arrival) -> {
+            // A coalesced notification carries several analyses, each named in several places
+            final Set<String> ids = new HashSet<>();
+            final Matcher matcher = ANALYSIS_ID.matcher(body);
+            while (matcher.find()) {
+                ids.add(matcher.group());
+            }
+            for (final String id : ids) {
+                final int analysis = Integer.parseInt(id.substring(id.lastIndexOf('-') + 1));
+                synchronized (delivery) {
+                    if (delivery[analysis] == 0) {
+                        delivery[analysis] = Math.max(1, arrival - submitted.get(analysis));
+                    } else {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            }
+        })) {
+            final ConfigurationBridge settings = new ConfigurationBridge(settings(profile, server, dataDir));
+            final NotifierMetrics metrics = new NotifierMetrics();
+            final WebhookHttpClient httpClient = new WebhookHttpClient(settings, metrics);
+            final WebhookDispatchQueue dispatchQueue = new WebhookDispatchQueue(settings, httpClient, metrics);
+            final MetricFormatRegistry metricFormats = new MetricFormatRegistry();
+            final ConditionHistory conditionHistory = new ConditionHistory(settings);
+            final QualityGateStatusTracker statusTracker = new QualityGateStatusTracker(settings);
+            metrics.start();
+            httpClient.start();
+            metricFormats.start();
+            conditionHistory.start();
+            statusTracker.start();
+            dispatchQueue.start();
+            final TeamsPostProjectAnalysisTask task = new TeamsPostProjectAnalysisTask(settings, new LoadI18n(),
+                dispatchQueue, metrics, metricFormats, conditionHistory, statusTracker);
+
+            final long[] finished = new long[profile.analyses];
+            final long start = System.nanoTime();
+            final ScheduledExecutorService pool = Executors.newScheduledThreadPool(profile.threads);
+            try {
+                final Random random = new Random(profile.seed);
+                for (int analysis = 0; analysis < profile.analyses; analysis++) {
+                    final int index = analysis;
+                    final PostProjectAnalysisTask.Context context = context(profile, analysis);
+                    pool.schedule(() -> {
+                        final long before = System.nanoTime();
+                        submitted.set(index, before);
+                        task.finished(context);
+                        finished[index] = System.nanoTime() - before;
+                    }, (long) (random.nextDouble() * profile.durationMillis), TimeUnit.MILLISECONDS);
+                }
+                pool.shutdown();
+                pool.awaitTermination(profile.durationMillis + profile.drainTimeoutMillis, TimeUnit.MILLISECONDS);
+
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(profile.drainTimeoutMillis);
+                while (metrics.sent.get() + metrics.failed.get() + metrics.dropped.get() < profile.analyses
+                    && System.nanoTime() < deadline) {
+                    Thread.sleep(DRAIN_POLL_MILLIS);
+                }
+            } finally {
+                pool.shutdownNow();
+                dispatchQueue.stop();
+                statusTracker.stop();
+                conditionHistory.stop();
+                metricFormats.stop();
+                httpClient.stop();
+                metrics.stop();
+            }
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            final long[] deliveryNanos;
+            synchronized (delivery) {
+                deliveryNanos = Arrays.stream(delivery).filter(nanos -> nanos > 0).sorted().toArray();
+            }
+            Arrays.sort(finished);
+            return new Report(finished, deliveryNanos, profile.analyses, duplicates.get(), server, metrics,
+                elapsedMillis);
+        } finally {
+            delete(dataDir);
+        }
+    }
+
+    private static MapSettings settings(final Profile profile, final FakeTeamsServer server, final Path dataDir) {
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(TeamsNotifierProp.ENABLED.property(), "true");
+        settings.setProperty("sonar.core.serverBaseURL", "http://localhost:9000/");
+        settings.setProperty(WebhookDispatchQueue.DATA_PATH_PROPERTY, dataDir.toString());
+        // One configuration row, and one hook, per group of projects
+        final String[] rows = new String[profile.hooks];
+        for (int hook = 0; hook < profile.hooks; hook++) {
+            rows[hook] = String.valueOf(hook);
+            final String prefix = TeamsNotifierProp.CONFIG.property() + "." + hook + ".";
+            settings.setProperty(prefix + TeamsNotifierProp.PROJECT_REGEXP.property(), "load-" + hook + "-.*");
+            settings.setProperty(prefix + TeamsNotifierProp.PROJECT_HOOK.property(), server.hookUrl(hook));
+            settings.setProperty(prefix + TeamsNotifierProp.QG_FAIL_ONLY.property(), "false");
+        }
+        settings.setProperty(TeamsNotifierProp.CONFIG.property(), String.join(",", rows));
+        for (final Map.Entry<String, String> setting : profile.settings.entrySet()) {
+            settings.setProperty(setting.getKey(), setting.getValue());
+        }
+        return settings;
+    }
+
+    /**
+     * The analysis of project {@code load-<hook>-<n>}, built before the wave so only the task is measured.
+     */
+    private static PostProjectAnalysisTask.Context context(final Profile profile, final int analysis) {
+        final CaptorPostProjectAnalysisTask captor = new CaptorPostProjectAnalysisTask();
+        final String projectKey = "load-" + (analysis % profile.hooks) + "-" + analysis;
+        Analyses.qualityGateError2Of3ConditionsFailed(captor, projectKey, projectKey);
+        final PostProjectAnalysisTask.ProjectAnalysis projectAnalysis = captor.getProjectAnalysis();
+        return new PostProjectAnalysisTask.Context() {
+            @Override
+            public PostProjectAnalysisTask.ProjectAnalysis getProjectAnalysis() {
+                return projectAnalysis;
+            }
+
+            @Override
+            public PostProjectAnalysisTask.LogStatistics getLogStatistics() {
+                return new PostProjectAnalysisTask.LogStatistics() {
+                    @Override
+                    public PostProjectAnalysisTask.LogStatistics add(final String key, final Object value) {
+                        return this;
+                    }
+                };
+            }
+        };
+    }
+
+    private static void delete(final Path dir) throws IOException {
+        try (final Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final Profile profile = Profile.fromSystemProperties();
+        System.out.println("Replaying " + profile.analyses + " analyses over "
+            + TimeUnit.MILLISECONDS.toSeconds(profile.durationMillis) + " s on " + profile.hooks + " hooks "
+            + profile.settings);
+        System.out.println(run(profile));
+    }
+
+    /**
+     * Returns the default message, like the mocked I18n of the unit tests, without recording every call.
+     */
+    private static final class LoadI18n implements I18n {
+
+        @Override
+        public String message(final Locale locale, final String key, final String defaultValue,
+            final Object... parameters) {
+            return defaultValue;
+        }
+
+        @Override
+        public String age(final Locale locale, final long durationInMillis) {
+            return null;
+        }
+
+        @Override
+        public String age(final Locale locale, final Date fromDate, final Date toDate) {
+            return null;
+        }
+
+        @Override
+        public String ageFromNow(final Locale locale, final Date date) {
+            return null;
+        }
+
+        @Override
+        public String formatDateTime(final Locale locale, final Date date) {
+            return null;
+        }
+
+        @Override
+        public String formatDate(final Locale locale, final Date date) {
+            return null;
+        }
+
+        @Override
+        public String formatDouble(final Locale locale, final Double value) {
+            return null;
+        }
+
+        @Override
+        public String formatInteger(final Locale locale, final Integer value) {
+            return null;
+        }
+    }
+}
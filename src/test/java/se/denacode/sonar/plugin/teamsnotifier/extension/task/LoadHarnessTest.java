@@ -0,0 +1,49 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class LoadHarnessTest {
+
+    @Test
+    public void run_deliversEveryAnalysisOnce_despiteSlowAndThrottledHooks() throws Exception {
+        final LoadHarness.Profile profile = new LoadHarness.Profile();
+        profile.analyses = 40;
+        profile.durationMillis = 500;
+        profile.hooks = 4;
+        profile.threads = 4;
+        profile.slowHooks = 0.25;
+        profile.slowLatencyMillis = 200;
+        profile.latencyMillis = 5;
+        profile.jitterMillis = 5;
+        profile.throttledHooks = 0.25;
+        profile.throttleRate = 0.3;
+        profile.retryAfterSeconds = 0;
+        profile.errorRate = 0;
+        profile.drainTimeoutMillis = 30_000;
+        profile.settings.put("ckss.rate_limit", "0");
+        profile.settings.put("ckss.retry_max_attempts", "20");
+        profile.settings.put("ckss.retry_base_delay_ms", "10");
+        profile.settings.put("ckss.retry_max_delay_ms", "50");
+
+        final LoadHarness.Report report = LoadHarness.run(profile);
+
+        assertThat(report.lost()).as(report.toString()).isZero();
+        assertThat(report.duplicates).as(report.toString()).isZero();
+        assertThat(report.finishedNanos).hasSize(40);
+        assertThat(report.sent).isEqualTo(40);
+        assertThat(report.throttled).isPositive();
+        assertThat(report.retried).isEqualTo(report.throttled);
+    }
+
+    @Test
+    public void percentile_nearestRank() {
+        final long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+        assertThat(LoadHarness.Report.percentile(sorted, 0.5)).isEqualTo(5);
+        assertThat(LoadHarness.Report.percentile(sorted, 0.9)).isEqualTo(9);
+        assertThat(LoadHarness.Report.percentile(sorted, 0.99)).isEqualTo(10);
+        assertThat(LoadHarness.Report.percentile(new long[] {7}, 0.5)).isEqualTo(7);
+    }
+}
@@ -0,0 +1,65 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.Collections;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.MetricFinder;
+
+public class MetricFormatRegistryTest {
+
+    @Test
+    public void get_knowsCoreMetrics() {
+        final MetricFormatRegistry registry = new MetricFormatRegistry();
+
+        assertThat(registry.get(CoreMetrics.NEW_COVERAGE_KEY)).isEqualTo(MetricValueFormat.PERCENT);
+        assertThat(registry.get(CoreMetrics.NEW_RELIABILITY_RATING_KEY)).isEqualTo(MetricValueFormat.RATING);
+        assertThat(registry.get(CoreMetrics.NEW_TECHNICAL_DEBT_KEY)).isEqualTo(MetricValueFormat.WORK_DURATION);
+        assertThat(registry.get(CoreMetrics.NEW_BUGS_KEY)).isEqualTo(MetricValueFormat.RAW);
+        assertThat(registry.get("unknown")).isEqualTo(MetricValueFormat.RAW);
+    }
+
+    @Test
+    public void get_knowsPluginMetrics() {
+        final Metric<Integer> loaded = new Metric.Builder("plugin_rating", "Plugin rating", Metric.ValueType.RATING)
+            .create();
+        final Metric<Integer> created = new Metric.Builder("plugin_duration", "Plugin duration",
+            Metric.ValueType.MILLISEC).create();
+        final MetricFinder metricFinder = mock(MetricFinder.class);
+        when(metricFinder.findAll()).thenReturn(Collections.singletonList(loaded));
+        when(metricFinder.findByKey("plugin_duration")).thenReturn(created);
+        final MetricFormatRegistry registry = new MetricFormatRegistry(metricFinder);
+        registry.start();
+
+        assertThat(registry.get("plugin_rating")).isEqualTo(MetricValueFormat.RATING);
+        assertThat(registry.get("plugin_duration")).isEqualTo(MetricValueFormat.MILLISECONDS);
+        assertThat(registry.get("plugin_duration")).isEqualTo(MetricValueFormat.MILLISECONDS);
+        verify(metricFinder, times(1)).findByKey("plugin_duration");
+    }
+
+    @Test
+    public void append_formatsByKind() {
+        assertThat(format(MetricValueFormat.PERCENT, "75.5100009")).isEqualTo("75.51%");
+        assertThat(format(MetricValueFormat.RATING, "1.0")).isEqualTo("A");
+        assertThat(format(MetricValueFormat.RATING, "5")).isEqualTo("E");
+        assertThat(format(MetricValueFormat.RATING, "9")).isEqualTo("9");
+        assertThat(format(MetricValueFormat.WORK_DURATION, "15")).isEqualTo("15min");
+        assertThat(format(MetricValueFormat.WORK_DURATION, "195")).isEqualTo("3h 15min");
+        assertThat(format(MetricValueFormat.WORK_DURATION, "1140")).isEqualTo("2d 3h");
+        assertThat(format(MetricValueFormat.MILLISECONDS, "350")).isEqualTo("350ms");
+        assertThat(format(MetricValueFormat.MILLISECONDS, "1250")).isEqualTo("1.25s");
+        assertThat(format(MetricValueFormat.RAW, "OK")).isEqualTo("OK");
+        assertThat(format(MetricValueFormat.PERCENT, "n/a")).isEqualTo("n/a%");
+    }
+
+    private static String format(final MetricValueFormat format, final String value) {
+        final StringBuilder sb = new StringBuilder();
+        format.append(value, sb);
+        return sb.toString();
+    }
+}
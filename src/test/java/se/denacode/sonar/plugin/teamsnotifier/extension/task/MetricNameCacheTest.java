@@ -0,0 +1,54 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.Locale;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.sonar.api.i18n.I18n;
+
+public class MetricNameCacheTest {
+
+    private I18n i18n;
+    private MetricNameCache cache;
+
+    @Before
+    public void before() {
+        this.i18n = mock(I18n.class);
+        when(this.i18n.message(eq(Locale.ENGLISH), eq("metric.bugs.name"), anyString())).thenReturn("Bugs");
+        when(this.i18n.message(eq(Locale.FRENCH), eq("metric.bugs.name"), anyString())).thenReturn("Bogues");
+        this.cache = new MetricNameCache(this.i18n);
+    }
+
+    @Test
+    public void get_looksEachNameUpOncePerLocale() {
+        assertThat(this.cache.get(Locale.ENGLISH, "bugs")).isEqualTo("Bugs");
+        assertThat(this.cache.get(Locale.ENGLISH, "bugs")).isEqualTo("Bugs");
+        assertThat(this.cache.get(Locale.FRENCH, "bugs")).isEqualTo("Bogues");
+
+        verify(this.i18n, times(1)).message(Locale.ENGLISH, "metric.bugs.name", "bugs");
+        verify(this.i18n, times(1)).message(Locale.FRENCH, "metric.bugs.name", "bugs");
+        assertThat(this.cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_fallsBackToMetricKey() {
+        assertThat(this.cache.get(Locale.ENGLISH, "custom_metric")).isEqualTo("custom_metric");
+    }
+
+    @Test
+    public void get_isBounded() {
+        for (int i = 0; i <= MetricNameCache.MAX_SIZE; i++) {
+            this.cache.get(Locale.ENGLISH, "metric_" + i);
+        }
+
+        assertThat(this.cache.size()).isZero();
+        assertThat(this.cache.get(Locale.ENGLISH, "bugs")).isEqualTo("Bugs");
+        assertThat(this.cache.size()).isEqualTo(1);
+    }
+}
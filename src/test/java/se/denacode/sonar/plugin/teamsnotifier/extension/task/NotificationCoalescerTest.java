@@ -0,0 +1,129 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Action;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Test;
+
+public class NotificationCoalescerTest {
+
+    private final Map<String, Payload> sent = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> onUndelivered = new ConcurrentHashMap<>();
+    private final CountDownLatch sentLatch = new CountDownLatch(1);
+    private NotificationCoalescer coalescer;
+
+    @After
+    public void after() {
+        this.coalescer.stop();
+    }
+
+    @Test
+    public void add_maxBatchSizeReached_sendsOneMessagePerHook() {
+        this.coalescer = new NotificationCoalescer(TimeUnit.MINUTES.toMillis(1), 3, this::send);
+
+        this.coalescer.add("http://hook/a", payload("a1"));
+        this.coalescer.add("http://hook/b", payload("b1"));
+        this.coalescer.add("http://hook/a", payload("a2"));
+        assertThat(this.sent).isEmpty();
+        this.coalescer.add("http://hook/a", payload("a3"));
+
+        assertThat(this.sent).containsOnlyKeys("http://hook/a");
+        final Payload combined = this.sent.get("http://hook/a");
+        assertThat(combined.getSections()).extracting(Section::getActivitySubtitle).containsExactly("a1", "a2", "a3");
+        assertThat(combined.getPotentialAction()).isEmpty();
+        assertThat(combined.getSections().get(1).getPotentialAction()).extracting(Action::getTarget)
+            .containsExactly(Collections.singletonList("http://sonar/a2"));
+    }
+
+    @Test
+    public void add_samePayloadToSeveralHooks_leavesPayloadUnchanged() {
+        this.coalescer = new NotificationCoalescer(TimeUnit.MINUTES.toMillis(1), 2, this::send);
+        final Payload shared = payload("a2");
+
+        this.coalescer.add("http://hook/a", payload("a1"));
+        this.coalescer.add("http://hook/b", payload("b1"));
+        this.coalescer.add("http://hook/a", shared);
+        this.coalescer.add("http://hook/b", shared);
+
+        assertThat(shared.getSection().getPotentialAction()).isEmpty();
+        assertThat(this.sent.get("http://hook/b").getSections().get(1).getPotentialAction()).hasSize(1);
+    }
+
+    @Test
+    public void add_keepsTheTaskIdsOfTheCombinedPayloads() {
+        this.coalescer = new NotificationCoalescer(TimeUnit.MINUTES.toMillis(1), 2, this::send);
+
+        this.coalescer.add("http://hook/a", payload("a1").withCorrelationId("task1"));
+        this.coalescer.add("http://hook/a", payload("a2").withCorrelationId("task2"));
+
+        assertThat(this.sent.get("http://hook/a").getCorrelationId()).isEqualTo("task1,task2");
+    }
+
+    @Test
+    public void add_combinedPayload_hasTheColorOfTheWorstStatus() {
+        this.coalescer = new NotificationCoalescer(TimeUnit.MINUTES.toMillis(1), 3, this::send);
+
+        this.coalescer.add("http://hook/a", payload("a1"));
+        this.coalescer.add("http://hook/a", payload("a2").withThemeColor(Payload.COLOR_ERROR));
+        this.coalescer.add("http://hook/a", payload("a3").withThemeColor(Payload.COLOR_WARN));
+
+        assertThat(this.sent.get("http://hook/a").getThemeColor()).isEqualTo(Payload.COLOR_ERROR);
+    }
+
+    @Test
+    public void add_windowElapsed_sendsPendingBatch() throws InterruptedException {
+        this.coalescer = new NotificationCoalescer(50, 10, this::send);
+
+        this.coalescer.add("http://hook/a", payload("a1"));
+
+        assertThat(this.sentLatch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(this.sent.get("http://hook/a").getSections()).hasSize(1);
+        assertThat(this.sent.get("http://hook/a").getPotentialAction()).hasSize(1);
+    }
+
+    @Test
+    public void stop_sendsPendingBatches() {
+        this.coalescer = new NotificationCoalescer(TimeUnit.MINUTES.toMillis(1), 10, this::send);
+        this.coalescer.add("http://hook/a", payload("a1"));
+        this.coalescer.add("http://hook/a", payload("a2"));
+
+        this.coalescer.stop();
+
+        assertThat(this.sent.get("http://hook/a").getSections()).hasSize(2);
+    }
+
+    @Test
+    public void add_combinedPayloadUndelivered_callsBackEachPayload() {
+        this.coalescer = new NotificationCoalescer(TimeUnit.MINUTES.toMillis(1), 3, this::send);
+        final AtomicInteger undelivered = new AtomicInteger();
+
+        this.coalescer.add("http://hook/a", payload("a1"), undelivered::incrementAndGet);
+        this.coalescer.add("http://hook/a", payload("a2"));
+        this.coalescer.add("http://hook/a", payload("a3"), undelivered::incrementAndGet);
+        this.onUndelivered.get("http://hook/a").run();
+
+        assertThat(undelivered).hasValue(2);
+    }
+
+    private void send(final String hook, final Payload payload, final Runnable onUndelivered) {
+        this.sent.put(hook, payload);
+        if (onUndelivered != null) {
+            this.onUndelivered.put(hook, onUndelivered);
+        }
+        this.sentLatch.countDown();
+    }
+
+    private static Payload payload(final String project) {
+        final Payload payload = new Payload("Sonar report", new Section("Sonar Quality Report", project));
+        payload.getPotentialAction().add(new Action("See report", "http://sonar/" + project));
+        return payload;
+    }
+}
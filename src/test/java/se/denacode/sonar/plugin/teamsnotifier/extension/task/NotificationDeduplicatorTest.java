@@ -0,0 +1,77 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+
+public class NotificationDeduplicatorTest {
+
+    private static final long WINDOW_MILLIS = 60_000;
+
+    private final AtomicLong now = new AtomicLong();
+    private NotificationDeduplicator deduplicator;
+    private PostProjectAnalysisTask.ProjectAnalysis analysis;
+
+    @Before
+    public void before() {
+        this.deduplicator = new NotificationDeduplicator(this.now::get);
+        this.analysis = analysis(Analyses::qualityGateOk4Conditions);
+    }
+
+    @Test
+    public void isDuplicate_sameAnalysisWithinWindow() {
+        assertThat(this.deduplicator.isDuplicate("http://hook", this.analysis, "", WINDOW_MILLIS)).isFalse();
+        this.now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+
+        assertThat(this.deduplicator.isDuplicate("http://hook", this.analysis, "", WINDOW_MILLIS)).isTrue();
+        assertThat(this.deduplicator.isDuplicate("http://other", this.analysis, "", WINDOW_MILLIS)).isFalse();
+        assertThat(this.deduplicator.isDuplicate("http://hook", this.analysis, "feature", WINDOW_MILLIS)).isFalse();
+    }
+
+    @Test
+    public void isDuplicate_notAfterWindow() {
+        this.deduplicator.isDuplicate("http://hook", this.analysis, "", WINDOW_MILLIS);
+        this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS));
+
+        assertThat(this.deduplicator.isDuplicate("http://hook", this.analysis, "", WINDOW_MILLIS)).isFalse();
+    }
+
+    @Test
+    public void forget_sendsSameAnalysisAgain() {
+        final long fingerprint = NotificationDeduplicator.fingerprint(this.analysis, "");
+        this.deduplicator.isDuplicate("http://hook", fingerprint, WINDOW_MILLIS);
+        this.deduplicator.isDuplicate("http://other", fingerprint, WINDOW_MILLIS);
+
+        this.deduplicator.forget("http://hook", fingerprint);
+
+        assertThat(this.deduplicator.isDuplicate("http://hook", fingerprint, WINDOW_MILLIS)).isFalse();
+        assertThat(this.deduplicator.isDuplicate("http://other", fingerprint, WINDOW_MILLIS)).isTrue();
+    }
+
+    @Test
+    public void isDuplicate_disabledWithoutWindow() {
+        this.deduplicator.isDuplicate("http://hook", this.analysis, "", 0);
+
+        assertThat(this.deduplicator.isDuplicate("http://hook", this.analysis, "", 0)).isFalse();
+        assertThat(this.deduplicator.size()).isZero();
+    }
+
+    @Test
+    public void fingerprint_dependsOnConditionValues() {
+        final PostProjectAnalysisTask.ProjectAnalysis failed = analysis(Analyses::qualityGateError2Of3ConditionsFailed);
+
+        assertThat(NotificationDeduplicator.fingerprint(this.analysis, ""))
+            .isEqualTo(NotificationDeduplicator.fingerprint(analysis(Analyses::qualityGateOk4Conditions), ""))
+            .isNotEqualTo(NotificationDeduplicator.fingerprint(failed, ""));
+    }
+
+    private static PostProjectAnalysisTask.ProjectAnalysis analysis(final Consumer<PostProjectAnalysisTask> fixture) {
+        final CaptorPostProjectAnalysisTask captor = new CaptorPostProjectAnalysisTask();
+        fixture.accept(captor);
+        return captor.getProjectAnalysis();
+    }
+}
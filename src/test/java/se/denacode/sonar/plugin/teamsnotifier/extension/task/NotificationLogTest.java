@@ -0,0 +1,23 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class NotificationLogTest {
+
+    @Test
+    public void host_keepsTheWebhookTokenOutOfTheLogs() {
+        assertThat(NotificationLog.host("https://outlook.office.com/webhook/secret-token/IncomingWebhook/abc"))
+            .isEqualTo("outlook.office.com");
+        assertThat(NotificationLog.host(null)).isEqualTo("-");
+    }
+
+    @Test
+    public void isSampled_rateZero_neverSamples() {
+        final NotificationLog log = new NotificationLog(0);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(log.isSampled()).isFalse();
+        }
+    }
+}
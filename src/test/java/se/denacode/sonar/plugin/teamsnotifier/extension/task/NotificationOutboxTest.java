@@ -0,0 +1,129 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Fact;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.PayloadJson;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NotificationOutboxTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void before() throws IOException {
+        this.directory = this.temporaryFolder.newFolder("outbox").toPath();
+    }
+
+    @Test
+    public void open_recoversUnacknowledgedNotifications() throws IOException {
+        final Payload second = payload("2");
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            final long first = outbox.append("http://hook", payload("1"));
+            outbox.append("http://other", second);
+            outbox.ack(first);
+        }
+
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            assertThat(outbox.getRecovered()).hasSize(1);
+            final NotificationOutbox.Entry entry = outbox.getRecovered().get(0);
+            assertThat(entry.getHook()).isEqualTo("http://other");
+            assertThat(PayloadJson.toJson(entry.getPayload())).isEqualTo(PayloadJson.toJson(second));
+            assertThat(outbox.size()).isEqualTo(1);
+
+            outbox.ack(entry.getId());
+            final long next = outbox.append("http://hook", payload("3"));
+            assertThat(next).isGreaterThan(entry.getId());
+        }
+    }
+
+    @Test
+    public void open_ignoresTornRecordAtTheEnd() throws IOException {
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            outbox.append("http://hook", payload("1"));
+        }
+        final Path segment = this.segments().findFirst().orElseThrow(IllegalStateException::new);
+        Files.write(segment, new byte[] {'A', 0, 0, 0}, StandardOpenOption.APPEND);
+
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            assertThat(outbox.getRecovered()).hasSize(1);
+        }
+    }
+
+    @Test
+    public void ack_deletesDeliveredSegments() throws IOException {
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            outbox.ack(outbox.append("http://hook", payload("1")));
+        }
+        assertThat(this.segments().count()).isEqualTo(1);
+
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            assertThat(outbox.getRecovered()).isEmpty();
+        }
+        // Only the segment opened by the last run is left
+        assertThat(this.segments().map(path -> path.getFileName().toString()).collect(Collectors.toList()))
+            .containsExactly("outbox-0000000000000001.log");
+    }
+
+    @Test
+    public void append_survivesInterruptedThreads() throws IOException {
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            final long first = outbox.append("http://hook", payload("1"));
+            // An interrupted worker acknowledging closes the shared channel
+            Thread.currentThread().interrupt();
+            try {
+                outbox.ack(first);
+                outbox.append("http://hook", payload("2"));
+                assertThat(Thread.currentThread().isInterrupted()).isTrue();
+            } finally {
+                Thread.interrupted();
+            }
+            outbox.append("http://hook", payload("3"));
+        }
+
+        try (final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10)) {
+            assertThat(outbox.getRecovered()).hasSize(2);
+        }
+    }
+
+    @Test
+    public void close_forcesWhenInterrupted() throws IOException {
+        final NotificationOutbox outbox = NotificationOutbox.open(this.directory, 10);
+        outbox.append("http://hook", payload("1"));
+        Thread.currentThread().interrupt();
+        try {
+            outbox.close();
+        } finally {
+            Thread.interrupted();
+        }
+
+        try (final NotificationOutbox reopened = NotificationOutbox.open(this.directory, 10)) {
+            assertThat(reopened.getRecovered()).hasSize(1);
+        }
+    }
+
+    private Stream<Path> segments() throws IOException {
+        final File[] files = this.directory.toFile().listFiles();
+        return files == null ? Stream.empty() : Stream.of(files).map(File::toPath).sorted();
+    }
+
+    private static Payload payload(final String text) {
+        final Section section = new Section("Sonar Quality Report", text);
+        section.getFacts().add(new Fact("Bugs", "<1>"));
+        return new Payload("Sonar report", section);
+    }
+}
@@ -0,0 +1,57 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotifierMetricsTest {
+
+    private NotifierMetrics metrics;
+
+    @Before
+    public void before() {
+        this.metrics = new NotifierMetrics();
+    }
+
+    @After
+    public void after() {
+        this.metrics.stop();
+    }
+
+    @Test
+    public void timer_percentilesAreBucketUpperBounds() {
+        for (int i = 0; i < 99; i++) {
+            this.metrics.httpRoundTrip.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        this.metrics.httpRoundTrip.record(TimeUnit.SECONDS.toNanos(2));
+
+        assertThat(this.metrics.httpRoundTrip.count()).isEqualTo(100);
+        // 3ms falls in the bucket below 2^22 ns
+        assertThat(this.metrics.httpRoundTrip.percentileNanos(0.5)).isEqualTo(1L << 22);
+        assertThat(this.metrics.httpRoundTrip.percentileNanos(0.99)).isEqualTo(1L << 22);
+        assertThat(this.metrics.httpRoundTrip.percentileNanos(1)).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+        assertThat(this.metrics.get("http_round_trip_seconds_max")).isEqualTo(2.0);
+        assertThat(this.metrics.get("http_round_trip_seconds_count")).isEqualTo(100L);
+    }
+
+    @Test
+    public void start_publishesAttributesOverJmx() throws Exception {
+        this.metrics.sent.increment();
+        this.metrics.gauge("dispatch_queue_depth", () -> 7);
+        this.metrics.start();
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(NotifierMetrics.OBJECT_NAME);
+        assertThat(server.getAttribute(name, "notifications_sent_total")).isEqualTo(1L);
+        assertThat(server.getAttribute(name, "dispatch_queue_depth")).isEqualTo(7L);
+        assertThat(server.getMBeanInfo(name).getAttributes()).isNotEmpty();
+
+        this.metrics.stop();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+}
@@ -0,0 +1,29 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import com.google.gson.Gson;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Action;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Fact;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
+import java.io.IOException;
+import okhttp3.MediaType;
+import okio.Buffer;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class PayloadRequestBodyTest {
+
+    @Test
+    public void writeTo_streamsUtf8Json() throws IOException {
+        final Payload payload = new Payload("Sonar report", new Section("Sonar Quality Report", "Project Å was analyzed."));
+        payload.getSection().getFacts().add(new Fact("Quality gate status", "🟢 OK"));
+        payload.getPotentialAction().add(new Action("See report", "http://localhost:9000/dashboard?id=project:key"));
+        final PayloadRequestBody body = new PayloadRequestBody(payload, MediaType.get("application/json"));
+        final Buffer buffer = new Buffer();
+
+        body.writeTo(buffer);
+
+        assertThat(buffer.readUtf8()).isEqualTo(new Gson().toJson(payload));
+        assertThat(body.contentLength()).isEqualTo(-1);
+    }
+}
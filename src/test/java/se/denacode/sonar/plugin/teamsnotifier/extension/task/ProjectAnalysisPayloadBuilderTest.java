@@ -5,19 +5,25 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfig;
 import se.denacode.sonar.plugin.teamsnotifier.common.component.ProjectConfigBuilder;
+import se.denacode.sonar.plugin.teamsnotifier.common.template.MessageTemplate;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.CardFormat;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Fact;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import org.apache.commons.lang.RandomStringUtils;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.sonar.api.ce.posttask.Branch;
+import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -102,11 +108,11 @@ public class ProjectAnalysisPayloadBuilderTest {
             "        },\n" +
             "        {\n" +
             "          \"name\": \"Technical Debt Ratio on New Code\",\n" +
-            "          \"value\": \"\uD83D\uDFE2 0.01%, error if \\u003e10.0%\"\n" +
+            "          \"value\": \"\uD83D\uDFE2 0.01%, error if \\u003e10%\"\n" +
             "        },\n" +
             "        {\n" +
             "          \"name\": \"Coverage on New Code\",\n" +
-            "          \"value\": \"\uD83D\uDD34 75.51%, error if \\u003c80.0%\"\n" +
+            "          \"value\": \"\uD83D\uDD34 75.51%, error if \\u003c80%\"\n" +
             "        }\n" +
             "      ],\n" +
             "      \"activityTitle\": \"Sonar Quality Report\",\n" +
@@ -155,6 +161,55 @@ public class ProjectAnalysisPayloadBuilderTest {
             .contains("\uD83D\uDFE0 1, error if >0", "\uD83D\uDD34 10, error if >5");
     }
 
+    @Test
+    public void build_withTrend_showsDeltaAndSparkline() {
+        Analyses.qualityGateOk4Conditions(this.postProjectAnalysisTask);
+        final Map<String, double[]> previous = new HashMap<>();
+        previous.put(CoreMetrics.NEW_COVERAGE_KEY, new double[] {70, 74.21});
+        previous.put(CoreMetrics.NEW_BUGS_KEY, new double[] {1});
+        final Payload payload = ProjectAnalysisPayloadBuilder.of(this.postProjectAnalysisTask.getProjectAnalysis())
+            .projectConfig(new ProjectConfigBuilder().setProjectKeyOrRegExp("key").setQgFailOnly(false).build())
+            .i18n(this.i18n)
+            .trend(new ConditionHistory.Trend(previous))
+            .sparklines(true)
+            .projectUrl("http://localhost:9000/dashboard?id=project:key")
+            .build();
+
+        assertThat(payload.getSection().getFacts())
+            .extracting(Fact::getName, Fact::getValue)
+            .contains(
+                tuple("Coverage on New Code", "\uD83D\uDD34 75.51% (\u25B21.3), error if <80%"),
+                tuple("Coverage on New Code trend", "\u2581\u2586\u2588"),
+                tuple("New Bugs", "\uD83D\uDD34 1, error if >0"),
+                tuple("New Bugs trend", "\u2581\u2581"));
+    }
+
+    @Test
+    public void build_withTemplatesAndAdaptiveCard() {
+        Analyses.qualityGateError2Of3ConditionsFailed(this.postProjectAnalysisTask);
+        final ProjectConfig projectConfig = new ProjectConfigBuilder()
+            .setProjectKeyOrRegExp("key")
+            .setNotify("team")
+            .setQgFailOnly(false)
+            .setTitleTemplate(MessageTemplate.compile("{{project}} is {{status}}"))
+            .setTextTemplate(MessageTemplate.compile("{{#notify}}@{{notify}}: {{/notify}}{{qualityGate}} of "
+                + "{{projectKey}}{{^branch}} on the main branch{{/branch}}, see {{url}}"))
+            .setCardFormat(CardFormat.ADAPTIVE_CARD)
+            .build();
+        final Payload payload = ProjectAnalysisPayloadBuilder.of(this.postProjectAnalysisTask.getProjectAnalysis())
+            .projectConfig(projectConfig)
+            .i18n(this.i18n)
+            .projectUrl("http://localhost:9000/dashboard?id=project:key")
+            .build();
+
+        assertThat(payload.getThemeColor()).isEqualTo(Payload.COLOR_ERROR);
+        assertThat(payload.getFormat()).isEqualTo(CardFormat.ADAPTIVE_CARD);
+        assertThat(payload.getSummary()).isEqualTo(Analyses.PROJECT_NAME + " is ERROR");
+        assertThat(payload.getSection().getActivityTitle()).isEqualTo(Analyses.PROJECT_NAME + " is ERROR");
+        assertThat(payload.getSection().getActivitySubtitle()).isEqualTo("@team: name of " + Analyses.PROJECT_KEY
+            + " on the main branch, see http://localhost:9000/dashboard?id=project:key");
+    }
+
     @Test
     public void buildPayloadWithoutQualityGateWay() {
         Analyses.noQualityGate(this.postProjectAnalysisTask);
@@ -0,0 +1,78 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.io.IOException;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.ce.posttask.QualityGate;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+
+public class QualityGateStatusTrackerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MapSettings settings;
+
+    @Before
+    public void before() throws IOException {
+        this.settings = new MapSettings();
+        this.settings.setProperty(WebhookDispatchQueue.DATA_PATH_PROPERTY, this.temporaryFolder.getRoot().getPath());
+    }
+
+    @Test
+    public void update_returnsThePreviousStatusOfTheSameBranch() {
+        final QualityGateStatusTracker tracker = new QualityGateStatusTracker(new ConfigurationBridge(this.settings));
+
+        assertThat(tracker.update("app", "main", QualityGate.Status.OK)).isNull();
+        assertThat(tracker.update("app", "feature", QualityGate.Status.ERROR)).isNull();
+        assertThat(tracker.update("app", "main", QualityGate.Status.ERROR)).isEqualTo(QualityGate.Status.OK);
+        assertThat(tracker.update("app", "main", QualityGate.Status.ERROR)).isEqualTo(QualityGate.Status.ERROR);
+    }
+
+    @Test
+    public void update_keepsTheMostRecentlyAnalysedBranchesOnly() {
+        final QualityGateStatusTracker tracker = new QualityGateStatusTracker(new ConfigurationBridge(this.settings));
+        tracker.update("app", "main", QualityGate.Status.OK);
+        for (int i = 0; i < QualityGateStatusTracker.MAX_ENTRIES; i++) {
+            tracker.update("app", "pr-" + i, QualityGate.Status.OK);
+            if (i % 1000 == 0) {
+                tracker.update("app", "main", QualityGate.Status.OK);
+            }
+        }
+
+        assertThat(tracker.size()).isEqualTo(QualityGateStatusTracker.MAX_ENTRIES);
+        assertThat(tracker.update("app", "main", QualityGate.Status.OK)).isEqualTo(QualityGate.Status.OK);
+        assertThat(tracker.update("app", "pr-0", QualityGate.Status.OK)).isNull();
+    }
+
+    @Test
+    public void statuses_surviveARestart() {
+        final QualityGateStatusTracker tracker = new QualityGateStatusTracker(new ConfigurationBridge(this.settings));
+        tracker.start();
+        tracker.update("app", "main", QualityGate.Status.ERROR);
+        tracker.stop();
+
+        final QualityGateStatusTracker restarted = new QualityGateStatusTracker(new ConfigurationBridge(this.settings));
+        restarted.start();
+        try {
+            assertThat(restarted.size()).isEqualTo(1);
+            assertThat(restarted.update("app", "main", QualityGate.Status.OK)).isEqualTo(QualityGate.Status.ERROR);
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    public void statuses_areKeptInMemoryWithoutDataDirectory() {
+        final QualityGateStatusTracker tracker = new QualityGateStatusTracker(new ConfigurationBridge(new MapSettings()));
+        tracker.start();
+        tracker.update("app", "main", QualityGate.Status.OK);
+        tracker.stop();
+
+        assertThat(tracker.update("app", "main", QualityGate.Status.OK)).isEqualTo(QualityGate.Status.OK);
+    }
+}
@@ -0,0 +1,56 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(4, 1000, 3000);
+
+    @Test
+    public void clientError_isNotRetried() {
+        assertThat(this.retryPolicy.delayMillis(1, new WebhookResponseException(400, -1)))
+            .isEqualTo(RetryPolicy.NO_RETRY);
+    }
+
+    @Test
+    public void lastAttempt_isNotRetried() {
+        assertThat(this.retryPolicy.delayMillis(4, new IOException("Connection reset")))
+            .isEqualTo(RetryPolicy.NO_RETRY);
+    }
+
+    @Test
+    public void retryAfter_takesPrecedenceOverBackoff() {
+        assertThat(this.retryPolicy.delayMillis(1, new WebhookResponseException(429, 30_000))).isEqualTo(30_000);
+    }
+
+    @Test
+    public void openCircuit_isRetriedAfterTheCoolDown() {
+        assertThat(this.retryPolicy.delayMillis(1, new CircuitOpenException(45_000))).isEqualTo(45_000);
+        assertThat(this.retryPolicy.delayMillis(1, new CircuitOpenException(1))).isBetween(500L, 1000L);
+    }
+
+    @Test
+    public void backoff_isExponentialWithJitterAndCapped() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(this.retryPolicy.backoffMillis(1)).isBetween(500L, 1000L);
+            assertThat(this.retryPolicy.backoffMillis(2)).isBetween(1000L, 2000L);
+            assertThat(this.retryPolicy.backoffMillis(3)).isBetween(1500L, 3000L);
+            assertThat(this.retryPolicy.backoffMillis(40)).isBetween(1500L, 3000L);
+        }
+    }
+
+    @Test
+    public void parseRetryAfter() {
+        assertThat(RetryPolicy.parseRetryAfter("120")).isEqualTo(120_000);
+        assertThat(RetryPolicy.parseRetryAfter(null)).isEqualTo(-1);
+        assertThat(RetryPolicy.parseRetryAfter("soon")).isEqualTo(-1);
+        final String inOneMinute = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(1));
+        assertThat(RetryPolicy.parseRetryAfter(inOneMinute)).isBetween(55_000L, 60_000L);
+    }
+}
@@ -5,8 +5,13 @@ import static se.denacode.sonar.plugin.teamsnotifier.extension.task.Analyses.PRO
 import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
 import java.io.IOException;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentMatchers;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.isA;
@@ -18,10 +23,12 @@ import static org.mockito.Mockito.when;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.ce.posttask.PostProjectAnalysisTask;
+import org.sonar.api.ce.posttask.QualityGate;
 import org.sonar.api.config.Settings;
 import org.sonar.api.config.internal.ConfigurationBridge;
 import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.i18n.I18n;
+import org.sonar.api.measures.CoreMetrics;
 
 /**
  * Created by 616286 on 3.6.2016.
@@ -29,6 +36,9 @@ import org.sonar.api.i18n.I18n;
  */
 public class TeamsPostProjectAnalysisTaskTest {
 
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private static final String HOOK = "http://hook";
     private static final String DIFFERENT_KEY = "different:key";
 
@@ -38,6 +48,10 @@ public class TeamsPostProjectAnalysisTaskTest {
 
     private OfficeWebhookClient httpClient;
 
+    private WebhookDispatchQueue dispatchQueue;
+
+    private NotifierMetrics metrics;
+
     private MapSettings settings;
     private I18n i18n;
 
@@ -66,7 +80,17 @@ public class TeamsPostProjectAnalysisTaskTest {
             }
         });
 
-        this.task = new TeamsPostProjectAnalysisTask(this.httpClient, new ConfigurationBridge(this.settings), this.i18n);
+        final ConfigurationBridge configuration = new ConfigurationBridge(this.settings);
+        this.metrics = new NotifierMetrics();
+        this.dispatchQueue = new WebhookDispatchQueue(this.httpClient, configuration, this.metrics);
+        this.dispatchQueue.start();
+        this.task = new TeamsPostProjectAnalysisTask(configuration, this.i18n, this.dispatchQueue, this.metrics,
+            new MetricFormatRegistry(), new ConditionHistory(configuration), new QualityGateStatusTracker(configuration));
+    }
+
+    @After
+    public void after() {
+        this.dispatchQueue.stop();
     }
 
     @Test
@@ -74,7 +98,95 @@ public class TeamsPostProjectAnalysisTaskTest {
         Analyses.simple(this.postProjectAnalysisTask);
         when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class))).thenReturn(true);
         this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
+        verify(this.httpClient, times(1)).invokeIncomingWebhook(ArgumentMatchers.eq(HOOK),
+            ArgumentMatchers.argThat(payload -> "id".equals(payload.getCorrelationId())));
+        assertThat(this.metrics.sent.get()).isEqualTo(1);
+        assertThat(this.metrics.payloadBuild.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSkipWithoutAnyHook() throws Exception {
+        this.settings.removeProperty(TeamsNotifierProp.HOOK.property());
+        Analyses.simple(this.postProjectAnalysisTask);
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
+        verifyNoInteractions(this.httpClient);
+        assertThat(this.metrics.skippedNoHook.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCallEveryHookOfTheRow() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property() + "." + PROJECT_KEY + "." + TeamsNotifierProp.PROJECT_HOOK.property(),
+            "http://hook/team, http://hook/release");
+        Analyses.simple(this.postProjectAnalysisTask);
+        when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq("http://hook/team"), isA(Payload.class))).thenReturn(true);
+        when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq("http://hook/release"), isA(Payload.class)))
+            .thenThrow(new WebhookResponseException(400, -1));
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
+        verify(this.httpClient, times(1)).invokeIncomingWebhook(ArgumentMatchers.eq("http://hook/team"), isA(Payload.class));
+        verify(this.httpClient, times(1)).invokeIncomingWebhook(ArgumentMatchers.eq("http://hook/release"), isA(Payload.class));
+        assertThat(this.metrics.sent.get()).isEqualTo(1);
+        assertThat(this.metrics.failed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSkipSameAnalysisWithinDedupWindow() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.DEDUP_WINDOW.property(), "60000");
+        Analyses.simple(this.postProjectAnalysisTask);
+        when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class))).thenReturn(true);
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
         verify(this.httpClient, times(1)).invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class));
+        assertThat(this.metrics.skippedDuplicate.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSendSameAnalysisAgainAfterFailedDelivery() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.DEDUP_WINDOW.property(), "60000");
+        Analyses.simple(this.postProjectAnalysisTask);
+        when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class)))
+            .thenThrow(new WebhookResponseException(400, -1))
+            .thenReturn(true);
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.metrics.failed.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
+        verify(this.httpClient, times(2)).invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class));
+        assertThat(this.metrics.skippedDuplicate.get()).isZero();
+    }
+
+    @Test
+    public void shouldRecordSkippedAnalysesInTheHistory() throws Exception {
+        this.settings.setProperty(WebhookDispatchQueue.DATA_PATH_PROPERTY, this.temporaryFolder.getRoot().getPath());
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property() + "." + PROJECT_KEY + "." + TeamsNotifierProp.QG_FAIL_ONLY.property(), "true");
+        final ConfigurationBridge configuration = new ConfigurationBridge(this.settings);
+        final ConditionHistory history = new ConditionHistory(configuration);
+        history.start();
+        final TeamsPostProjectAnalysisTask task = new TeamsPostProjectAnalysisTask(configuration, this.i18n,
+            this.dispatchQueue, this.metrics, new MetricFormatRegistry(), history,
+            new QualityGateStatusTracker(configuration));
+        when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class))).thenReturn(true);
+
+        Analyses.violations(this.postProjectAnalysisTask, QualityGate.Status.ERROR, "10");
+        task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        Analyses.violations(this.postProjectAnalysisTask, QualityGate.Status.OK, "3");
+        task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        Analyses.violations(this.postProjectAnalysisTask, QualityGate.Status.ERROR, "12");
+        task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
+
+        assertThat(this.metrics.skippedQualityGate.get()).isEqualTo(1);
+        verify(this.httpClient, times(2)).invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class));
+        Analyses.violations(this.postProjectAnalysisTask, QualityGate.Status.ERROR, "12");
+        assertThat(history.record(PROJECT_KEY, "", this.postProjectAnalysisTask.getProjectAnalysis().getQualityGate())
+            .previous(CoreMetrics.VIOLATIONS_KEY)).containsExactly(10.0, 3.0, 12.0);
+        history.stop();
     }
 
     private PostProjectAnalysisTask.Context context(PostProjectAnalysisTask.ProjectAnalysis projectAnalysis) {
@@ -97,6 +209,37 @@ public class TeamsPostProjectAnalysisTaskTest {
         Analyses.simple(this.postProjectAnalysisTask);
         this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
         verifyNoInteractions(this.httpClient);
+        assertThat(this.metrics.skippedDisabled.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSkipUnchangedQualityGateStatusInChangeOnlyMode() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property() + "." + PROJECT_KEY + "." + TeamsNotifierProp.QG_CHANGE_ONLY.property(), "true");
+        when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class))).thenReturn(true);
+        Analyses.simple(this.postProjectAnalysisTask);
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        Analyses.qualityGateError2Of3ConditionsFailed(this.postProjectAnalysisTask);
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
+        verify(this.httpClient, times(2)).invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class));
+        assertThat(this.metrics.skippedUnchanged.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotifyRecoveryInChangeOnlyMode_evenWhenFailedOnly() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property() + "." + PROJECT_KEY + "." + TeamsNotifierProp.QG_CHANGE_ONLY.property(), "true");
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property() + "." + PROJECT_KEY + "." + TeamsNotifierProp.QG_FAIL_ONLY.property(), "true");
+        when(this.httpClient.invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class))).thenReturn(true);
+        Analyses.violations(this.postProjectAnalysisTask, QualityGate.Status.ERROR, "10");
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        Analyses.violations(this.postProjectAnalysisTask, QualityGate.Status.OK, "3");
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
+        this.dispatchQueue.stop();
+        verify(this.httpClient, times(2)).invokeIncomingWebhook(ArgumentMatchers.eq(HOOK), isA(Payload.class));
+        assertThat(this.metrics.skippedUnchanged.get()).isEqualTo(1);
+        assertThat(this.metrics.skippedQualityGate.get()).isZero();
     }
 
     @Test
@@ -105,5 +248,6 @@ public class TeamsPostProjectAnalysisTaskTest {
         Analyses.simple(this.postProjectAnalysisTask);
         this.task.finished(context(this.postProjectAnalysisTask.getProjectAnalysis()));
         verifyNoInteractions(this.httpClient);
+        assertThat(this.metrics.skippedQualityGate.get()).isEqualTo(1);
     }
 }
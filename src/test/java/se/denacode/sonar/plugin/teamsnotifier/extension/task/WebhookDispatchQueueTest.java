@@ -0,0 +1,228 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Payload;
+import se.denacode.sonar.plugin.teamsnotifier.extension.task.payload.Section;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+
+public class WebhookDispatchQueueTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch firstTaken = new CountDownLatch(1);
+
+    private MapSettings settings;
+    private OfficeWebhookClient httpClient;
+    private WebhookDispatchQueue queue;
+
+    @Before
+    public void before() throws Exception {
+        this.settings = new MapSettings();
+        this.settings.setProperty(TeamsNotifierProp.QUEUE_CAPACITY.property(), "2");
+        this.settings.setProperty(TeamsNotifierProp.QUEUE_WORKERS.property(), "1");
+        this.httpClient = mock(OfficeWebhookClient.class);
+        when(this.httpClient.invokeIncomingWebhook(anyString(), any(Payload.class))).thenAnswer(invocation -> {
+            this.firstTaken.countDown();
+            this.release.await(5, TimeUnit.SECONDS);
+            this.delivered.add(((Payload) invocation.getArguments()[1]).getSection().getActivitySubtitle());
+            return true;
+        });
+    }
+
+    @After
+    public void after() {
+        this.release.countDown();
+        this.queue.stop();
+    }
+
+    @Test
+    public void dropOldest_keepsNewestNotifications() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.QUEUE_OVERFLOW_POLICY.property(), "drop_oldest");
+        this.fillQueue("1", "2", "3", "4");
+
+        assertThat(this.delivered).containsExactly("1", "3", "4");
+    }
+
+    @Test
+    public void dropNewest_keepsQueuedNotifications() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.QUEUE_OVERFLOW_POLICY.property(), "DROP_NEWEST");
+        this.fillQueue("1", "2", "3", "4");
+
+        assertThat(this.delivered).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    public void stop_drainsPendingNotifications() throws Exception {
+        this.fillQueue("1", "2", "3");
+
+        assertThat(this.delivered).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    public void failedCall_isRetriedUntilItSucceeds() throws Exception {
+        final OfficeWebhookClient failingClient = mock(OfficeWebhookClient.class);
+        final CountDownLatch succeeded = new CountDownLatch(1);
+        when(failingClient.invokeIncomingWebhook(anyString(), any(Payload.class)))
+            .thenThrow(new WebhookResponseException(429, 0))
+            .thenThrow(new WebhookResponseException(503, -1))
+            .thenAnswer(invocation -> {
+                succeeded.countDown();
+                return true;
+            });
+        this.settings.setProperty(TeamsNotifierProp.RETRY_BASE_DELAY.property(), "1");
+        this.queue = new WebhookDispatchQueue(failingClient, new ConfigurationBridge(this.settings));
+        this.queue.start();
+
+        this.queue.enqueue("http://hook", payload("1"));
+
+        assertThat(succeeded.await(5, TimeUnit.SECONDS)).isTrue();
+        verify(failingClient, times(3)).invokeIncomingWebhook(anyString(), any(Payload.class));
+    }
+
+    @Test
+    public void clientError_isNotRetried() throws Exception {
+        final OfficeWebhookClient failingClient = mock(OfficeWebhookClient.class);
+        final CountDownLatch called = new CountDownLatch(1);
+        when(failingClient.invokeIncomingWebhook(anyString(), any(Payload.class))).thenAnswer(invocation -> {
+            called.countDown();
+            throw new WebhookResponseException(400, -1);
+        });
+        this.settings.setProperty(TeamsNotifierProp.RETRY_BASE_DELAY.property(), "1");
+        this.queue = new WebhookDispatchQueue(failingClient, new ConfigurationBridge(this.settings));
+        this.queue.start();
+
+        this.queue.enqueue("http://hook", payload("1"));
+        assertThat(called.await(5, TimeUnit.SECONDS)).isTrue();
+        this.queue.stop();
+
+        verify(failingClient, times(1)).invokeIncomingWebhook(anyString(), any(Payload.class));
+    }
+
+    @Test
+    public void undeliveredNotifications_areSentAfterRestart() throws Exception {
+        this.settings.setProperty(WebhookDispatchQueue.DATA_PATH_PROPERTY, this.temporaryFolder.newFolder().getPath());
+        this.settings.setProperty(TeamsNotifierProp.RETRY_BASE_DELAY.property(), "60000");
+        final OfficeWebhookClient failingClient = mock(OfficeWebhookClient.class);
+        final CountDownLatch failed = new CountDownLatch(1);
+        when(failingClient.invokeIncomingWebhook(anyString(), any(Payload.class))).thenAnswer(invocation -> {
+            failed.countDown();
+            throw new WebhookResponseException(503, -1);
+        });
+        this.queue = new WebhookDispatchQueue(failingClient, new ConfigurationBridge(this.settings));
+        this.queue.start();
+        this.queue.enqueue("http://hook", payload("1"));
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        this.queue.stop();
+
+        this.queue = new WebhookDispatchQueue(this.httpClient, new ConfigurationBridge(this.settings));
+        this.queue.start();
+        this.release.countDown();
+        this.queue.stop();
+
+        assertThat(this.delivered).containsExactly("1");
+    }
+
+    @Test
+    public void recoveredNotificationsBeyondCapacity_areAllSent() throws Exception {
+        this.settings.setProperty(WebhookDispatchQueue.DATA_PATH_PROPERTY, this.temporaryFolder.newFolder().getPath());
+        this.settings.setProperty(TeamsNotifierProp.RETRY_BASE_DELAY.property(), "60000");
+        this.settings.setProperty(TeamsNotifierProp.QUEUE_CAPACITY.property(), "10");
+        final OfficeWebhookClient failingClient = mock(OfficeWebhookClient.class);
+        final CountDownLatch failed = new CountDownLatch(5);
+        when(failingClient.invokeIncomingWebhook(anyString(), any(Payload.class))).thenAnswer(invocation -> {
+            failed.countDown();
+            throw new WebhookResponseException(503, -1);
+        });
+        this.queue = new WebhookDispatchQueue(failingClient, new ConfigurationBridge(this.settings));
+        this.queue.start();
+        for (int i = 1; i <= 5; i++) {
+            this.queue.enqueue("http://hook", payload(String.valueOf(i)));
+        }
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        this.queue.stop();
+
+        this.settings.setProperty(TeamsNotifierProp.QUEUE_CAPACITY.property(), "2");
+        final NotifierMetrics metrics = new NotifierMetrics();
+        this.queue = new WebhookDispatchQueue(this.httpClient, new ConfigurationBridge(this.settings), metrics);
+        this.queue.start();
+        this.release.countDown();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.delivered.size() < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(this.delivered).containsExactly("1", "2", "3", "4", "5");
+        assertThat(metrics.dropped.get()).isZero();
+    }
+
+    @Test
+    public void retryIntoFullQueue_doesNotBlockTheRetryThread() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.QUEUE_OVERFLOW_POLICY.property(), "BLOCK");
+        this.settings.setProperty(TeamsNotifierProp.RETRY_BASE_DELAY.property(), "100");
+        final CountDownLatch failed = new CountDownLatch(1);
+        final OfficeWebhookClient failingOnceClient = mock(OfficeWebhookClient.class);
+        when(failingOnceClient.invokeIncomingWebhook(anyString(), any(Payload.class))).thenAnswer(invocation -> {
+            if (failed.getCount() > 0) {
+                failed.countDown();
+                throw new WebhookResponseException(503, -1);
+            }
+            return this.httpClient.invokeIncomingWebhook((String) invocation.getArguments()[0], (Payload) invocation.getArguments()[1]);
+        });
+        this.queue = new WebhookDispatchQueue(failingOnceClient, new ConfigurationBridge(this.settings));
+        this.queue.start();
+        this.queue.enqueue("http://hook", payload("1"));
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        this.queue.enqueue("http://hook", payload("2"));
+        assertThat(this.firstTaken.await(5, TimeUnit.SECONDS)).isTrue();
+        this.queue.enqueue("http://hook", payload("3"));
+        this.queue.enqueue("http://hook", payload("4"));
+        // The retry of 1 is due while the queue is full
+        Thread.sleep(300);
+
+        final Thread retryThread = Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().equals("teams-notifier-retry"))
+            .findFirst().orElseThrow(IllegalStateException::new);
+        assertThat(retryThread.getStackTrace())
+            .noneMatch(frame -> frame.getClassName().equals(ArrayBlockingQueue.class.getName()));
+        this.release.countDown();
+        this.queue.stop();
+        assertThat(this.delivered).containsExactlyInAnyOrder("1", "2", "3", "4");
+    }
+
+    private void fillQueue(final String... messages) throws InterruptedException {
+        this.queue = new WebhookDispatchQueue(this.httpClient, new ConfigurationBridge(this.settings));
+        this.queue.start();
+        this.queue.enqueue("http://hook", payload(messages[0]));
+        assertThat(this.firstTaken.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < messages.length; i++) {
+            this.queue.enqueue("http://hook", payload(messages[i]));
+        }
+        this.release.countDown();
+        this.queue.stop();
+    }
+
+    private static Payload payload(final String text) {
+        return new Payload("Sonar report", new Section("Sonar Quality Report", text));
+    }
+}
@@ -0,0 +1,107 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+
+public class WebhookHttpClientTest {
+
+    private MapSettings settings;
+
+    @Before
+    public void before() {
+        this.settings = new MapSettings();
+    }
+
+    @Test
+    public void client_isTunedFromSettings() {
+        this.settings.setProperty(TeamsNotifierProp.HTTP_READ_TIMEOUT.property(), "2000");
+        this.settings.setProperty(TeamsNotifierProp.HTTP_MAX_REQUESTS_PER_HOST.property(), "3");
+
+        final OkHttpClient client = new WebhookHttpClient(new ConfigurationBridge(this.settings), new NotifierMetrics()).getClient();
+
+        assertThat(client.readTimeoutMillis()).isEqualTo(2000);
+        assertThat(client.callTimeoutMillis()).isEqualTo(30_000);
+        assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(3);
+        assertThat(client.protocols()).containsExactly(Protocol.HTTP_2, Protocol.HTTP_1_1);
+    }
+
+    @Test
+    public void synchronousCalls_areLimitedPerHost() throws Exception {
+        this.settings.setProperty(TeamsNotifierProp.HTTP_MAX_REQUESTS_PER_HOST.property(), "2");
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/hook", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        final ExecutorService handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+        final OkHttpClient client = new WebhookHttpClient(new ConfigurationBridge(this.settings), new NotifierMetrics()).getClient();
+        final Request request = new Request.Builder()
+            .url("http://127.0.0.1:" + server.getAddress().getPort() + "/hook")
+            .build();
+        final ExecutorService callers = Executors.newFixedThreadPool(6);
+        try {
+            final List<Future<Integer>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                calls.add(callers.submit(() -> {
+                    try (final Response response = client.newCall(request).execute()) {
+                        return response.code();
+                    }
+                }));
+            }
+            for (final Future<Integer> call : calls) {
+                assertThat(call.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+            }
+        } finally {
+            callers.shutdownNow();
+            server.stop(0);
+            handlers.shutdownNow();
+        }
+
+        assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getHookHosts_listsGlobalAndProjectHookHosts() {
+        this.settings.setProperty(TeamsNotifierProp.HOOK.property(), "https://outlook.office.com/webhook/global");
+        this.settings.setProperty(TeamsNotifierProp.CONFIG.property(), "1,2");
+        this.settings.setProperty("ckss.projectconfig.1.projectHook", "https://outlook.office.com/webhook/other");
+        this.settings.setProperty("ckss.projectconfig.2.projectHook",
+            " https://acme.webhook.office.com/webhookb2/x, https://outlook.office.com/webhook/y ");
+
+        final WebhookHttpClient webhookHttpClient = new WebhookHttpClient(new ConfigurationBridge(this.settings), new NotifierMetrics());
+
+        assertThat(webhookHttpClient.getHookHosts()).containsExactly(
+            HttpUrl.get("https://outlook.office.com/"),
+            HttpUrl.get("https://acme.webhook.office.com/"));
+    }
+}
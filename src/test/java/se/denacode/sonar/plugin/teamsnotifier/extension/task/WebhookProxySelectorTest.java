@@ -0,0 +1,72 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.internal.ConfigurationBridge;
+import org.sonar.api.config.internal.MapSettings;
+
+public class WebhookProxySelectorTest {
+
+    private MapSettings settings;
+
+    @Before
+    public void before() {
+        this.settings = new MapSettings();
+        this.settings.setProperty(TeamsNotifierProp.PROXY_IP.property(), "proxy.corp.local");
+        this.settings.setProperty(TeamsNotifierProp.PROXY_PORT.property(), "3128");
+    }
+
+    @Test
+    public void select_usesConfiguredProxy() {
+        final WebhookProxySelector selector = WebhookProxySelector.of(new ConfigurationBridge(this.settings));
+
+        assertThat(selector.select(URI.create("https://outlook.office.com/webhook/x")))
+            .containsExactly(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy.corp.local", 3128)));
+    }
+
+    @Test
+    public void select_supportsSocksProxies() {
+        this.settings.setProperty(TeamsNotifierProp.PROXY_PROTOCOL.property(), "socks");
+
+        final WebhookProxySelector selector = WebhookProxySelector.of(new ConfigurationBridge(this.settings));
+
+        assertThat(selector.select(URI.create("https://outlook.office.com/")).get(0).type())
+            .isEqualTo(Proxy.Type.SOCKS);
+    }
+
+    @Test
+    public void select_bypassesProxyForNonProxyHosts() {
+        this.settings.setProperty(TeamsNotifierProp.PROXY_NON_PROXY_HOSTS.property(), "*.corp.local,localhost");
+
+        final WebhookProxySelector selector = WebhookProxySelector.of(new ConfigurationBridge(this.settings));
+
+        assertThat(selector.select(URI.create("http://teams.CORP.local/hook"))).containsExactly(Proxy.NO_PROXY);
+        assertThat(selector.select(URI.create("http://localhost:8080/hook"))).containsExactly(Proxy.NO_PROXY);
+        assertThat(selector.select(URI.create("https://outlook.office.com/")).get(0).type())
+            .isEqualTo(Proxy.Type.HTTP);
+    }
+
+    @Test
+    public void select_isDirectWithoutProxyIp() {
+        final WebhookProxySelector selector = WebhookProxySelector.of(new ConfigurationBridge(new MapSettings()));
+
+        assertThat(selector.isProxyConfigured()).isFalse();
+        assertThat(selector.select(URI.create("https://outlook.office.com/"))).containsExactly(Proxy.NO_PROXY);
+    }
+
+    @Test
+    public void connectFailed_isCounted() {
+        final WebhookProxySelector selector = WebhookProxySelector.of(new ConfigurationBridge(this.settings));
+
+        selector.connectFailed(URI.create("https://outlook.office.com/"),
+            InetSocketAddress.createUnresolved("proxy.corp.local", 3128), new IOException("Connection refused"));
+
+        assertThat(selector.getConnectFailures()).isEqualTo(1);
+    }
+}
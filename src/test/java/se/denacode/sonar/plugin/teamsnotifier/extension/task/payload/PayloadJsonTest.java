@@ -0,0 +1,87 @@
+package se.denacode.sonar.plugin.teamsnotifier.extension.task.payload;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class PayloadJsonTest {
+
+    @Test
+    public void gson_sameOutputAsReflectiveSerialization() {
+        final Payload payload = PayloadJsonTest.payload();
+
+        assertThat(PayloadJson.toJson(payload)).isEqualTo(new Gson().toJson(payload));
+    }
+
+    @Test
+    public void write_sameOutputAsReflectiveSerialization() throws IOException {
+        final Payload payload = PayloadJsonTest.payload();
+        final StringWriter writer = new StringWriter();
+
+        PayloadJson.write(payload, writer);
+
+        assertThat(writer.toString()).isEqualTo(new Gson().toJson(payload));
+    }
+
+    @Test
+    public void writeCard_adaptiveCard() throws IOException {
+        final Payload payload = PayloadJsonTest.payload().withFormat(CardFormat.ADAPTIVE_CARD)
+            .withThemeColor(Payload.COLOR_ERROR);
+        final StringWriter writer = new StringWriter();
+
+        PayloadJson.writeCard(payload, writer);
+
+        final JsonObject message = JsonParser.parseString(writer.toString()).getAsJsonObject();
+        assertThat(message.get("type").getAsString()).isEqualTo("message");
+        final JsonObject attachment = message.getAsJsonArray("attachments").get(0).getAsJsonObject();
+        assertThat(attachment.get("contentType").getAsString()).isEqualTo("application/vnd.microsoft.card.adaptive");
+        final JsonObject card = attachment.getAsJsonObject("content");
+        assertThat(card.get("type").getAsString()).isEqualTo("AdaptiveCard");
+        final JsonArray body = card.getAsJsonArray("body");
+        assertThat(body).hasSize(2);
+        final JsonObject first = body.get(0).getAsJsonObject();
+        assertThat(first.get("style").getAsString()).isEqualTo("attention");
+        final JsonArray items = first.getAsJsonArray("items");
+        assertThat(items.get(0).getAsJsonObject().get("text").getAsString()).isEqualTo("Sonar Quality Report");
+        assertThat(items.get(1).getAsJsonObject().get("text").getAsString())
+            .isEqualTo("<!here> Project \"A\" was analyzed.");
+        final JsonArray facts = items.get(2).getAsJsonObject().getAsJsonArray("facts");
+        assertThat(facts.get(1).getAsJsonObject().get("value").getAsString())
+            .isEqualTo("🔴 75.51%, error if <80.0%");
+        assertThat(facts.get(2).getAsJsonObject().get("value").getAsString()).isEmpty();
+        final JsonArray second = body.get(1).getAsJsonObject().getAsJsonArray("items");
+        assertThat(second.get(1).getAsJsonObject().get("text").getAsString()).isEqualTo("second\nsection");
+        assertThat(second.get(2).getAsJsonObject().getAsJsonArray("actions").get(0).getAsJsonObject()
+            .get("url").getAsString()).isEqualTo("http://localhost:9000/dashboard?id=second");
+        assertThat(card.getAsJsonArray("actions").get(0).getAsJsonObject().get("title").getAsString())
+            .isEqualTo("See report");
+    }
+
+    @Test
+    public void write_keepsTheFormatForTheOutbox() throws IOException {
+        final StringWriter writer = new StringWriter();
+
+        PayloadJson.write(PayloadJsonTest.payload().withFormat(CardFormat.ADAPTIVE_CARD), writer);
+
+        assertThat(PayloadJson.read(new StringReader(writer.toString())).getFormat())
+            .isEqualTo(CardFormat.ADAPTIVE_CARD);
+    }
+
+    static Payload payload() {
+        final Payload payload = new Payload("Sonar report", new Section("Sonar Quality Report", "<!here> Project \"A\" was analyzed."));
+        payload.getSection().getFacts().add(new Fact("Quality gate status", "🔴 ERROR"));
+        payload.getSection().getFacts().add(new Fact("Coverage on New Code", "🔴 75.51%, error if <80.0%"));
+        payload.getSection().getFacts().add(new Fact("No value", null));
+        final Section second = new Section(null, "second\nsection");
+        second.addPotentialAction(new Action("See second report", "http://localhost:9000/dashboard?id=second"));
+        payload.getSections().add(second);
+        payload.getPotentialAction().add(new Action("See report", "http://localhost:9000/dashboard?id=project:key"));
+        return payload;
+    }
+}
@@ -0,0 +1,71 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.Test;
+import org.sonar.api.ce.posttask.Branch;
+import org.sonar.api.ce.posttask.QualityGate;
+
+public class SonarWebhookParserTest {
+
+    @Test
+    public void parse_readsTheExampleWebhook() throws IOException {
+        final RelayedAnalysis analysis;
+        try (final Reader reader = new InputStreamReader(
+            SonarWebhookParserTest.class.getResourceAsStream("/relay/quality-gate-error.json"), StandardCharsets.UTF_8)) {
+            analysis = SonarWebhookParser.parse(reader);
+        }
+
+        assertThat(analysis.getCeTask().getId()).isEqualTo("AXYKgCuXOdHsCcbqtuXA");
+        assertThat(analysis.getProject().getKey()).isEqualTo("deus");
+        assertThat(analysis.getProject().getName()).isEqualTo("Deus");
+        assertThat(analysis.getScmRevisionId()).isEqualTo("cafcc14909279793462c34d4c1a182d30e9b3b90");
+        assertThat(analysis.getAnalysisDate()).hasValueSatisfying(date ->
+            assertThat(date.getTime()).isEqualTo(1606493929000L));
+        final Branch branch = analysis.getBranch().get();
+        assertThat(branch.getName()).contains("master");
+        assertThat(branch.isMain()).isTrue();
+        assertThat(branch.getType()).isEqualTo(Branch.Type.BRANCH);
+
+        final QualityGate qualityGate = analysis.getQualityGate();
+        assertThat(qualityGate.getName()).isEqualTo("Sonar way");
+        assertThat(qualityGate.getStatus()).isEqualTo(QualityGate.Status.ERROR);
+        assertThat(qualityGate.getConditions()).hasSize(6);
+        final QualityGate.Condition coverage = qualityGate.getConditions().stream()
+            .filter(condition -> "new_coverage".equals(condition.getMetricKey())).findFirst().get();
+        assertThat(coverage.getOperator()).isEqualTo(QualityGate.Operator.LESS_THAN);
+        assertThat(coverage.getStatus()).isEqualTo(QualityGate.EvaluationStatus.ERROR);
+        assertThat(coverage.getValue()).isEqualTo("15.996168582375478");
+        assertThat(coverage.getErrorThreshold()).isEqualTo("80");
+        assertThat(coverage.isOnLeakPeriod()).isTrue();
+    }
+
+    @Test
+    public void parse_skipsUnknownFieldsAndReadsProperties() throws IOException {
+        final RelayedAnalysis analysis = SonarWebhookParser.parse(new StringReader("{\"unknown\":{\"a\":[1,2]},"
+            + "\"project\":{\"key\":\"app\"},\"properties\":{\"sonar.analysis.buildNumber\":\"42\"}}"));
+
+        assertThat(analysis.getProject().getName()).isEqualTo("app");
+        assertThat(analysis.getBranch()).isEmpty();
+        assertThat(analysis.getQualityGate()).isNull();
+        assertThat(analysis.getScannerContext().getProperties()).containsEntry("sonar.analysis.buildNumber", "42");
+    }
+
+    @Test
+    public void parse_rejectsWebhooksWithoutProject() {
+        assertThatThrownBy(() -> SonarWebhookParser.parse(new StringReader("{\"taskId\":\"x\"}")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void parse_rejectsUnknownStatus() {
+        assertThatThrownBy(() -> SonarWebhookParser.parse(new StringReader(
+            "{\"project\":{\"key\":\"app\"},\"qualityGate\":{\"status\":\"MAYBE\"}}")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
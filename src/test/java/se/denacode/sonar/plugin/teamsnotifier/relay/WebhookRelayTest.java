@@ -0,0 +1,132 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import se.denacode.sonar.plugin.teamsnotifier.common.TeamsNotifierProp;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebhookRelayTest {
+
+    private static final String SECRET = "s3cret";
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private HttpServer teams;
+    private WebhookRelay relay;
+    private byte[] webhook;
+
+    @Before
+    public void before() throws IOException {
+        this.teams = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.teams.createContext("/webhook", exchange -> {
+            this.received.add(new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            final byte[] response = "1".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        this.teams.start();
+
+        final Properties properties = new Properties();
+        properties.setProperty(TeamsNotifierProp.ENABLED.property(), "true");
+        properties.setProperty(TeamsNotifierProp.HOOK.property(),
+            "http://127.0.0.1:" + this.teams.getAddress().getPort() + "/webhook");
+        properties.setProperty(TeamsNotifierProp.RELAY_PORT.property(), "0");
+        properties.setProperty(TeamsNotifierProp.RELAY_SECRET.property(), SECRET);
+        properties.setProperty("sonar.core.serverBaseURL", "http://127.0.0.1:9000");
+        this.relay = new WebhookRelay(new RelayConfiguration(properties));
+        this.relay.start();
+
+        try (final InputStream in = WebhookRelayTest.class.getResourceAsStream("/relay/quality-gate-error.json")) {
+            this.webhook = readAll(in);
+        }
+    }
+
+    @After
+    public void after() {
+        this.relay.stop();
+        this.teams.stop(0);
+    }
+
+    @Test
+    public void signedWebhook_isForwardedToTeams() throws Exception {
+        assertThat(this.post(this.webhook, sign(this.webhook))).isEqualTo(202);
+
+        final String message = this.received.poll(10, TimeUnit.SECONDS);
+        assertThat(message).contains("Deus").contains("http://127.0.0.1:9000/dashboard");
+    }
+
+    @Test
+    public void unsignedWebhook_isRejected() throws Exception {
+        assertThat(this.post(this.webhook, null)).isEqualTo(401);
+        assertThat(this.post(this.webhook, "00")).isEqualTo(401);
+        assertThat(this.received.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void malformedWebhook_isRejected() throws Exception {
+        final byte[] body = "{\"project\":".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(this.post(body, sign(body))).isEqualTo(400);
+    }
+
+    @Test
+    public void start_failsWithoutEnabledSetting() {
+        final WebhookRelay unconfigured = new WebhookRelay(new RelayConfiguration(new Properties()));
+
+        assertThatThrownBy(unconfigured::start)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining(TeamsNotifierProp.ENABLED.property());
+    }
+
+    private int post(final byte[] body, final String signature) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(
+            "http://127.0.0.1:" + this.relay.getPort() + WebhookRelay.PATH).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (signature != null) {
+            connection.setRequestProperty(WebhookSignature.HEADER, signature);
+        }
+        try (final OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String sign(final byte[] body) {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : new WebhookSignature(SECRET).sign(body, body.length)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
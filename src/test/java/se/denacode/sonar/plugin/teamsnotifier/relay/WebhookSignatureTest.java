@@ -0,0 +1,28 @@
+package se.denacode.sonar.plugin.teamsnotifier.relay;
+
+import java.nio.charset.StandardCharsets;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class WebhookSignatureTest {
+
+    // RFC 4231 test case 2
+    private static final byte[] BODY = "what do ya want for nothing?".getBytes(StandardCharsets.UTF_8);
+    private static final String SIGNATURE = "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843";
+
+    private final WebhookSignature signature = new WebhookSignature("Jefe");
+
+    @Test
+    public void isValid_acceptsTheHmacOfTheBody() {
+        assertThat(this.signature.isValid(BODY, BODY.length, SIGNATURE)).isTrue();
+        assertThat(this.signature.isValid(BODY, BODY.length, SIGNATURE.toUpperCase())).isTrue();
+    }
+
+    @Test
+    public void isValid_rejectsOtherSignatures() {
+        assertThat(this.signature.isValid(BODY, BODY.length, null)).isFalse();
+        assertThat(this.signature.isValid(BODY, BODY.length, "not hex")).isFalse();
+        assertThat(this.signature.isValid(BODY, BODY.length - 1, SIGNATURE)).isFalse();
+        assertThat(new WebhookSignature("other").isValid(BODY, BODY.length, SIGNATURE)).isFalse();
+    }
+}